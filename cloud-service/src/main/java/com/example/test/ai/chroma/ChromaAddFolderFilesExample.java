@@ -1,54 +1,33 @@
 package com.example.test.ai.chroma;
 
-import cn.hutool.core.collection.CollectionUtil;
 import com.alibaba.fastjson2.JSONObject;
 import com.example.test.ai.file.DocumentSplitterExample;
 import com.example.test.ai.file.DocumentUtils;
-import com.example.test.ai.file.FileTypeChecker;
-import com.example.test.ai.file.FileWalkerNio;
+import com.example.test.ai.file.IncrementalFolderIngester;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.segment.TextSegment;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ChromaAddFolderFilesExample {
     private static final String CHROMA_PERSIST_DIR = "f:\\vcom\\公司文件";
+    private static final Path MANIFEST_FILE = Paths.get(System.getProperty("user.home"), ".cache", "chroma-ingest-manifest.json");
 
     public static void main(String[] args) {
         // 1. 向量化存储到 chroma
-        ChromaService chroma = new ChromaService();
-
-        try {
-            List<String> allFiles = FileWalkerNio.getAllFilePaths(CHROMA_PERSIST_DIR);
-            for(String fileName:allFiles){
-                if(!FileTypeChecker.isPdf(fileName) && !FileTypeChecker.isWordDocument(fileName) && !FileTypeChecker.isExcelDocument(fileName)){
-                    continue;
-                }
-                System.out.println("向量化文件："+ fileName + "-------");
-                //分割文件
-                List<TextSegment> segments = loadAndChunk(fileName);
-                if(CollectionUtil.isNotEmpty(segments)){
-                    // 异步插入
-                    ExecutorService executor = Executors.newFixedThreadPool(4);
-                    List<List<TextSegment>> lists = splitList(segments, 4);
-                    lists.forEach(segment -> executor.submit(() -> {
-                        // 5. 生成向量并存入 Chroma
-                        List<String> ids = chroma.storeDocument(segment);
-                        System.out.println(JSONObject.toJSONString(ids));
-                    }));
-                    executor.shutdown();
-                }
-            }
-
+        try (ChromaService chroma = new ChromaService()) {
+            // 2. 增量导入：只处理新增和修改过的文件，删除已不存在的文件的分块
+            IncrementalFolderIngester ingester = new IncrementalFolderIngester(chroma, MANIFEST_FILE);
+            IncrementalFolderIngester.Report report = ingester.ingest(Paths.get(CHROMA_PERSIST_DIR));
+            chroma.saveLexicalIndex();
+            System.out.println(JSONObject.toJSONString(report));
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -58,7 +37,7 @@ public class ChromaAddFolderFilesExample {
         try {
             Document document = DocumentUtils.loadDocument(file);
             // 2. 分割文档（选择任一分割器）
-            List<TextSegment> segments = DocumentSplitterExample.splitByFixedSize(document);
+            List<TextSegment> segments = DocumentSplitterExample.splitByTokens(document);
 
             // 3. 输出结果
             System.out.println("分块数量: " + segments.size());
@@ -2,7 +2,10 @@ package com.example.test.ai.chroma;
 
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
+import com.example.test.ai.file.DocumentSplitterExample;
 import com.example.test.util.OkHttpUtils;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.ollama.OllamaEmbeddingModel;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -182,9 +185,12 @@ public class ChromaClientManual {
     public static List<String> loadAndChunk(Path filePath) throws Exception {
         // 使用 Tika 解析文档（支持 PDF、DOCX、TXT 等）
         Tika tika = new Tika();
+        tika.setMaxStringLength(-1);
         String content = tika.parseToString(filePath.toFile());
 
-        // 简单按字符分块（可根据需求优化为语义分块）
-        return List.of(content.split("(?<=\\G.{" + 512 + "})"));
+        // 按 token 预算分块，保留标题、段落和表格行的边界
+        return DocumentSplitterExample.splitByTokens(Document.from(content)).stream()
+                .map(TextSegment::text)
+                .toList();
     }
 }
@@ -1,9 +1,14 @@
 package com.example.test.ai.chroma;
 
 import com.example.test.ai.chroma.v2.ChromaEmbeddingStoreV2;
+import com.example.test.ai.chroma.v2.ChromaIdStrategy;
+import com.example.test.ai.chroma.v2.ChromaInclude;
+import com.example.test.ai.ollama.BatchingEmbeddingModel;
+import com.example.test.ai.ollama.CachingEmbeddingModel;
+import com.example.test.ai.vector.Bm25Index;
+import com.example.test.ai.vector.ReciprocalRankFusion;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.ollama.OllamaEmbeddingModel;
 import dev.langchain4j.model.output.Response;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
@@ -11,45 +16,136 @@ import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.filter.Filter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 
-public class ChromaService {
+/**
+ * 用完需要关闭：向量磁盘缓存目录由打开它的实例独占，关闭后才释放给下一个实例；BM25 索引的日志也在关闭时关掉。
+ * BM25 索引在第一次写入、删除或混合检索时才打开，只用 {@link #search}/{@link #searchAll} 不会加载它
+ */
+public class ChromaService implements AutoCloseable {
     private final ChromaEmbeddingStoreV2 storeV2;
-    private final EmbeddingModel embeddingModel;
+    private final CachingEmbeddingModel embeddingModel;
+    /**
+     * 第一次用到时由 {@link #lexicalIndex()} 打开
+     */
+    private Bm25Index lexicalIndex;
 
     private static final String BASE_URL = "http://localhost:8000/";
 
     private static final String tenantName = "test1";
     private static final String dbName = "db1";
     private static final String collectionName = "doc_vectors";
-    
+    private static final String EMBEDDING_MODEL = "jeffh/intfloat-multilingual-e5-large-instruct:f16";
+    private static final Path EMBEDDING_CACHE_DIR = Paths.get(System.getProperty("user.home"), ".cache", "embeddings");
+    private static final int EMBEDDING_BATCH_SIZE = 32;
+    private static final int EMBEDDING_CONCURRENCY = 2;
+    // 与 chroma 集合对应的 BM25 索引，存分块原文，启动时重建；旁边的 .journal 记录上次保存之后的写入和删除
+    private static final Path LEXICAL_INDEX_FILE = Paths.get(System.getProperty("user.home"), ".cache", "bm25", collectionName + ".jsonl");
+    // 混合检索时关键词一路多取一些候选，融合后再截断
+    private static final int LEXICAL_CANDIDATE_FACTOR = 2;
+
 
     public ChromaService() {
         // 连接本地 chroma
         this.storeV2 = ChromaEmbeddingStoreV2 .builder()
                 .baseUrl(BASE_URL)
                 .collectionName(tenantName,dbName,collectionName)
+                // 检索只用到文本，不下载每条命中的向量
+                .include(ChromaInclude.withoutEmbeddings())
+                // 分块 id 由文本和元数据（文件路径、序号）决定，重复导入同一文档时覆盖而不是追加
+                .idStrategy(ChromaIdStrategy.contentHash())
                 .build();
 
-        // 使用 Ollama 的嵌入模型（需与 LLM 一致）
-        this.embeddingModel = OllamaEmbeddingModel.builder()
-                .baseUrl("http://localhost:11434/")
-                .modelName("jeffh/intfloat-multilingual-e5-large-instruct:f16")
-                .timeout(Duration.ofMinutes(10L))
+        // 使用 Ollama 的嵌入模型（需与 LLM 一致），分块按批向量化，相同文本走缓存
+        this.embeddingModel = CachingEmbeddingModel.builder()
+                .delegate(BatchingEmbeddingModel.builder()
+                        .delegate(OllamaEmbeddingModel.builder()
+                                .baseUrl("http://localhost:11434/")
+                                .modelName(EMBEDDING_MODEL)
+                                .timeout(Duration.ofMinutes(10L))
+                                .build())
+                        .batchSize(EMBEDDING_BATCH_SIZE)
+                        .maxConcurrentBatches(EMBEDDING_CONCURRENCY)
+                        .build())
+                .modelName(EMBEDDING_MODEL)
+                .diskDirectory(EMBEDDING_CACHE_DIR)
                 .build();
     }
 
     public List<String> storeDocument(List<TextSegment> chunks) {
-        //Response<List<Embedding>> response = embeddingModel.embedAll(chunks);
-        //storeV2.addAll(response.content(),chunks);
-        List<Embedding> embeddings = new ArrayList<>();
-        chunks.forEach(c->embeddings.add(embeddingModel.embed(c).content()));
-        List<String> ids = storeV2.addAll(embeddings,chunks);
+        return storeEmbeddings(embedDocuments(chunks), chunks);
+    }
+
+    /**
+     * 只向量化不写入，供导入流水线把向量化和写入拆成两个阶段
+     */
+    public List<Embedding> embedDocuments(List<TextSegment> chunks) {
+        Response<List<Embedding>> response = embeddingModel.embedAll(chunks);
+        return response.content();
+    }
+
+    /**
+     * 写入 chroma，并以返回的 id 同步写入 BM25 索引
+     */
+    public List<String> storeEmbeddings(List<Embedding> embeddings, List<TextSegment> chunks) {
+        List<String> ids = storeV2.addAll(embeddings, chunks);
+        lexicalIndex().addAll(ids, chunks);
         return ids;
     }
 
+    /**
+     * 按 id 删除分块，用于增量导入时清理已修改或已删除文件的旧分块
+     */
+    public void removeDocuments(List<String> ids) {
+        storeV2.removeAll(ids);
+        // 删除也要记进日志，索引还没打开时同样先打开
+        lexicalIndex().removeAll(ids);
+    }
+
+    /**
+     * 保存 BM25 索引快照并清空日志，导入结束后调用。写入和删除随时记在日志里，不调用也不会丢，
+     * 只是下次启动要回放更长的日志
+     */
+    public synchronized void saveLexicalIndex() throws IOException {
+        // 没打开过说明这个实例没有写入，快照和日志都不用动
+        if (lexicalIndex != null) {
+            lexicalIndex.save(LEXICAL_INDEX_FILE);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (lexicalIndex != null) {
+                lexicalIndex.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            embeddingModel.close();
+        }
+    }
+
+    /**
+     * 整个 BM25 索引（所有分块原文和倒排表）都读到堆上，十万个分块要数 GB，见 Bm25Index 的类注释，
+     * 打开耗时也随分块数增长，所以推迟到第一次用到时
+     */
+    private synchronized Bm25Index lexicalIndex() {
+        if (lexicalIndex == null) {
+            try {
+                lexicalIndex = Bm25Index.open(LEXICAL_INDEX_FILE, Bm25Index.builder());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return lexicalIndex;
+    }
+
     public List<EmbeddingMatch<TextSegment>> search(String query, int maxResults, Double minScore, Filter filter) {
         Response<Embedding> response = embeddingModel.embed(query);
         EmbeddingSearchRequest embeddingSearchRequest = new EmbeddingSearchRequest(response.content(),maxResults,minScore,filter);
@@ -58,5 +154,30 @@ public class ChromaService {
         return matchList;
     }
 
+    /**
+     * 混合检索：向量检索与 BM25 关键词检索各取候选，按倒数排名融合（RRF）。
+     * 编号、型号、人名、生僻词等向量相似度不高的精确匹配也能排到前面。
+     *
+     * @param minScore 只作用于向量一路；返回结果的 score 是融合分，不是相似度
+     */
+    public List<EmbeddingMatch<TextSegment>> hybridSearch(String query, int maxResults, Double minScore, Filter filter) {
+        List<EmbeddingMatch<TextSegment>> vector = search(query, maxResults, minScore, filter);
+        List<EmbeddingMatch<TextSegment>> lexical = lexicalIndex().search(query, maxResults * LEXICAL_CANDIDATE_FACTOR, filter);
+        return ReciprocalRankFusion.fuse(List.of(vector, lexical), maxResults);
+    }
+
+    /**
+     * 多查询检索：问题一次性批量向量化，再合并为一次 chroma 查询，结果按问题顺序返回
+     */
+    public List<List<EmbeddingMatch<TextSegment>>> searchAll(List<String> queries, int maxResults, Double minScore, Filter filter) {
+        List<Embedding> queryEmbeddings = embeddingModel.embedAll(queries.stream().map(TextSegment::from).toList()).content();
+        List<EmbeddingSearchRequest> requests = queryEmbeddings.stream()
+                .map(embedding -> new EmbeddingSearchRequest(embedding, maxResults, minScore, filter))
+                .toList();
+        return storeV2.searchAll(requests).stream()
+                .map(EmbeddingSearchResult::matches)
+                .toList();
+    }
+
 
 }
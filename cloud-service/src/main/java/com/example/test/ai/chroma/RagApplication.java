@@ -12,11 +12,12 @@ public class RagApplication {
 
     public static void main(String[] args) throws Exception {
 
-        ChromaService chroma = new ChromaService();
-
-        // 3. 用户查询
+        // 3. 用户查询：向量检索与关键词检索融合
         String question = "文档中有哪些个人提升的内容";
-        List<EmbeddingMatch<TextSegment>> relevantChunks = chroma.search(question, 10,0.8,null);
+        List<EmbeddingMatch<TextSegment>> relevantChunks;
+        try (ChromaService chroma = new ChromaService()) {
+            relevantChunks = chroma.hybridSearch(question, 10,0.8,null);
+        }
         List<String> list = relevantChunks.stream()
                 .map(match -> match.embedded().toString())  // 根据实际方法名调整
                 .filter(text -> text != null)  // 过滤空值（可选）
@@ -13,7 +13,7 @@ public interface ChromaApiV2 {
 
     @POST("api/v2/tenants/{tenantName}/databases")
     @Headers({"Content-Type: application/json"})
-    Call<Object> createDb(@Body CreateTenantOrDbRequest createCollectionRequest);
+    Call<Object> createDb(@Path("tenantName")String tenantName, @Body CreateTenantOrDbRequest createCollectionRequest);
 
     @GET("api/v2/tenants/{tenantName}/databases/{dbName}/collections/{collection_name}")
     @Headers({"Content-Type: application/json"})
@@ -27,6 +27,10 @@ public interface ChromaApiV2 {
     @Headers({"Content-Type: application/json"})
     Call<Object> addEmbeddings(@Path("tenantName")String tenantName,@Path("dbName")String dbName,@Path("collection_id") String collectionId, @Body AddEmbeddingsRequest embedding);
 
+    @POST("api/v2/tenants/{tenantName}/databases/{dbName}/collections/{collection_id}/upsert")
+    @Headers({"Content-Type: application/json"})
+    Call<Object> upsertEmbeddings(@Path("tenantName")String tenantName,@Path("dbName")String dbName,@Path("collection_id") String collectionId, @Body AddEmbeddingsRequest embedding);
+
     @POST("api/v2/tenants/{tenantName}/databases/{dbName}/collections/{collection_id}/query")
     @Headers({"Content-Type: application/json"})
     Call<QueryResponse> queryEmbeddings(@Path("tenantName")String tenantName, @Path("dbName")String dbName, @Path("collection_id") String collectionId, @Body QueryRequest queryRequest);
@@ -0,0 +1,108 @@
+package com.example.test.ai.chroma.v2;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking twin of {@link ChromaClientV2}. Every call is dispatched with Retrofit's {@code enqueue},
+ * so the caller's thread is never parked on Chroma latency.
+ * Futures are completed on OkHttp's dispatcher threads; chain heavy work with the {@code *Async} variants
+ * of {@link CompletableFuture} to keep those threads free.
+ * Cancelling a returned future cancels the underlying HTTP call.
+ */
+class ChromaAsyncClientV2 {
+
+    private final ChromaApiV2 chromaApiV2;
+
+    ChromaAsyncClientV2(ChromaApiV2 chromaApiV2) {
+        this.chromaApiV2 = chromaApiV2;
+    }
+
+    /**
+     * Completes with {@code null} if the collection is not present, like {@link ChromaClientV2#collection}.
+     */
+    CompletableFuture<Collection> collection(String tenantName, String dbName, String collectionName) {
+        CompletableFuture<Collection> future = new CompletableFuture<>();
+        Call<Collection> call = chromaApiV2.collection(tenantName, dbName, collectionName);
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<Collection> call, Response<Collection> response) {
+                // if collection is not present, Chroma returns: Status - 500
+                future.complete(response.isSuccessful() ? response.body() : null);
+            }
+
+            @Override
+            public void onFailure(Call<Collection> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        cancelOnCancel(future, call);
+        return future;
+    }
+
+    CompletableFuture<Object> createTenant(CreateTenantOrDbRequest createTenantRequest) {
+        return enqueue(chromaApiV2.createTenant(createTenantRequest));
+    }
+
+    CompletableFuture<Object> createDb(String tenantName, CreateTenantOrDbRequest createDbRequest) {
+        return enqueue(chromaApiV2.createDb(tenantName, createDbRequest));
+    }
+
+    CompletableFuture<Collection> createCollection(String tenantName, String dbName, CreateCollectionRequest createCollectionRequest) {
+        return enqueue(chromaApiV2.createCollection(tenantName, dbName, createCollectionRequest));
+    }
+
+    CompletableFuture<Object> addEmbeddings(String tenantName, String dbName, String collectionId, AddEmbeddingsRequest addEmbeddingsRequest) {
+        return enqueue(chromaApiV2.addEmbeddings(tenantName, dbName, collectionId, addEmbeddingsRequest));
+    }
+
+    CompletableFuture<Object> upsertEmbeddings(String tenantName, String dbName, String collectionId, AddEmbeddingsRequest addEmbeddingsRequest) {
+        return enqueue(chromaApiV2.upsertEmbeddings(tenantName, dbName, collectionId, addEmbeddingsRequest));
+    }
+
+    CompletableFuture<QueryResponse> queryEmbeddings(String tenantName, String dbName, String collectionId, QueryRequest queryRequest) {
+        return enqueue(chromaApiV2.queryEmbeddings(tenantName, dbName, collectionId, queryRequest));
+    }
+
+    CompletableFuture<List<String>> deleteEmbeddings(String tenantName, String dbName, String collectionId, DeleteEmbeddingsRequest deleteEmbeddingsRequest) {
+        return enqueue(chromaApiV2.deleteEmbeddings(tenantName, dbName, collectionId, deleteEmbeddingsRequest));
+    }
+
+    private static <T> CompletableFuture<T> enqueue(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (response.isSuccessful()) {
+                    future.complete(response.body());
+                    return;
+                }
+                try {
+                    future.completeExceptionally(ChromaClientV2.toException(response));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        cancelOnCancel(future, call);
+        return future;
+    }
+
+    private static void cancelOnCancel(CompletableFuture<?> future, Call<?> call) {
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+    }
+}
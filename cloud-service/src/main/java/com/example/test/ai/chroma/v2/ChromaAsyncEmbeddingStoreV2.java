@@ -0,0 +1,167 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
+
+/**
+ * Non-blocking twin of {@link ChromaEmbeddingStoreV2}, obtained via {@link ChromaEmbeddingStoreV2#async()}.
+ * It shares the HTTP client and the collection of the store it was created from, so a RAG request can run
+ * its vector lookup alongside other I/O instead of parking a request thread on Chroma latency.
+ * The collection id comes from {@link ChromaCollectionRegistry} without blocking: the first call for a collection
+ * chains its request onto the lookup. Cancelling a returned future cancels the HTTP call if it has been sent,
+ * or keeps it from being sent if the collection is still being resolved.
+ */
+public class ChromaAsyncEmbeddingStoreV2 {
+
+    private final ChromaEmbeddingStoreV2 store;
+    private final ChromaAsyncClientV2 asyncClient;
+
+    ChromaAsyncEmbeddingStoreV2(ChromaEmbeddingStoreV2 store, ChromaAsyncClientV2 asyncClient) {
+        this.store = store;
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * Ids come from the store's {@link ChromaIdStrategy}; a deterministic strategy makes this an upsert.
+     *
+     * @return a future completed with the generated ids, in the same order as {@code embeddings}
+     */
+    public CompletableFuture<List<String>> addAllAsync(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = store.generateIds(embeddings, textSegments);
+        AddEmbeddingsRequest addEmbeddingsRequest =
+                ChromaEmbeddingStoreV2.toAddEmbeddingsRequest(ids, embeddings, textSegments);
+        boolean upsert = store.idStrategy().deterministic();
+        return onCollection(collectionId -> upsert
+                        ? asyncClient.upsertEmbeddings(store.tenantName(), store.dbName(), collectionId, addEmbeddingsRequest)
+                        : asyncClient.addEmbeddings(store.tenantName(), store.dbName(), collectionId, addEmbeddingsRequest),
+                ignored -> ids);
+    }
+
+    public CompletableFuture<Void> addAllAsync(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        AddEmbeddingsRequest addEmbeddingsRequest =
+                ChromaEmbeddingStoreV2.toAddEmbeddingsRequest(ids, embeddings, textSegments);
+        return onCollection(collectionId -> asyncClient
+                        .addEmbeddings(store.tenantName(), store.dbName(), collectionId, addEmbeddingsRequest),
+                ignored -> null);
+    }
+
+    /**
+     * Async variant of {@link ChromaEmbeddingStoreV2#upsertAll(List, List, List)}.
+     */
+    public CompletableFuture<Void> upsertAllAsync(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        AddEmbeddingsRequest addEmbeddingsRequest =
+                ChromaEmbeddingStoreV2.toAddEmbeddingsRequest(ids, embeddings, textSegments);
+        return onCollection(collectionId -> asyncClient
+                        .upsertEmbeddings(store.tenantName(), store.dbName(), collectionId, addEmbeddingsRequest),
+                ignored -> null);
+    }
+
+    public CompletableFuture<EmbeddingSearchResult<TextSegment>> searchAsync(EmbeddingSearchRequest request) {
+        return searchAsync(request, store.include());
+    }
+
+    /**
+     * Async variant of {@link ChromaEmbeddingStoreV2#search(EmbeddingSearchRequest, Set)}.
+     */
+    public CompletableFuture<EmbeddingSearchResult<TextSegment>> searchAsync(EmbeddingSearchRequest request, Set<ChromaInclude> include) {
+        QueryRequest queryRequest = ChromaEmbeddingStoreV2.toQueryRequest(request, include);
+        return onCollection(collectionId -> asyncClient
+                        .queryEmbeddings(store.tenantName(), store.dbName(), collectionId, queryRequest),
+                queryResponse -> new EmbeddingSearchResult<>(ChromaEmbeddingStoreV2.filterByMinScore(
+                        ChromaEmbeddingStoreV2.toEmbeddingMatches(queryResponse), request.minScore())));
+    }
+
+    /**
+     * Async variant of {@link ChromaEmbeddingStoreV2#searchAll(List)}; the coalesced queries of different filters run concurrently.
+     */
+    public CompletableFuture<List<EmbeddingSearchResult<TextSegment>>> searchAllAsync(List<EmbeddingSearchRequest> requests) {
+        return searchAllAsync(requests, store.include());
+    }
+
+    public CompletableFuture<List<EmbeddingSearchResult<TextSegment>>> searchAllAsync(List<EmbeddingSearchRequest> requests,
+                                                                                      Set<ChromaInclude> include) {
+        List<ChromaBatchQuery> batches = ChromaBatchQuery.group(requests);
+        return onCollection(collectionId -> {
+            List<CompletableFuture<QueryResponse>> queries = batches.stream()
+                    .map(batch -> asyncClient.queryEmbeddings(
+                            store.tenantName(), store.dbName(), collectionId, batch.toQueryRequest(include)))
+                    .toList();
+            CompletableFuture<List<QueryResponse>> all = CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new))
+                    .thenApply(ignored -> queries.stream().map(CompletableFuture::join).toList());
+            all.whenComplete((responses, error) -> {
+                if (all.isCancelled()) {
+                    queries.forEach(query -> query.cancel(true));
+                }
+            });
+            return all;
+        }, responses -> {
+            List<EmbeddingSearchResult<TextSegment>> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+            for (int i = 0; i < batches.size(); i++) {
+                batches.get(i).splitInto(responses.get(i), results);
+            }
+            return results;
+        });
+    }
+
+    public CompletableFuture<Void> removeAllAsync(java.util.Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        DeleteEmbeddingsRequest deleteEmbeddingsRequest = DeleteEmbeddingsRequest.builder().ids(new ArrayList<>(ids)).build();
+        return onCollection(collectionId -> asyncClient
+                        .deleteEmbeddings(store.tenantName(), store.dbName(), collectionId, deleteEmbeddingsRequest),
+                ignored -> null);
+    }
+
+    /**
+     * Resolves the collection id without blocking, then sends {@code call} and maps its response.
+     * The returned future is the only one handed out, so cancellation is forwarded to the HTTP call by hand:
+     * {@code thenCompose} would cancel just the dependent stage and leave the request running.
+     */
+    private <R, T> CompletableFuture<T> onCollection(Function<String, CompletableFuture<R>> call, Function<R, T> mapper) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        store.collectionIdAsync().whenComplete((collectionId, lookupError) -> {
+            if (lookupError != null) {
+                result.completeExceptionally(ChromaCollectionRegistry.unwrap(lookupError));
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled while the collection was being resolved, nothing has been sent
+                return;
+            }
+            CompletableFuture<R> http;
+            try {
+                http = call.apply(collectionId);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            result.whenComplete((ignored, error) -> {
+                if (result.isCancelled()) {
+                    http.cancel(true);
+                }
+            });
+            http.whenComplete((response, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(ChromaCollectionRegistry.unwrap(error));
+                    return;
+                }
+                try {
+                    result.complete(mapper.apply(response));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        return result;
+    }
+}
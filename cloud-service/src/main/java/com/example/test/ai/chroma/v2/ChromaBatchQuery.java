@@ -0,0 +1,71 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A group of {@link EmbeddingSearchRequest}s that can be answered by a single Chroma {@code /query} call.
+ * Chroma accepts many query vectors per call but only one {@code where} clause and one {@code n_results},
+ * so requests are grouped by filter and each group asks for the largest {@code maxResults} in it;
+ * the per-request limit and {@code minScore} are applied when the response is split back out.
+ */
+class ChromaBatchQuery {
+
+    private final Map<String, Object> where;
+    private final List<Integer> positions = new ArrayList<>();
+    private final List<EmbeddingSearchRequest> requests = new ArrayList<>();
+
+    private ChromaBatchQuery(Map<String, Object> where) {
+        this.where = where;
+    }
+
+    /**
+     * Groups the requests by their mapped filter, preserving the order of first appearance.
+     */
+    static List<ChromaBatchQuery> group(List<EmbeddingSearchRequest> requests) {
+        Map<Map<String, Object>, ChromaBatchQuery> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            EmbeddingSearchRequest request = requests.get(i);
+            Map<String, Object> where = ChromaMetadataFilterMapper.map(request.filter());
+            ChromaBatchQuery group = groups.computeIfAbsent(where, ChromaBatchQuery::new);
+            group.positions.add(i);
+            group.requests.add(request);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    QueryRequest toQueryRequest(Set<ChromaInclude> include) {
+        return new QueryRequest.Builder()
+                .batchQueryEmbeddings(requests.stream().map(request -> request.queryEmbedding().vector()).collect(toList()))
+                .nResults(requests.stream().mapToInt(EmbeddingSearchRequest::maxResults).max().orElse(0))
+                .where(where)
+                .include(ChromaInclude.toQueryInclude(include))
+                .build();
+    }
+
+    /**
+     * Splits the response of {@link #toQueryRequest(Set)} back into per-request results,
+     * writing each one at the position its request had in the original list.
+     */
+    void splitInto(QueryResponse queryResponse, List<EmbeddingSearchResult<TextSegment>> results) {
+        for (int q = 0; q < requests.size(); q++) {
+            EmbeddingSearchRequest request = requests.get(q);
+            List<EmbeddingMatch<TextSegment>> matches = ChromaEmbeddingStoreV2.filterByMinScore(
+                    ChromaEmbeddingStoreV2.toEmbeddingMatches(queryResponse, q), request.minScore());
+            if (matches.size() > request.maxResults()) {
+                matches = matches.subList(0, request.maxResults());
+            }
+            results.set(positions.get(q), new EmbeddingSearchResult<>(matches));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.test.ai.chroma.v2;
+
+import java.util.List;
+
+/**
+ * Thrown when some sub-batches of a bulk import could not be written even after retrying.
+ * All other sub-batches have been stored, so only {@link #getFailedIds()} need to be re-submitted.
+ */
+public class ChromaBulkIngestException extends RuntimeException {
+
+    private final List<String> failedIds;
+
+    ChromaBulkIngestException(String message, List<String> failedIds, Throwable cause) {
+        super(message, cause);
+        this.failedIds = failedIds;
+    }
+
+    public List<String> getFailedIds() {
+        return failedIds;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.test.ai.chroma.v2;
+
+import java.time.Duration;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static java.time.Duration.ofMillis;
+
+/**
+ * Tuning knobs for the bulk-ingest mode of {@link ChromaEmbeddingStoreV2}.
+ * A bulk import is split into sub-batches that are bounded both by record count and by the
+ * estimated JSON payload size, and at most {@code maxInFlight} sub-batches are sent concurrently.
+ */
+public class ChromaBulkIngestOptions {
+
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+
+    private ChromaBulkIngestOptions(Builder builder) {
+        this.maxBatchSize = ensureGreaterThanZero(getOrDefault(builder.maxBatchSize, 500), "maxBatchSize");
+        this.maxBatchBytes = getOrDefault(builder.maxBatchBytes, 4L * 1024 * 1024);
+        this.maxInFlight = ensureGreaterThanZero(getOrDefault(builder.maxInFlight, 4), "maxInFlight");
+        this.maxRetries = Math.max(0, getOrDefault(builder.maxRetries, 3));
+        this.retryBackoff = getOrDefault(builder.retryBackoff, ofMillis(500));
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes must be greater than zero, but is: " + maxBatchBytes);
+        }
+    }
+
+    public static ChromaBulkIngestOptions defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long maxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    public Duration retryBackoff() {
+        return retryBackoff;
+    }
+
+    public static class Builder {
+
+        private Integer maxBatchSize;
+        private Long maxBatchBytes;
+        private Integer maxInFlight;
+        private Integer maxRetries;
+        private Duration retryBackoff;
+
+        /**
+         * @param maxBatchSize Maximum number of records per sub-batch. If not specified, 500 will be used.
+         * @return builder
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchBytes Maximum estimated JSON payload size of a sub-batch in bytes.
+         *                      A single record larger than this limit is sent on its own.
+         *                      If not specified, 4 MB will be used.
+         * @return builder
+         */
+        public Builder maxBatchBytes(long maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of sub-batches sent to Chroma concurrently. If not specified, 4 will be used.
+         * @return builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param maxRetries How many times a failed sub-batch is re-sent before giving up. If not specified, 3 will be used.
+         * @return builder
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * @param retryBackoff Initial delay before re-sending a failed sub-batch, doubled on every attempt.
+         *                     If not specified, 500 ms will be used.
+         * @return builder
+         */
+        public Builder retryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        public ChromaBulkIngestOptions build() {
+            return new ChromaBulkIngestOptions(this);
+        }
+    }
+}
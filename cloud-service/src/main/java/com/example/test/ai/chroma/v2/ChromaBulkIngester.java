@@ -0,0 +1,163 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Splits a large import into size-bounded sub-batches and writes them with a bounded number of requests in flight.
+ * Sub-batches are materialized lazily, right before they are sent, so heap usage is capped by
+ * {@code maxInFlight * maxBatchBytes} instead of growing with the size of the import.
+ */
+class ChromaBulkIngester {
+
+    private static final Logger log = LoggerFactory.getLogger(ChromaBulkIngester.class);
+
+    /**
+     * Upper bound for a float rendered as JSON text, e.g. "-0.012345678,".
+     */
+    private static final int BYTES_PER_FLOAT = 16;
+    private static final int BYTES_PER_RECORD_OVERHEAD = 16;
+
+    private final ChromaBulkIngestOptions options;
+    private final Consumer<AddEmbeddingsRequest> sender;
+
+    ChromaBulkIngester(ChromaBulkIngestOptions options, Consumer<AddEmbeddingsRequest> sender) {
+        this.options = options;
+        this.sender = sender;
+    }
+
+    void ingest(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and textSegments must have the same size");
+        }
+
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            int from = 0;
+            while (from < ids.size()) {
+                int to = nextBatchEnd(ids, embeddings, textSegments, from);
+                int batchFrom = from;
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(new Failure(ids.subList(batchFrom, ids.size()), e));
+                    break;
+                }
+                executor.submit(() -> {
+                    try {
+                        sendWithRetry(ids, embeddings, textSegments, batchFrom, to, failures);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                from = to;
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            List<String> failedIds = new ArrayList<>();
+            failures.forEach(failure -> failedIds.addAll(failure.ids()));
+            throw new ChromaBulkIngestException(
+                    String.format("%d of %d embeddings could not be added", failedIds.size(), ids.size()),
+                    failedIds,
+                    failures.peek().cause());
+        }
+    }
+
+    /**
+     * Returns the exclusive end index of the sub-batch starting at {@code from}.
+     * A batch always contains at least one record, even if that record alone exceeds {@code maxBatchBytes}.
+     */
+    private int nextBatchEnd(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments, int from) {
+        int to = from;
+        long bytes = 0;
+        while (to < ids.size() && to - from < options.maxBatchSize()) {
+            long recordBytes = estimateBytes(ids.get(to), embeddings.get(to), textSegments == null ? null : textSegments.get(to));
+            if (to > from && bytes + recordBytes > options.maxBatchBytes()) {
+                break;
+            }
+            bytes += recordBytes;
+            to++;
+        }
+        return to;
+    }
+
+    private void sendWithRetry(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments,
+                               int from, int to, ConcurrentLinkedQueue<Failure> failures) {
+        AddEmbeddingsRequest request = ChromaEmbeddingStoreV2.toAddEmbeddingsRequest(
+                ids.subList(from, to),
+                embeddings.subList(from, to),
+                textSegments == null ? null : textSegments.subList(from, to));
+
+        long backoffMillis = options.retryBackoff().toMillis();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sender.accept(request);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= options.maxRetries()) {
+                    log.warn("Giving up on sub-batch [{}, {}) after {} attempts: {}", from, to, attempt + 1, e.getMessage());
+                    failures.add(new Failure(ids.subList(from, to), e));
+                    return;
+                }
+                log.debug("Retrying sub-batch [{}, {}) after failure: {}", from, to, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis << attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failures.add(new Failure(ids.subList(from, to), e));
+                    return;
+                }
+            }
+        }
+    }
+
+    static long estimateBytes(String id, Embedding embedding, TextSegment textSegment) {
+        long bytes = BYTES_PER_RECORD_OVERHEAD + id.length() + (long) embedding.dimension() * BYTES_PER_FLOAT;
+        if (textSegment != null) {
+            bytes += utf8Length(textSegment.text());
+            for (Map.Entry<String, Object> entry : textSegment.metadata().toMap().entrySet()) {
+                bytes += entry.getKey().length() + String.valueOf(entry.getValue()).length() + 6;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Counts UTF-8 bytes without encoding the string, so sizing a batch does not copy every document.
+     */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private record Failure(List<String> ids, Throwable cause) {
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.test.ai.chroma.v2;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import dev.langchain4j.internal.Utils;
 import okhttp3.OkHttpClient;
 import retrofit2.Response;
@@ -15,16 +17,35 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.List;
 
+import static dev.langchain4j.internal.Utils.getOrDefault;
+
 class ChromaClientV2 {
 
+    /**
+     * Compact output and primitive float[] vectors: embeddings dominate the payload size.
+     * Jackson reads and writes float[] natively without boxing; a null inside a vector fails the call
+     * instead of being stored as 0. The mapper is immutable once configured, so all clients share it.
+     */
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JsonFactory.builder()
+                    .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+                    .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+                    .build())
+            .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final OkHttpClient httpClient;
     private final ChromaApiV2 chromaApiV2;
+    private final ChromaAsyncClientV2 asyncClient;
 
     private ChromaClientV2(Builder builder) {
-        OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
-                .callTimeout(builder.timeout)
-                .connectTimeout(builder.timeout)
-                .readTimeout(builder.timeout)
-                .writeTimeout(builder.timeout);
+        // newBuilder() keeps the transport's connection pool and dispatcher, interceptors stay per client
+        OkHttpClient.Builder httpClientBuilder = getOrDefault(builder.transport, ChromaHttpTransport::shared)
+                .newClientBuilder(builder.baseUrl);
+        if (builder.timeout != null) {
+            httpClientBuilder.callTimeout(builder.timeout);
+        }
 
         if (builder.logRequests) {
             httpClientBuilder.addInterceptor(new ChromaRequestLoggingInterceptor());
@@ -33,25 +54,33 @@ class ChromaClientV2 {
             httpClientBuilder.addInterceptor(new ChromaResponseLoggingInterceptor());
         }
 
-        ObjectMapper objectMapper = new ObjectMapper()
-                .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
-                .enable(SerializationFeature.INDENT_OUTPUT)
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
+        this.httpClient = httpClientBuilder.build();
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(Utils.ensureTrailingForwardSlash(builder.baseUrl))
-                .client(httpClientBuilder.build())
-                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .client(httpClient)
+                .addConverterFactory(JacksonConverterFactory.create(OBJECT_MAPPER))
                 .build();
 
         this.chromaApiV2 = retrofit.create(ChromaApiV2.class);
+        this.asyncClient = new ChromaAsyncClientV2(chromaApiV2);
+    }
+
+    /**
+     * Returns the non-blocking twin of this client. Both share the same Retrofit service and connection pool.
+     */
+    ChromaAsyncClientV2 async() {
+        return asyncClient;
+    }
+
+    OkHttpClient httpClient() {
+        return httpClient;
     }
 
     public static class Builder {
 
         private String baseUrl;
         private Duration timeout;
+        private ChromaHttpTransport transport;
         private boolean logRequests;
         private boolean logResponses;
 
@@ -65,6 +94,11 @@ class ChromaClientV2 {
             return this;
         }
 
+        public Builder transport(ChromaHttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
         public Builder logRequests(boolean logRequests) {
             this.logRequests = logRequests;
             return this;
@@ -93,9 +127,9 @@ class ChromaClientV2 {
         }
     }
 
-    Object createDb(CreateTenantOrDbRequest createCollectionRequest) {
+    Object createDb(String tenantName, CreateTenantOrDbRequest createCollectionRequest) {
         try {
-            Response<Object> response = chromaApiV2.createDb(createCollectionRequest).execute();
+            Response<Object> response = chromaApiV2.createDb(tenantName, createCollectionRequest).execute();
             if (response.isSuccessful()) {
                 return response.body();
             } else {
@@ -139,7 +173,20 @@ class ChromaClientV2 {
             Response<Object> retrofitResponse =
                     chromaApiV2.addEmbeddings(tenantName, dbName,collectionId, addEmbeddingsRequest).execute();
             if (retrofitResponse.isSuccessful()) {
-                System.out.println(retrofitResponse.body());
+                return retrofitResponse.body();
+            } else {
+                throw toException(retrofitResponse);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    Object upsertEmbeddings(String tenantName, String dbName, String collectionId, AddEmbeddingsRequest addEmbeddingsRequest) {
+        try {
+            Response<Object> retrofitResponse =
+                    chromaApiV2.upsertEmbeddings(tenantName, dbName, collectionId, addEmbeddingsRequest).execute();
+            if (retrofitResponse.isSuccessful()) {
                 return retrofitResponse.body();
             } else {
                 throw toException(retrofitResponse);
@@ -184,7 +231,7 @@ class ChromaClientV2 {
         }
     }
 
-    private static RuntimeException toException(Response<?> response) throws IOException {
+    static RuntimeException toException(Response<?> response) throws IOException {
         int code = response.code();
         String body = response.errorBody().string();
 
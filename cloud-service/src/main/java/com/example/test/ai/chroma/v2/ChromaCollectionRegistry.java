@@ -0,0 +1,116 @@
+package com.example.test.ai.chroma.v2;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of resolved Chroma collections, keyed by server, tenant, database and collection name.
+ * Stores resolve their collection through it lazily, so building a store costs no HTTP call and
+ * all stores of the same collection share a single lookup. Concurrent lookups of the same key are
+ * collapsed into one request; a failed lookup is not cached.
+ */
+public class ChromaCollectionRegistry {
+
+    private static final ChromaCollectionRegistry SHARED = new ChromaCollectionRegistry();
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    ChromaCollectionRegistry() {
+    }
+
+    public static ChromaCollectionRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached collection for the key, or resolves it with {@code loader} if it is missing or older than {@code ttl}.
+     */
+    Collection resolve(Key key, Duration ttl, Supplier<Collection> loader) {
+        return await(resolveAsync(key, ttl, () -> CompletableFuture.completedFuture(loader.get())));
+    }
+
+    /**
+     * Non-blocking variant of {@link #resolve}: the returned future completes when the cached or in-flight lookup does.
+     * Each caller gets its own copy, so cancelling it never cancels the lookup other callers are waiting on.
+     */
+    CompletableFuture<Collection> resolveAsync(Key key, Duration ttl, Supplier<CompletableFuture<Collection>> loader) {
+        while (true) {
+            Entry current = entries.get(key);
+            if (current != null && !current.isExpired()) {
+                return current.future.copy();
+            }
+            Entry fresh = new Entry(System.nanoTime() + ttl.toNanos());
+            boolean won = current == null
+                    ? entries.putIfAbsent(key, fresh) == null
+                    : entries.replace(key, current, fresh);
+            if (!won) {
+                continue;
+            }
+            CompletableFuture<Collection> loading;
+            try {
+                loading = loader.get();
+            } catch (RuntimeException e) {
+                loading = CompletableFuture.failedFuture(e);
+            }
+            loading.whenComplete((collection, error) -> {
+                if (error == null) {
+                    fresh.future.complete(collection);
+                    return;
+                }
+                entries.remove(key, fresh);
+                fresh.future.completeExceptionally(unwrap(error));
+            });
+            return fresh.future.copy();
+        }
+    }
+
+    /**
+     * Drops the cached id of one collection, e.g. after it was deleted or recreated outside this process.
+     */
+    public void invalidate(String baseUrl, String tenantName, String dbName, String collectionName) {
+        invalidate(new Key(baseUrl, tenantName, dbName, collectionName));
+    }
+
+    void invalidate(Key key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    record Key(String baseUrl, String tenantName, String dbName, String collectionName) {
+    }
+
+    private static final class Entry {
+
+        private final long expiresAtNanos;
+        private final CompletableFuture<Collection> future = new CompletableFuture<>();
+
+        private Entry(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired() {
+            return future.isDone() && System.nanoTime() - expiresAtNanos >= 0;
+        }
+    }
+
+    private static Collection await(CompletableFuture<Collection> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -12,14 +12,16 @@ import org.jetbrains.annotations.NotNull;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static dev.langchain4j.internal.Utils.getOrDefault;
-import static dev.langchain4j.internal.Utils.randomUUID;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
-import static java.time.Duration.ofSeconds;
+import static java.time.Duration.ofMinutes;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
@@ -30,39 +32,61 @@ import static java.util.stream.Collectors.toList;
 public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
 
     private final ChromaClientV2 chromaClientV2;
-    private String collectionId;
     private final String collectionName;
     private final String tenantName;
     private final String dbName;
 
+    private final ChromaIdStrategy idStrategy;
+    private final ChromaBulkIngester bulkIngester;
+    private final Set<ChromaInclude> include;
+    private final ChromaCollectionRegistry.Key collectionKey;
+    private final Duration collectionCacheTtl;
+
     /**
      * Initializes a new instance of ChromaEmbeddingStore with the specified parameters.
      *
      * @param baseUrl        The base URL of the Chroma service.
      * @param collectionName The name of the collection in the Chroma service. If not specified, "default" will be used.
-     * @param timeout        The timeout duration for the Chroma client. If not specified, 5 seconds will be used.
+     * @param timeout        The overall timeout of a single call to the Chroma service.
+     *                       If not specified, only the connect, read and write timeouts of the transport apply.
      * @param logRequests    If true, requests to the Chroma service are logged.
      * @param logResponses   If true, responses from the Chroma service are logged.
      */
     public ChromaEmbeddingStoreV2(
             String baseUrl,String tenantName,String dbName, String collectionName, Duration timeout, boolean logRequests, boolean logResponses) {
-        this.collectionName = getOrDefault(collectionName, "default");
-        this.tenantName = tenantName;
-        this.dbName = dbName;
-
-        this.chromaClientV2 = new ChromaClientV2.Builder()
+        this(builder()
                 .baseUrl(baseUrl)
-                .timeout(getOrDefault(timeout, ofSeconds(5)))
+                .collectionName(tenantName, dbName, collectionName)
+                .timeout(timeout)
                 .logRequests(logRequests)
-                .logResponses(logResponses)
+                .logResponses(logResponses));
+    }
+
+    private ChromaEmbeddingStoreV2(Builder builder) {
+        this.collectionName = getOrDefault(builder.collectionName, "default");
+        this.tenantName = builder.tenantName;
+        this.dbName = builder.dbName;
+
+        this.chromaClientV2 = new ChromaClientV2.Builder()
+                .baseUrl(builder.baseUrl)
+                .timeout(builder.timeout)
+                .transport(builder.transport)
+                .logRequests(builder.logRequests)
+                .logResponses(builder.logResponses)
                 .build();
 
-        Collection collection = chromaClientV2.collection(this.tenantName,this.dbName,this.collectionName);
-        if (collection == null) {
-            createCollection();
-        } else {
-            collectionId = collection.getId();
-        }
+        this.include = getOrDefault(builder.include, ChromaInclude::all);
+        this.idStrategy = getOrDefault(builder.idStrategy, ChromaIdStrategy::random);
+        // with deterministic ids a retried sub-batch overwrites whatever part of it was already stored
+        this.bulkIngester = new ChromaBulkIngester(
+                getOrDefault(builder.bulkIngestOptions, ChromaBulkIngestOptions::defaults),
+                idStrategy.deterministic()
+                        ? request -> chromaClientV2.upsertEmbeddings(tenantName, dbName, collectionId(), request)
+                        : request -> chromaClientV2.addEmbeddings(tenantName, dbName, collectionId(), request));
+
+        // the collection is resolved on first use through the shared registry, construction makes no HTTP call
+        this.collectionKey = new ChromaCollectionRegistry.Key(builder.baseUrl, tenantName, dbName, this.collectionName);
+        this.collectionCacheTtl = getOrDefault(builder.collectionCacheTtl, ofMinutes(10));
     }
 
     public static Builder builder() {
@@ -75,8 +99,13 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
         private String baseUrl;
         private String collectionName;
         private Duration timeout;
+        private ChromaHttpTransport transport;
         private boolean logRequests;
         private boolean logResponses;
+        private ChromaBulkIngestOptions bulkIngestOptions;
+        private Set<ChromaInclude> include;
+        private Duration collectionCacheTtl;
+        private ChromaIdStrategy idStrategy;
 
         /**
          * @param baseUrl The base URL of the Chroma service.
@@ -99,7 +128,8 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
         }
 
         /**
-         * @param timeout The timeout duration for the Chroma client. If not specified, 5 seconds will be used.
+         * @param timeout The overall timeout of a single call to the Chroma service.
+         *                If not specified, only the connect, read and write timeouts of the transport apply.
          * @return builder
          */
         public Builder timeout(Duration timeout) {
@@ -107,6 +137,17 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
             return this;
         }
 
+        /**
+         * @param transport The HTTP transport (connection pool, dispatcher, timeouts, protocols) to use.
+         *                  Stores sharing a transport share its connections.
+         *                  If not specified, {@link ChromaHttpTransport#shared()} will be used.
+         * @return builder
+         */
+        public Builder transport(ChromaHttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
         public Builder logRequests(boolean logRequests) {
             this.logRequests = logRequests;
             return this;
@@ -117,17 +158,57 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
             return this;
         }
 
+        /**
+         * @param bulkIngestOptions Batching, concurrency and retry settings used by {@link #addAllBulk}.
+         *                          If not specified, {@link ChromaBulkIngestOptions#defaults()} will be used.
+         * @return builder
+         */
+        public Builder bulkIngestOptions(ChromaBulkIngestOptions bulkIngestOptions) {
+            this.bulkIngestOptions = bulkIngestOptions;
+            return this;
+        }
+
+        /**
+         * @param include The fields returned for each match of {@link #search}. Distances are always returned.
+         *                If not specified, {@link ChromaInclude#all()} will be used;
+         *                use {@link ChromaInclude#withoutEmbeddings()} when only the matched text is needed.
+         * @return builder
+         */
+        public Builder include(Set<ChromaInclude> include) {
+            this.include = include;
+            return this;
+        }
+
+        /**
+         * @param collectionCacheTtl How long a resolved collection id is reused from {@link ChromaCollectionRegistry}
+         *                           before it is looked up again. If not specified, 10 minutes will be used.
+         * @return builder
+         */
+        public Builder collectionCacheTtl(Duration collectionCacheTtl) {
+            this.collectionCacheTtl = collectionCacheTtl;
+            return this;
+        }
+
+        /**
+         * @param idStrategy How ids are generated for records added without explicit ids.
+         *                   If not specified, {@link ChromaIdStrategy#random()} will be used;
+         *                   with a deterministic strategy such as {@link ChromaIdStrategy#contentHash()}
+         *                   those records are upserted, so ingesting the same document again overwrites it.
+         * @return builder
+         */
+        public Builder idStrategy(ChromaIdStrategy idStrategy) {
+            this.idStrategy = idStrategy;
+            return this;
+        }
+
         public ChromaEmbeddingStoreV2 build() {
-            return new ChromaEmbeddingStoreV2(
-                    this.baseUrl,this.tenantName,this.dbName, this.collectionName, this.timeout, this.logRequests, this.logResponses);
+            return new ChromaEmbeddingStoreV2(this);
         }
     }
 
     @Override
     public String add(Embedding embedding) {
-        String id = randomUUID();
-        add(id, embedding);
-        return id;
+        return add(embedding, null);
     }
 
     @Override
@@ -137,16 +218,26 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
 
     @Override
     public String add(Embedding embedding, TextSegment textSegment) {
-        String id = randomUUID();
-        addInternal(id, embedding, textSegment);
+        String id = idStrategy.generate(embedding, textSegment);
+        writeGenerated(singletonList(id), singletonList(embedding), textSegment == null ? null : singletonList(textSegment));
         return id;
     }
 
     @Override
     public List<String> addAll(List<Embedding> embeddings) {
-        List<String> ids = embeddings.stream().map(embedding -> randomUUID()).collect(toList());
+        return addAll(embeddings, null);
+    }
+
+    /**
+     * Stores the embeddings with ids from the configured {@link ChromaIdStrategy}.
+     * A deterministic strategy makes this an upsert.
+     *
+     * @return the generated ids, in the same order as {@code embeddings}
+     */
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = generateIds(embeddings, textSegments);
 
-        addAll(ids, embeddings, null);
+        writeGenerated(ids, embeddings, textSegments);
 
         return ids;
     }
@@ -157,7 +248,66 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
 
     @Override
     public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
-        AddEmbeddingsRequest addEmbeddingsRequest = AddEmbeddingsRequest.builder()
+        chromaClientV2.addEmbeddings(tenantName,dbName,collectionId(), toAddEmbeddingsRequest(ids, embeddings, textSegments));
+    }
+
+    /**
+     * Like {@link #addAll(List, List, List)}, but records whose ids already exist in the collection are overwritten.
+     */
+    public void upsertAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        chromaClientV2.upsertEmbeddings(tenantName, dbName, collectionId(), toAddEmbeddingsRequest(ids, embeddings, textSegments));
+    }
+
+    /**
+     * Bulk-ingest variant of {@link #addAll(List, List)} for large imports.
+     *
+     * @return the generated ids, in the same order as {@code embeddings}
+     * @see #addAllBulk(List, List, List)
+     */
+    public List<String> addAllBulk(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = generateIds(embeddings, textSegments);
+
+        addAllBulk(ids, embeddings, textSegments);
+
+        return ids;
+    }
+
+    /**
+     * Bulk-ingest variant of {@link #addAll(List, List, List)} for large imports.
+     * The records are split into sub-batches bounded by record count and payload bytes,
+     * which are sent with a bounded number of requests in flight. A failed sub-batch is retried on its own.
+     * With a deterministic {@link ChromaIdStrategy} the sub-batches are upserted, so retries never fail on ids
+     * that a timed-out request had already stored.
+     *
+     * @throws ChromaBulkIngestException if some sub-batches still fail after retrying; the rest are stored
+     * @see ChromaBulkIngestOptions
+     */
+    public void addAllBulk(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        bulkIngester.ingest(ids, embeddings, textSegments);
+    }
+
+    List<String> generateIds(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            ids.add(idStrategy.generate(embeddings.get(i), textSegments == null ? null : textSegments.get(i)));
+        }
+        return ids;
+    }
+
+    ChromaIdStrategy idStrategy() {
+        return idStrategy;
+    }
+
+    private void writeGenerated(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (idStrategy.deterministic()) {
+            upsertAll(ids, embeddings, textSegments);
+        } else {
+            addAll(ids, embeddings, textSegments);
+        }
+    }
+
+    static AddEmbeddingsRequest toAddEmbeddingsRequest(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        return AddEmbeddingsRequest.builder()
                 .embeddings(embeddings.stream().map(Embedding::vector).collect(toList()))
                 .ids(ids)
                 .metadatas(
@@ -172,26 +322,71 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
                                 ? null
                                 : textSegments.stream().map(TextSegment::text).collect(toList()))
                 .build();
-
-        chromaClientV2.addEmbeddings(tenantName,dbName,collectionId, addEmbeddingsRequest);
     }
 
     @Override
     public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
-        QueryRequest queryRequest = new QueryRequest.Builder()
-                .queryEmbeddings(request.queryEmbedding().vectorAsList())
+        return search(request, include);
+    }
+
+    /**
+     * Searches like {@link #search(EmbeddingSearchRequest)}, returning only the given fields for each match.
+     * Matches carry a {@code null} embedding unless {@link ChromaInclude#EMBEDDINGS} is requested,
+     * and a {@code null} text segment unless {@link ChromaInclude#DOCUMENTS} is requested.
+     *
+     * @param request the search request
+     * @param include the fields to return; distances are always returned
+     * @return the search result
+     */
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, Set<ChromaInclude> include) {
+        return new EmbeddingSearchResult<>(queryAndFilter(toQueryRequest(request, include), request.minScore()));
+    }
+
+    /**
+     * Runs several searches with as few round-trips as possible: requests that share a filter are coalesced into
+     * one Chroma {@code /query} call carrying all their query vectors, and the response is split back out per request.
+     *
+     * @param requests the searches to run
+     * @return one result per request, in the same order as {@code requests}
+     */
+    public List<EmbeddingSearchResult<TextSegment>> searchAll(List<EmbeddingSearchRequest> requests) {
+        return searchAll(requests, include);
+    }
+
+    /**
+     * Runs several searches like {@link #searchAll(List)}, returning only the given fields for each match.
+     *
+     * @see #search(EmbeddingSearchRequest, Set)
+     */
+    public List<EmbeddingSearchResult<TextSegment>> searchAll(List<EmbeddingSearchRequest> requests, Set<ChromaInclude> include) {
+        List<EmbeddingSearchResult<TextSegment>> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        for (ChromaBatchQuery batch : ChromaBatchQuery.group(requests)) {
+            batch.splitInto(chromaClientV2.queryEmbeddings(tenantName,dbName,collectionId(), batch.toQueryRequest(include)), results);
+        }
+        return results;
+    }
+
+    /**
+     * Returns a non-blocking view of this store that shares its HTTP client and collection.
+     */
+    public ChromaAsyncEmbeddingStoreV2 async() {
+        return new ChromaAsyncEmbeddingStoreV2(this, chromaClientV2.async());
+    }
+
+    static QueryRequest toQueryRequest(EmbeddingSearchRequest request, Set<ChromaInclude> include) {
+        return new QueryRequest.Builder()
+                .queryEmbeddings(request.queryEmbedding().vector())
                 .nResults(request.maxResults())
                 .where(ChromaMetadataFilterMapper.map(request.filter()))
+                .include(ChromaInclude.toQueryInclude(include))
                 .build();
-
-        return new EmbeddingSearchResult<>(queryAndFilter(queryRequest, request.minScore()));
     }
 
     @Override
     public void removeAll(java.util.Collection<String> ids) {
         ensureNotEmpty(ids, "ids");
         chromaClientV2.deleteEmbeddings(tenantName,dbName,
-                collectionId,
+                collectionId(),
                 DeleteEmbeddingsRequest.builder().ids(new ArrayList<>(ids)).build());
     }
 
@@ -199,7 +394,7 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
     public void removeAll(Filter filter) {
         ensureNotNull(filter, "filter");
         chromaClientV2.deleteEmbeddings(tenantName,dbName,
-                collectionId,
+                collectionId(),
                 DeleteEmbeddingsRequest.builder()
                         .where(ChromaMetadataFilterMapper.map(filter))
                         .build());
@@ -208,24 +403,36 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
     @Override
     public void removeAll() {
         chromaClientV2.deleteCollection(tenantName,dbName,collectionName);
-        createCollection();
+        // the collection gets a new id when it is recreated on next use
+        ChromaCollectionRegistry.shared().invalidate(collectionKey);
     }
 
     private @NotNull List<EmbeddingMatch<TextSegment>> queryAndFilter(QueryRequest queryRequest, double minScore) {
-        QueryResponse queryResponse = chromaClientV2.queryEmbeddings(tenantName,dbName,collectionId, queryRequest);
-        List<EmbeddingMatch<TextSegment>> matches = toEmbeddingMatches(queryResponse);
+        QueryResponse queryResponse = chromaClientV2.queryEmbeddings(tenantName,dbName,collectionId(), queryRequest);
+        return filterByMinScore(toEmbeddingMatches(queryResponse), minScore);
+    }
+
+    static List<EmbeddingMatch<TextSegment>> filterByMinScore(List<EmbeddingMatch<TextSegment>> matches, double minScore) {
         return matches.stream().filter(match -> match.score() >= minScore).collect(toList());
     }
 
-    private static List<EmbeddingMatch<TextSegment>> toEmbeddingMatches(QueryResponse queryResponse) {
+    static List<EmbeddingMatch<TextSegment>> toEmbeddingMatches(QueryResponse queryResponse) {
+        return toEmbeddingMatches(queryResponse, 0);
+    }
+
+    /**
+     * Reads the matches of the {@code q}-th query vector from a (possibly batched) query response.
+     */
+    static List<EmbeddingMatch<TextSegment>> toEmbeddingMatches(QueryResponse queryResponse, int q) {
         List<EmbeddingMatch<TextSegment>> embeddingMatches = new ArrayList<>();
 
-        for (int i = 0; i < queryResponse.getIds().get(0).size(); i++) {
-            double score = distanceToScore(queryResponse.getDistances().get(0).get(i));
-            String embeddingId = queryResponse.getIds().get(0).get(i);
-            Embedding embedding =
-                    Embedding.from(queryResponse.getEmbeddings().get(0).get(i));
-            TextSegment textSegment = toTextSegment(queryResponse, i);
+        for (int i = 0; i < queryResponse.getIds().get(q).size(); i++) {
+            double score = distanceToScore(queryResponse.getDistances().get(q).get(i));
+            String embeddingId = queryResponse.getIds().get(q).get(i);
+            Embedding embedding = queryResponse.getEmbeddings() == null
+                    ? null
+                    : Embedding.from(queryResponse.getEmbeddings().get(q).get(i));
+            TextSegment textSegment = toTextSegment(queryResponse, q, i);
 
             embeddingMatches.add(new EmbeddingMatch<>(score, embeddingId, embedding, textSegment));
         }
@@ -243,15 +450,75 @@ public class ChromaEmbeddingStoreV2 implements EmbeddingStore<TextSegment> {
         return 1 - (distance / 2);
     }
 
-    private static TextSegment toTextSegment(QueryResponse queryResponse, int i) {
-        String text = queryResponse.getDocuments().get(0).get(i);
-        Map<String, Object> metadata = queryResponse.getMetadatas().get(0).get(i);
+    private static TextSegment toTextSegment(QueryResponse queryResponse, int q, int i) {
+        if (queryResponse.getDocuments() == null) {
+            return null;
+        }
+        String text = queryResponse.getDocuments().get(q).get(i);
+        Map<String, Object> metadata = queryResponse.getMetadatas() == null ? null : queryResponse.getMetadatas().get(q).get(i);
         return text == null ? null : TextSegment.from(text, metadata == null ? new Metadata() : new Metadata(metadata));
     }
 
-    private void createCollection() {
-        collectionId = chromaClientV2
-                .createCollection(tenantName,dbName,new CreateCollectionRequest(this.collectionName))
+    String tenantName() {
+        return tenantName;
+    }
+
+    String dbName() {
+        return dbName;
+    }
+
+    Set<ChromaInclude> include() {
+        return include;
+    }
+
+    String collectionId() {
+        return ChromaCollectionRegistry.shared()
+                .resolve(collectionKey, collectionCacheTtl, this::getOrCreateCollection)
                 .getId();
     }
+
+    /**
+     * Non-blocking variant of {@link #collectionId()}: a cached id completes immediately,
+     * otherwise the lookup runs on OkHttp's dispatcher instead of the caller's thread.
+     */
+    CompletableFuture<String> collectionIdAsync() {
+        return ChromaCollectionRegistry.shared()
+                .resolveAsync(collectionKey, collectionCacheTtl, this::getOrCreateCollectionAsync)
+                .thenApply(Collection::getId);
+    }
+
+    /**
+     * Resolves the collection with a single {@code get_or_create} call.
+     * If that fails, the tenant or database may be missing: both are created (ignoring "already exists") and the call is retried once.
+     */
+    private Collection getOrCreateCollection() {
+        CreateCollectionRequest request = new CreateCollectionRequest(collectionName, true);
+        try {
+            return chromaClientV2.createCollection(tenantName,dbName,request);
+        } catch (RuntimeException e) {
+            ignoreFailure(() -> chromaClientV2.createTenant(new CreateTenantOrDbRequest(tenantName)));
+            ignoreFailure(() -> chromaClientV2.createDb(tenantName, new CreateTenantOrDbRequest(dbName)));
+            return chromaClientV2.createCollection(tenantName,dbName,request);
+        }
+    }
+
+    private CompletableFuture<Collection> getOrCreateCollectionAsync() {
+        ChromaAsyncClientV2 asyncClient = chromaClientV2.async();
+        CreateCollectionRequest request = new CreateCollectionRequest(collectionName, true);
+        return asyncClient.createCollection(tenantName, dbName, request)
+                .exceptionallyCompose(e -> asyncClient.createTenant(new CreateTenantOrDbRequest(tenantName))
+                        // already exists, or the retried call below reports the real problem
+                        .handle((ignored, error) -> null)
+                        .thenCompose(ignored -> asyncClient.createDb(tenantName, new CreateTenantOrDbRequest(dbName)))
+                        .handle((ignored, error) -> null)
+                        .thenCompose(ignored -> asyncClient.createCollection(tenantName, dbName, request)));
+    }
+
+    private static void ignoreFailure(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException ignored) {
+            // already exists, or the retried call below reports the real problem
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.example.test.ai.chroma.v2;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static java.time.Duration.ofMinutes;
+import static java.time.Duration.ofSeconds;
+
+/**
+ * HTTP transport shared by Chroma clients. All stores built on the same transport share one connection pool
+ * and one dispatcher, so several collections per service reuse warm TCP/TLS connections instead of each
+ * paying for its own pool. Clients derive from it via {@link #newClientBuilder}, which keeps the
+ * pool and dispatcher while allowing per-client interceptors and an overall call timeout.
+ * <p>
+ * The transport itself always speaks {@code [HTTP_2, HTTP_1_1]}, negotiated through ALPN on TLS. With
+ * {@link Builder#h2c} enabled, only clients derived for a plain {@code http://} base URL switch to
+ * HTTP/2 prior knowledge, so one transport can serve both cleartext and TLS hosts.
+ */
+public class ChromaHttpTransport {
+
+    private static final class SharedHolder {
+        private static final ChromaHttpTransport SHARED = builder().build();
+    }
+
+    private final OkHttpClient client;
+    private final boolean h2c;
+
+    private ChromaHttpTransport(Builder builder) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(getOrDefault(builder.maxRequests, 64));
+        dispatcher.setMaxRequestsPerHost(getOrDefault(builder.maxRequestsPerHost, 16));
+
+        Duration keepAlive = getOrDefault(builder.keepAlive, ofMinutes(5));
+        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        getOrDefault(builder.maxIdleConnections, 16), keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(getOrDefault(builder.connectTimeout, ofSeconds(5)))
+                .readTimeout(getOrDefault(builder.readTimeout, ofSeconds(30)))
+                .writeTimeout(getOrDefault(builder.writeTimeout, ofSeconds(30)))
+                .retryOnConnectionFailure(true)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        this.client = clientBuilder.build();
+        this.h2c = builder.h2c;
+    }
+
+    /**
+     * The process-wide transport with default settings, used by every store that does not configure its own.
+     */
+    public static ChromaHttpTransport shared() {
+        return SharedHolder.SHARED;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * A builder for a client talking to {@code baseUrl} that keeps this transport's pool and dispatcher.
+     * Uses HTTP/2 prior knowledge only when h2c is enabled and {@code baseUrl} is cleartext: over TLS,
+     * OkHttp would advertise nothing but {@code h2_prior_knowledge} in ALPN and silently fall back to HTTP/1.1.
+     */
+    OkHttpClient.Builder newClientBuilder(String baseUrl) {
+        OkHttpClient.Builder builder = client.newBuilder();
+        if (h2c && baseUrl != null && baseUrl.regionMatches(true, 0, "http://", 0, "http://".length())) {
+            // cleartext HTTP/2 has no upgrade negotiation in OkHttp, the server must accept prior knowledge
+            builder.protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        return builder;
+    }
+
+    public static class Builder {
+
+        private Integer maxIdleConnections;
+        private Duration keepAlive;
+        private Integer maxRequests;
+        private Integer maxRequestsPerHost;
+        private Duration connectTimeout;
+        private Duration readTimeout;
+        private Duration writeTimeout;
+        private boolean h2c;
+
+        /**
+         * @param maxIdleConnections Maximum number of idle connections kept in the pool. If not specified, 16 will be used.
+         * @return builder
+         */
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * @param keepAlive How long an idle connection stays in the pool. If not specified, 5 minutes will be used.
+         * @return builder
+         */
+        public Builder keepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * @param maxRequests Maximum number of concurrent asynchronous requests. If not specified, 64 will be used.
+         * @return builder
+         */
+        public Builder maxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerHost Maximum number of concurrent asynchronous requests to one Chroma host.
+         *                           If not specified, 16 will be used.
+         * @return builder
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * @param connectTimeout Timeout for establishing a connection. If not specified, 5 seconds will be used.
+         * @return builder
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param readTimeout Maximum idle time between two reads of a response. If not specified, 30 seconds will be used.
+         * @return builder
+         */
+        public Builder readTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * @param writeTimeout Maximum idle time between two writes of a request. If not specified, 30 seconds will be used.
+         * @return builder
+         */
+        public Builder writeTimeout(Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+            return this;
+        }
+
+        /**
+         * @param h2c If true, clients for plain {@code http://} Chroma URLs use HTTP/2 prior knowledge (h2c).
+         *            Only enable this when the server (or the proxy in front of it) accepts h2c.
+         *            Clients for {@code https://} URLs ignore this setting and keep offering
+         *            {@code h2} and {@code http/1.1} through ALPN.
+         * @return builder
+         */
+        public Builder h2c(boolean h2c) {
+            this.h2c = h2c;
+            return this;
+        }
+
+        public ChromaHttpTransport build() {
+            return new ChromaHttpTransport(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static dev.langchain4j.internal.Utils.randomUUID;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
+
+/**
+ * Generates the ids of records that are added to {@link ChromaEmbeddingStoreV2} without explicit ids.
+ * <p>
+ * With a deterministic strategy the same chunk always gets the same id, and the store writes through Chroma's
+ * {@code /upsert} endpoint. Re-running an import, or retrying a batch that partially failed, then overwrites
+ * the existing records instead of adding duplicates.
+ */
+public interface ChromaIdStrategy {
+
+    /**
+     * @param embedding   the embedding being stored
+     * @param textSegment the segment being stored, or {@code null} when only the embedding is stored
+     * @return the record id
+     */
+    String generate(Embedding embedding, TextSegment textSegment);
+
+    /**
+     * @return {@code true} if equal input always yields the same id, so writes can be upserts
+     */
+    default boolean deterministic() {
+        return true;
+    }
+
+    /**
+     * A random UUID per record, which is how the store generated ids before id strategies were added.
+     */
+    static ChromaIdStrategy random() {
+        return new ChromaIdStrategy() {
+            @Override
+            public String generate(Embedding embedding, TextSegment textSegment) {
+                return randomUUID();
+            }
+
+            @Override
+            public boolean deterministic() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A name-based UUID from the SHA-256 of the segment text and its metadata (sorted by key).
+     * Ids are only as distinct as that metadata: equal text gets two ids only if the two segments differ in some
+     * metadata value. The ingestion paths put the normalized absolute path of the source file ({@code file_path})
+     * and the chunk index into the metadata, so same-named files in different folders, or equal text twice in one
+     * document, do not share ids. Without a segment the vector itself is hashed.
+     */
+    static ChromaIdStrategy contentHash() {
+        return (embedding, textSegment) -> {
+            MessageDigest digest = sha256();
+            if (textSegment == null) {
+                ByteBuffer bytes = ByteBuffer.allocate(embedding.dimension() * Float.BYTES);
+                bytes.asFloatBuffer().put(embedding.vector());
+                digest.update(bytes);
+            } else {
+                digest.update(textSegment.text().getBytes(StandardCharsets.UTF_8));
+                for (Map.Entry<String, Object> entry : new TreeMap<>(textSegment.metadata().toMap()).entrySet()) {
+                    digest.update((byte) 0);
+                    digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '=');
+                    digest.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return toUuid(digest.digest());
+        };
+    }
+
+    /**
+     * A name-based UUID from the source document and the position of the chunk in it, read from the segment metadata.
+     * A changed chunk keeps its id and is overwritten in place; chunks past the new end of a shorter document
+     * have to be removed by the caller.
+     *
+     * @param sourceKey   metadata key that identifies the source document, e.g. {@code file_path}
+     * @param positionKey metadata key holding the chunk position, e.g. {@code index} as set by the langchain4j splitters
+     */
+    static ChromaIdStrategy sourcePosition(String sourceKey, String positionKey) {
+        ensureNotBlank(sourceKey, "sourceKey");
+        ensureNotBlank(positionKey, "positionKey");
+        return (embedding, textSegment) -> {
+            Object source = textSegment == null ? null : textSegment.metadata().toMap().get(sourceKey);
+            Object position = textSegment == null ? null : textSegment.metadata().toMap().get(positionKey);
+            if (source == null || position == null) {
+                throw new IllegalArgumentException(String.format(
+                        "segment metadata must contain '%s' and '%s' to derive its id", sourceKey, positionKey));
+            }
+            MessageDigest digest = sha256();
+            digest.update(String.valueOf(source).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(position).getBytes(StandardCharsets.UTF_8));
+            return toUuid(digest.digest());
+        };
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formats the first 128 bits of a hash as a version 5 style (name-based) UUID.
+     */
+    private static String toUuid(byte[] hash) {
+        hash[6] = (byte) ((hash[6] & 0x0f) | 0x50);
+        hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
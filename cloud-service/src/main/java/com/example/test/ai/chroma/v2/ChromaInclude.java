@@ -0,0 +1,52 @@
+package com.example.test.ai.chroma.v2;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Fields Chroma returns for each hit of a query, sent as the {@code include} list of {@link QueryRequest}.
+ * Leaving out {@link #EMBEDDINGS} avoids downloading and parsing a full vector per hit when only the text is needed.
+ */
+public enum ChromaInclude {
+
+    DOCUMENTS("documents"),
+    METADATAS("metadatas"),
+    DISTANCES("distances"),
+    EMBEDDINGS("embeddings");
+
+    private final String value;
+
+    ChromaInclude(String value) {
+        this.value = value;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Every field, which is what Chroma searches returned before projection control was added.
+     */
+    public static Set<ChromaInclude> all() {
+        return EnumSet.allOf(ChromaInclude.class);
+    }
+
+    /**
+     * Everything except the vectors: enough to build the matched {@code TextSegment} and its score.
+     */
+    public static Set<ChromaInclude> withoutEmbeddings() {
+        return EnumSet.of(DOCUMENTS, METADATAS, DISTANCES);
+    }
+
+    /**
+     * Distances are always requested, because the score of every match is derived from them.
+     */
+    static List<String> toQueryInclude(Set<ChromaInclude> include) {
+        EnumSet<ChromaInclude> fields = include.isEmpty() ? EnumSet.noneOf(ChromaInclude.class) : EnumSet.copyOf(include);
+        fields.add(DISTANCES);
+        return fields.stream().map(ChromaInclude::value).collect(toList());
+    }
+}
@@ -7,15 +7,24 @@ public class CreateCollectionRequest {
 
     private final String name;
     private final Map<String, Object> metadata;
+    private final Boolean getOrCreate;
 
     /**
      * Currently, cosine distance is always used as the distance method for chroma implementation
      */
     CreateCollectionRequest(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param getOrCreate if true, Chroma returns the existing collection instead of failing when the name is taken
+     */
+    CreateCollectionRequest(String name, Boolean getOrCreate) {
         this.name = name;
         HashMap<String, Object> metadata = new HashMap<>();
         metadata.put("hnsw:space", "cosine");
         this.metadata = metadata;
+        this.getOrCreate = getOrCreate;
     }
 
     public String getName() {
@@ -25,4 +34,8 @@ public class CreateCollectionRequest {
     public Map<String, Object> getMetadata() {
         return metadata;
     }
+
+    public Boolean getGetOrCreate() {
+        return getOrCreate;
+    }
 }
@@ -10,7 +10,7 @@ class QueryRequest {
 
     //where 过滤器用于通过 metadata 进行过滤，where_document 过滤器用于通过 document 内容进行过滤。
     private final Map<String, Object> where;
-    private final List<List<Float>> queryEmbeddings;
+    private final List<float[]> queryEmbeddings;
     private final int nResults;
     private final List<String> include;
 
@@ -25,7 +25,7 @@ class QueryRequest {
         return where;
     }
 
-    public List<List<Float>> getQueryEmbeddings() {
+    public List<float[]> getQueryEmbeddings() {
         return queryEmbeddings;
     }
 
@@ -40,7 +40,7 @@ class QueryRequest {
     public static class Builder {
 
         private Map<String, Object> where;
-        private List<List<Float>> queryEmbeddings;
+        private List<float[]> queryEmbeddings;
         private int nResults;
         private List<String> include = asList("metadatas", "documents", "distances", "embeddings");
 
@@ -49,11 +49,19 @@ class QueryRequest {
             return this;
         }
 
-        public Builder queryEmbeddings(List<Float> queryEmbeddings) {
+        public Builder queryEmbeddings(float[] queryEmbeddings) {
             this.queryEmbeddings = singletonList(queryEmbeddings);
             return this;
         }
 
+        /**
+         * Sends several query vectors in one request; Chroma answers with one result list per vector, in the same order.
+         */
+        public Builder batchQueryEmbeddings(List<float[]> queryEmbeddings) {
+            this.queryEmbeddings = queryEmbeddings;
+            return this;
+        }
+
         public Builder nResults(int nResults) {
             this.nResults = nResults;
             return this;
@@ -6,7 +6,7 @@ import java.util.Map;
 public class QueryResponse {
 
     private List<List<String>> ids;
-    private List<List<List<Float>>> embeddings;
+    private List<List<float[]>> embeddings;
     private List<List<String>> documents;
     private List<List<Map<String, Object>>> metadatas;
     private List<List<Double>> distances;
@@ -15,7 +15,7 @@ public class QueryResponse {
         return ids;
     }
 
-    public List<List<List<Float>>> getEmbeddings() {
+    public List<List<float[]>> getEmbeddings() {
         return embeddings;
     }
 
@@ -15,35 +15,37 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Stream;
 
 public class BatchDocumentImporter {
     private static final String CHROMA_PERSIST_DIR = "f:\\vcom";
     private static final String COLLECTION_NAME = "documents";
+    // 重复分块的出处，放在导入目录之外，免得下次导入时被当成文档
+    private static final Path DUPLICATES_FILE = Paths.get(System.getProperty("user.home"), ".cache", "dedup", COLLECTION_NAME + ".json");
     private static final int CHUNK_SIZE = 500;  // 分块大小
     private static final int STEP = 300;        // 分块步长
 
     public static void main(String[] args) {
         // 1. 向量化存储到 chroma
-        ChromaService chroma = new ChromaService();
-
-        // 2. 遍历文件夹中的所有文件
-        Path directory = Paths.get("f:\\vcom");
-        try (Stream<Path> paths = Files.walk(directory)) {
-            paths.filter(Files::isRegularFile)
-                    .forEach(file -> importFile(chroma, file));
+        try (ChromaService chroma = new ChromaService()) {
+            // 2. 遍历文件夹，经 检测 → 解析 → 分块（去重）→ 向量化 → 写入 流水线导入，各阶段并发度独立配置
+            NearDuplicateFilter deduplicator = new NearDuplicateFilter();
+            IngestionPipeline pipeline = IngestionPipeline.builder(chroma)
+                    .stage(IngestionPipeline.Stage.PARSE, 4, 64)
+                    .deduplicator(deduplicator)
+                    .build();
+            IngestionPipeline.Report report = pipeline.run(Paths.get(CHROMA_PERSIST_DIR));
+            chroma.saveLexicalIndex();
+            System.out.println(JSONObject.toJSONString(report));
+            // 页眉页脚、模板条款等重复分块只存了一份，每份对应的所有出处写到文件里
+            deduplicator.save(DUPLICATES_FILE);
+            System.out.println("重复分块出处: " + DUPLICATES_FILE);
         } catch (IOException e) {
             e.printStackTrace();
         }
-
-
     }
 
     public static List<dev.langchain4j.data.segment.TextSegment> loadAndChunk(String filePath) throws Exception {
@@ -53,7 +55,7 @@ public class BatchDocumentImporter {
 
 
         // 2. 分割文档（选择任一分割器）
-        List<TextSegment> segments = DocumentSplitterExample.splitByFixedSize(document);
+        List<TextSegment> segments = DocumentSplitterExample.splitByTokens(document);
 
         // 3. 输出结果
 //        System.out.println("分块数量: " + segments.size());
@@ -65,41 +67,6 @@ public class BatchDocumentImporter {
     }
 
 
-    // 导入单个文件
-    private static void importFile(ChromaService chroma, Path filePath) {
-        try {
-            if (FileTypeChecker.isWordDocument(filePath)) {
-                System.out.println("这是一个 Word 文档");
-            } else if (FileTypeChecker.isExcelDocument(filePath)) {
-                System.out.println("这是一个 Excel 文档");
-            } else if (FileTypeChecker.isPdf(filePath)) {
-                System.out.println("这是一个 PDF 文档");
-            } else {
-                return;
-            }
-            String fileName = filePath.getFileName().toString();
-            if(!FileTypeChecker.isPdf(fileName) && !FileTypeChecker.isWordDocument(fileName) && !FileTypeChecker.isExcelDocument(fileName)){
-                return;
-            }
-            //分割文件
-            List<TextSegment> segments = loadAndChunk(fileName);
-            // 异步插入
-            ExecutorService executor = Executors.newFixedThreadPool(4);
-            List<List<TextSegment>> lists = splitList(segments, 4);
-            lists.forEach(segment -> executor.submit(() -> {
-                // 5. 生成向量并存入 Chroma
-                List<String> ids = chroma.storeDocument(segment);
-                System.out.println(JSONObject.toJSONString(ids));
-            }));
-            executor.shutdown();
-
-
-        } catch (Exception e) {
-            System.err.println("导入文件失败：" + filePath);
-            e.printStackTrace();
-        }
-    }
-
     // 使用 Tika 提取文本
     private static String extractText(File file) throws IOException, TikaException, SAXException {
         BodyContentHandler handler = new BodyContentHandler(-1);
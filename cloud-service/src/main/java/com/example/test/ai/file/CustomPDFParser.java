@@ -5,15 +5,28 @@ import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.pdf.PDFParser;
 import org.apache.tika.parser.pdf.PDFParserConfig;
 import org.apache.tika.sax.BodyContentHandler;
+import org.xml.sax.ContentHandler;
 
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class CustomPDFParser {
-    private static final int writeLimit  = 10000;
+    /**
+     * -1 表示不限制大小；需要控制内存时用 {@link DocumentUtils#streamChunks} 边解析边分块
+     */
+    private static final int writeLimit  = -1;
 
     public static String parseLargePDF(Path filePath) throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(writeLimit);
+        parseLargePDF(filePath, handler);
+        return handler.toString();
+    }
+
+    /**
+     * 解析 PDF 正文并把 SAX 事件交给 handler，不在内存中拼接全文
+     */
+    public static void parseLargePDF(Path filePath, ContentHandler handler) throws Exception {
         PDFParserConfig config = new PDFParserConfig();
         config.setMaxMainMemoryBytes(1 * 1024 * 1024); // 允许 1MB 内存
         config.setOcrStrategy(PDFParserConfig.OCR_STRATEGY.NO_OCR);       // 禁用 OCR（若无需）
@@ -21,14 +34,12 @@ public class CustomPDFParser {
         PDFParser parser = new PDFParser();
         parser.setPDFParserConfig(config);
 
-        BodyContentHandler handler = new BodyContentHandler(writeLimit);
         Metadata metadata = new Metadata();
         ParseContext context = new ParseContext();
         context.set(PDFParserConfig.class, config);
 
         try (InputStream stream = Files.newInputStream(filePath)) {
             parser.parse(stream, handler, metadata, context);
-            return handler.toString();
         }
     }
 }
\ No newline at end of file
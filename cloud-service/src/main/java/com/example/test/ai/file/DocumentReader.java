@@ -15,24 +15,33 @@ import java.io.InputStream;
 import java.nio.file.Files;
 
 public class DocumentReader {
-    private static final int writeLimit  = 10000;
+    /**
+     * -1 表示不限制大小；需要控制内存时用 {@link DocumentUtils#streamChunks} 边解析边分块
+     */
+    private static final int writeLimit  = -1;
 
     private static final Tika tika = new Tika();
 
     public static String parseDocument(File file) throws IOException, TikaException, SAXException {
-        // 使用流式 ContentHandler（限制内容长度，避免 OOM）
-        ContentHandler handler = new BodyContentHandler(writeLimit); // -1 表示不限制大小
+        ContentHandler handler = new BodyContentHandler(writeLimit);
+        parseDocument(file, handler);
+        return handler.toString();
+
+//        try (InputStream stream = Files.newInputStream(file.toPath())) {
+//            // 自动检测文件类型并解析内容
+//            return tika.parseToString(stream);
+//        }
+    }
+
+    /**
+     * 解析正文并把 SAX 事件交给 handler，不在内存中拼接全文
+     */
+    public static void parseDocument(File file, ContentHandler handler) throws IOException, TikaException, SAXException {
         AutoDetectParser parser = new AutoDetectParser();
         ParseContext context = new ParseContext();
 
         try (InputStream stream = Files.newInputStream(file.toPath())) {
             parser.parse(stream, handler, new Metadata(), context);
-            return handler.toString();
         }
-
-//        try (InputStream stream = Files.newInputStream(file.toPath())) {
-//            // 自动检测文件类型并解析内容
-//            return tika.parseToString(stream);
-//        }
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,8 @@ import java.util.List;
 
 public class DocumentSplitterExample {
 
+    private static final StructuredTextSplitter STRUCTURED_SPLITTER = StructuredTextSplitter.builder().build();
+
     public static List<TextSegment> splitBySentence(Document document) {
         DocumentBySentenceSplitter splitter = new DocumentBySentenceSplitter(50,5);
         return splitter.split(document);
@@ -24,4 +26,11 @@ public class DocumentSplitterExample {
         DocumentByCharacterSplitter splitter = new DocumentByCharacterSplitter(500,50);
         return splitter.split(document);
     }
-}
\ No newline at end of file
+
+    /**
+     * 按 token 预算分块，保留标题、段落和表格行的边界；默认分块方式
+     */
+    public static List<TextSegment> splitByTokens(Document document) {
+        return STRUCTURED_SPLITTER.split(document);
+    }
+}
@@ -2,11 +2,32 @@ package com.example.test.ai.file;
 
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.tika.sax.BodyContentHandler;
 
 import java.io.File;
+import java.util.function.Consumer;
 
 public class DocumentUtils {
 
+    /**
+     * 达到这个大小的 PDF 按页段并行抽取，小文件单线程解析更快。按文件大小判断，不用为了数页数先把文档加载一遍
+     */
+    private static final long PARALLEL_PDF_MIN_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * 表格每个分块最多的行数，字符数上限与其他文档的分块一致
+     */
+    private static final int SPREADSHEET_ROWS_PER_CHUNK = 20;
+
+    /**
+     * 导入默认的分块规则：按文档结构，每块不超过 480 token
+     */
+    private static final StructuredTextSplitter DEFAULT_SPLITTER = StructuredTextSplitter.builder().build();
+
+    private static final ParallelPdfExtractor PDF_EXTRACTOR =
+            new ParallelPdfExtractor(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 25);
+
     public static Document loadDocument(File file) throws Exception {
         String text = null;
         if(file.getName().endsWith("pdf")){
@@ -14,7 +35,74 @@ public class DocumentUtils {
         }else {
             text = DocumentReader.parseDocument(file);
         }
-        Metadata metadata = Metadata.from("file_name", file.getName());
-        return Document.from(text, metadata);
+        return Document.from(text, sourceMetadata(file));
+    }
+
+    /**
+     * 分块的来源元数据：{@code file_name} 为文件名，{@code file_path} 为规范化的绝对路径。
+     * 不同目录下的同名文件靠 {@code file_path} 区分，分块 id 也由它参与计算
+     */
+    public static Metadata sourceMetadata(File file) {
+        return Metadata.from("file_name", file.getName())
+                .put("file_path", file.toPath().toAbsolutePath().normalize().toString());
+    }
+
+    /**
+     * 按文档结构和 token 预算边解析边分块，用默认的 {@link StructuredTextSplitter}，
+     * 见 {@link #streamChunks(File, StructuredTextSplitter, Consumer)}
+     *
+     * @return 分块数
+     */
+    public static int streamChunks(File file, Consumer<TextSegment> sink) throws Exception {
+        return streamChunks(file, DEFAULT_SPLITTER, sink);
+    }
+
+    /**
+     * 边解析边按文档结构和 token 预算分块，分块在解析线程上逐个交给 sink，全文不会出现在内存中。
+     * 标题、段落和表格行的边界与 {@link StructuredTextSplitter#split} 一致；PDF 的分块带有 {@code page} 和
+     * {@code page_end} 元数据，大 PDF 按页段并行抽取；Excel 按行流式读取，每块的字符数不超过 splitter 的 token 上限
+     * （估算的 token 数不会超过字符数）
+     *
+     * @return 分块数
+     */
+    public static int streamChunks(File file, StructuredTextSplitter splitter, Consumer<TextSegment> sink) throws Exception {
+        if(FileTypeChecker.isExcelDocument(file.getName())){
+            return new SpreadsheetChunkReader(SPREADSHEET_ROWS_PER_CHUNK, splitter.maxTokens())
+                    .read(file, sourceMetadata(file), sink);
+        }
+        return parse(file, new StreamingChunkHandler(splitter, sourceMetadata(file), sink));
+    }
+
+    /**
+     * 边解析边按字符数分块，分块在解析线程上逐个交给 sink，全文不会出现在内存中。
+     * PDF 的分块带有 {@code page} 和 {@code page_end} 元数据，大 PDF 按页段并行抽取；
+     * Excel 按行流式读取，每个分块是同一工作表的连续若干行（不重叠），见 {@link SpreadsheetChunkReader}
+     *
+     * @param maxChunkChars 每块最大字符数
+     * @param overlapChars  块间重叠字符数
+     * @return 分块数
+     */
+    public static int streamChunks(File file, int maxChunkChars, int overlapChars, Consumer<TextSegment> sink) throws Exception {
+        if(FileTypeChecker.isExcelDocument(file.getName())){
+            return new SpreadsheetChunkReader(SPREADSHEET_ROWS_PER_CHUNK, maxChunkChars)
+                    .read(file, sourceMetadata(file), sink);
+        }
+        return parse(file, new StreamingChunkHandler(maxChunkChars, overlapChars, sourceMetadata(file), sink));
+    }
+
+    private static int parse(File file, StreamingChunkHandler chunker) throws Exception {
+        if(file.getName().endsWith("pdf") && file.length() >= PARALLEL_PDF_MIN_BYTES){
+            // 数页数时加载的文档直接给页段复用，一次抽取最多加载 parallelism 次
+            PDF_EXTRACTOR.extract(file.toPath(), chunker);
+            return chunker.chunkCount();
+        }
+        // BodyContentHandler 只转发正文，跳过 <head> 里的标题等元数据
+        BodyContentHandler handler = new BodyContentHandler(chunker);
+        if(file.getName().endsWith("pdf")){
+            CustomPDFParser.parseLargePDF(file.toPath(), handler);
+        }else {
+            DocumentReader.parseDocument(file, handler);
+        }
+        return chunker.chunkCount();
     }
-}
\ No newline at end of file
+}
@@ -5,32 +5,97 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileTypeChecker {
 
     private static final Tika tika = new Tika();
 
+    /**
+     * 检测时只读文件开头这么多字节，足够识别 PDF、OLE2 和 ZIP 的文件头
+     */
+    private static final int HEADER_BYTES = 8 * 1024;
+
+    /**
+     * 缓存条目上限，超过后整体清空，避免扫描超大目录时无限增长
+     */
+    private static final int MAX_CACHED = 100_000;
+
+    private static final Map<Path, Cached> cache = new ConcurrentHashMap<>();
+
+    public enum FileType {
+        PDF, WORD, EXCEL, OTHER;
+
+        /**
+         * 只看扩展名
+         */
+        public static FileType fromFileName(String fileName) {
+            if (isPdf(fileName)) {
+                return PDF;
+            }
+            if (isWordDocument(fileName)) {
+                return WORD;
+            }
+            return isExcelDocument(fileName) ? EXCEL : OTHER;
+        }
+
+        static FileType fromMimeType(String mimeType) {
+            return switch (mimeType) {
+                case "application/pdf" -> PDF;
+                case "application/msword",                                                       // DOC
+                     "application/vnd.openxmlformats-officedocument.wordprocessingml.document" -> WORD; // DOCX
+                case "application/vnd.ms-excel",                                                  // XLS
+                     "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" -> EXCEL; // XLSX
+                default -> OTHER;
+            };
+        }
+    }
+
+    private record Cached(long size, long lastModified, FileType type) {
+    }
+
+    /**
+     * 按内容检测文件类型：只打开一次文件、只读文件头，结果按路径缓存，大小和修改时间不变时直接返回
+     */
+    public static FileType detect(Path filePath) throws IOException {
+        Path key = filePath.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Cached cached = cache.get(key);
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+            return cached.type();
+        }
+
+        FileType type = FileType.fromMimeType(detectMimeType(key));
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(key, new Cached(size, lastModified, type));
+        return type;
+    }
+
     public static boolean isPdf(Path filePath) throws IOException {
-        return detectMimeType(filePath).equals("application/pdf");
+        return detect(filePath) == FileType.PDF;
     }
 
     public static boolean isWordDocument(Path filePath) throws IOException {
-        String mimeType = detectMimeType(filePath);
-        return mimeType.equals("application/msword") ||          // DOC
-                mimeType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document"); // DOCX
+        return detect(filePath) == FileType.WORD;
     }
 
     public static boolean isExcelDocument(Path filePath) throws IOException {
-        String mimeType = detectMimeType(filePath);
-        return mimeType.equals("application/vnd.ms-excel") ||    // XLS
-                mimeType.equals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // XLSX
+        return detect(filePath) == FileType.EXCEL;
     }
 
     private static String detectMimeType(Path filePath) throws IOException {
+        byte[] header;
         try (InputStream stream = Files.newInputStream(filePath)) {
-            // Tika 会分析文件内容和扩展名，返回 MIME 类型
-            return tika.detect(stream);
+            header = stream.readNBytes(HEADER_BYTES);
         }
+        // Tika 先按文件头的魔数识别，文件名用来区分同一容器格式下的具体类型（如 ZIP 里的 docx/xlsx）
+        return tika.detect(header, filePath.getFileName().toString());
     }
     public static boolean isPdf(String fileName) {
         return fileName.toLowerCase().endsWith(".pdf");
@@ -45,4 +110,4 @@ public class FileTypeChecker {
         String lowerName = fileName.toLowerCase();
         return lowerName.endsWith(".xls") || lowerName.endsWith(".xlsx");
     }
-}
\ No newline at end of file
+}
@@ -26,9 +26,30 @@ public class FileWalkerNio {
         }
     }
 
+    /**
+     * 并行遍历，边找边返回绝对路径，不等整棵目录树列完；流必须关闭
+     *
+     * @param walker 包含/排除的 glob、文件大小、符号链接策略和并发度
+     */
+    public static Stream<Path> streamFilePaths(String directoryPath, ParallelFileWalker walker) {
+        Path startPath = Paths.get(directoryPath);
+
+        if (!Files.exists(startPath)) {
+            throw new IllegalArgumentException("路径不存在: " + directoryPath);
+        }
+
+        return walker.stream(startPath, 1024).map(Path::toAbsolutePath);
+    }
+
     public static void main(String[] args) throws IOException {
         String directoryPath = "C:\\Users\\YourName\\Documents";
-        List<String> allFiles = getAllFilePaths(directoryPath);
-        allFiles.forEach(System.out::println);
+        ParallelFileWalker walker = ParallelFileWalker.builder()
+                .include("*.pdf", "*.doc", "*.docx", "*.xls", "*.xlsx")
+                .exclude(".git", "node_modules")
+                .maxSize(512L * 1024 * 1024)
+                .build();
+        try (Stream<Path> files = streamFilePaths(directoryPath, walker)) {
+            files.forEach(System.out::println);
+        }
     }
 }
@@ -0,0 +1,208 @@
+package com.example.test.ai.file;
+
+import com.example.test.ai.chroma.ChromaService;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 增量导入文件夹：对照 {@link IngestManifest} 只处理新增和修改过的文件，并删除已不存在的文件的分块。
+ * <p>
+ * 大小和修改时间都没变的文件直接跳过；变了的再比较内容哈希，内容相同只更新清单。
+ * 分块边解析边按批写入，大文件的分块不会全部留在内存中。
+ * 修改过的文件先写入新分块，成功后再删除旧分块，导入失败时旧内容仍可检索。旧分块删除成功后才更新清单，
+ * 删除失败的文件（包括已删除的文件）记入 {@link Report#failed()}，清单保留旧 id，下次导入时重试。
+ * 每处理完一个文件只往清单日志追加一行，导入结束时才写一次完整清单。
+ */
+public class IncrementalFolderIngester {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalFolderIngester.class);
+
+    /**
+     * 边解析边分块时每凑够这么多分块写入一次，与 {@link IngestionPipeline} 的默认批次一致
+     */
+    static final int BATCH_SIZE = 32;
+
+    private final IngestManifest manifest;
+    private final IngestionPipeline.ChunkSource chunker;
+    private final Function<List<TextSegment>, List<String>> store;
+    private final Consumer<List<String>> remove;
+
+    /**
+     * 一次导入的结果统计
+     */
+    public record Report(int added, int updated, int unchanged, int removed, List<Path> failed) {
+    }
+
+    public IncrementalFolderIngester(ChromaService chroma, Path manifestFile) throws IOException {
+        this(IngestManifest.load(manifestFile), IncrementalFolderIngester::streamChunks, chroma::storeDocument, chroma::removeDocuments);
+    }
+
+    IncrementalFolderIngester(IngestManifest manifest, IngestionPipeline.ChunkSource chunker,
+                              Function<List<TextSegment>, List<String>> store, Consumer<List<String>> remove) {
+        this.manifest = manifest;
+        this.chunker = chunker;
+        this.store = store;
+        this.remove = remove;
+    }
+
+    public Report ingest(Path directory) throws IOException {
+        int added = 0;
+        int updated = 0;
+        int unchanged = 0;
+        List<Path> failed = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        // 边遍历边处理，不先把整棵目录树的路径收集到内存里；遍历出错时整体失败，不会误删没遍历到的文件的分块
+        try (Stream<Path> paths = Files.walk(directory)) {
+            Iterator<Path> files = paths.filter(Files::isRegularFile).filter(IncrementalFolderIngester::isSupported).iterator();
+            while (files.hasNext()) {
+                Path file = files.next();
+                String key = file.toAbsolutePath().normalize().toString();
+                seen.add(key);
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    long size = attributes.size();
+                    long lastModified = attributes.lastModifiedTime().toMillis();
+                    IngestManifest.Entry previous = manifest.get(key);
+                    if (previous != null && previous.size() == size && previous.lastModified() == lastModified) {
+                        unchanged++;
+                        continue;
+                    }
+                    String sha256 = sha256(file);
+                    if (previous != null && previous.sha256().equals(sha256)) {
+                        manifest.put(key, new IngestManifest.Entry(size, lastModified, sha256, previous.chunkIds()));
+                        unchanged++;
+                        continue;
+                    }
+
+                    List<String> chunkIds = storeChunks(file, previous);
+                    if (previous != null) {
+                        // 内容哈希生成的 id 不变的分块已被覆盖写入，只删除新版本里不再出现的分块。
+                        // 删除成功后才更新清单：删除失败或中途退出时清单里还是旧 id，下次导入会再删一次
+                        List<String> stale = new ArrayList<>(previous.chunkIds());
+                        stale.removeAll(new HashSet<>(chunkIds));
+                        removeChunks(stale);
+                    }
+                    manifest.put(key, new IngestManifest.Entry(size, lastModified, sha256, chunkIds));
+                    if (previous == null) {
+                        added++;
+                        log.info("Added {} ({} chunks)", file, chunkIds.size());
+                    } else {
+                        updated++;
+                        log.info("Updated {} ({} chunks replaced by {})", file, previous.chunkIds().size(), chunkIds.size());
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to ingest {}", file, e);
+                    failed.add(file);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // 只清理本目录下已删除的文件，同一清单可以给多个目录共用
+        String root = directory.toAbsolutePath().normalize().toString();
+        int removed = 0;
+        for (String path : manifest.paths()) {
+            if (seen.contains(path) || !Path.of(path).startsWith(root)) {
+                continue;
+            }
+            try {
+                removeChunks(manifest.get(path).chunkIds());
+                manifest.remove(path);
+                removed++;
+                log.info("Removed {}", path);
+            } catch (IOException | RuntimeException e) {
+                // 清单里保留这条记录，下次导入时再删
+                log.warn("Failed to remove chunks of {}", path, e);
+                failed.add(Path.of(path));
+            }
+        }
+        // 每个文件的变化已经记在清单日志里，这里合并成一个快照
+        manifest.save();
+        return new Report(added, updated, unchanged, removed, failed);
+    }
+
+    /**
+     * 边解析边分块，每凑够 {@link #BATCH_SIZE} 个分块就写入，内存中只有当前批次和已写入的 id。
+     * 中途失败时删掉本次已写入、但旧版本里没有的分块，清单不变，下次导入重新处理这个文件
+     *
+     * @return 按顺序写入的全部分块 id
+     */
+    private List<String> storeChunks(Path file, IngestManifest.Entry previous) throws Exception {
+        List<String> chunkIds = new ArrayList<>();
+        List<TextSegment> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            chunker.chunks(file, segment -> {
+                batch.add(segment);
+                if (batch.size() == BATCH_SIZE) {
+                    chunkIds.addAll(store.apply(List.copyOf(batch)));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                chunkIds.addAll(store.apply(List.copyOf(batch)));
+            }
+            return chunkIds;
+        } catch (Exception e) {
+            List<String> orphans = new ArrayList<>(chunkIds);
+            if (previous != null) {
+                orphans.removeAll(new HashSet<>(previous.chunkIds()));
+            }
+            try {
+                removeChunks(orphans);
+            } catch (RuntimeException removeFailure) {
+                e.addSuppressed(removeFailure);
+            }
+            throw e;
+        }
+    }
+
+    private void removeChunks(List<String> chunkIds) {
+        if (!chunkIds.isEmpty()) {
+            remove.accept(chunkIds);
+        }
+    }
+
+    static boolean isSupported(Path file) {
+        String fileName = file.getFileName().toString();
+        return FileTypeChecker.isPdf(fileName) || FileTypeChecker.isWordDocument(fileName) || FileTypeChecker.isExcelDocument(fileName);
+    }
+
+    private static void streamChunks(Path file, Consumer<TextSegment> sink) throws Exception {
+        // 边解析边按文档结构和 token 预算分块，不会被 writeLimit 截断，也不在内存中拼接全文
+        DocumentUtils.streamChunks(file.toFile(), sink);
+    }
+
+    static String sha256(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
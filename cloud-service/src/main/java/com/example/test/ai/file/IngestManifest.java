@@ -0,0 +1,159 @@
+package com.example.test.ai.file;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 增量导入清单：文件路径 -> 大小、修改时间、内容哈希和写入 chroma 的分块 id，以 JSON 保存。
+ * <p>
+ * {@link #put}/{@link #remove} 只把这一条追加到旁边的日志文件（清单文件名加 {@code .journal}），
+ * 每个文件的写入量与清单大小无关，中途中断后已完成的文件不会重复导入；{@link #load} 读完快照再回放日志。
+ * {@link #save} 写出整个清单（先写临时文件再原子替换）并删除日志，一次导入结束时调用一次即可。
+ */
+public class IngestManifest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<TreeMap<String, Entry>> ENTRIES_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * 日志的一行，entry 为 null 表示删除
+     */
+    private record Change(String path, Entry entry) {
+    }
+
+    private final Path file;
+    private final TreeMap<String, Entry> entries;
+
+    /**
+     * @param size         文件字节数
+     * @param lastModified 修改时间（毫秒）
+     * @param sha256       文件内容的 SHA-256（十六进制）
+     * @param chunkIds     该文件写入 chroma 的分块 id
+     */
+    public record Entry(long size, long lastModified, String sha256, List<String> chunkIds) {
+    }
+
+    private IngestManifest(Path file, TreeMap<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * 读取清单并回放日志，都不存在时返回空清单；日志末尾写到一半的行被截掉
+     */
+    public static IngestManifest load(Path file) throws IOException {
+        TreeMap<String, Entry> entries = Files.exists(file)
+                ? OBJECT_MAPPER.readValue(file.toFile(), ENTRIES_TYPE)
+                : new TreeMap<>();
+        replay(journalFile(file), entries);
+        return new IngestManifest(file, entries);
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * 更新一个文件的记录并追加到日志
+     */
+    public void put(String path, Entry entry) throws IOException {
+        journal(new Change(path, entry));
+        entries.put(path, entry);
+    }
+
+    /**
+     * 删除一个文件的记录并追加到日志
+     */
+    public Entry remove(String path) throws IOException {
+        journal(new Change(path, null));
+        return entries.remove(path);
+    }
+
+    public Set<String> paths() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    public Map<String, Entry> entries() {
+        return Map.copyOf(entries);
+    }
+
+    /**
+     * 写出整个清单并删除日志。在两步之间退出也没关系：回放日志只是把同样的修改再做一遍
+     */
+    public void save() throws IOException {
+        createParent(file);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        OBJECT_MAPPER.writeValue(tmp.toFile(), entries);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(journalFile(file));
+    }
+
+    static Path journalFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    private void journal(Change change) throws IOException {
+        createParent(file);
+        byte[] line = (OBJECT_MAPPER.writeValueAsString(change) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.write(journalFile(file), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void replay(Path journal, TreeMap<String, Entry> entries) throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        long size = Files.size(journal);
+        long valid = 0;
+        // 截断在多字节字符中间的尾部按替换字符解码，那一行解析失败，不会抛出解码异常
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(journal), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    Change change;
+                    try {
+                        change = OBJECT_MAPPER.readValue(line, Change.class);
+                    } catch (IOException e) {
+                        break;
+                    }
+                    if (change.entry() == null) {
+                        entries.remove(change.path());
+                    } else {
+                        entries.put(change.path(), change.entry());
+                    }
+                }
+                valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        if (valid < size) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        } else if (valid > size) {
+            // 最后一行完整但换行符没写进去，补上，免得下一行接在它后面
+            Files.write(journal, new byte[]{'\n'}, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static void createParent(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+}
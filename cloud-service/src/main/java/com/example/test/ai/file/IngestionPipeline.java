@@ -0,0 +1,546 @@
+package com.example.test.ai.file;
+
+import com.example.test.ai.chroma.ChromaService;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 分阶段的文件夹导入流水线：遍历 → 类型检测 → 解析 → 分块 → 向量化 → 写入。
+ * <p>
+ * 每个阶段有自己的有界队列和固定数量的工作线程，下游处理不过来时上游在 {@code put} 上阻塞，
+ * 内存中同时存在的文档和分块数量有上限。I/O 密集的阶段（检测、向量化、写入）默认用虚拟线程，
+ * 解析和分块用平台线程。某个文件在任一阶段失败只记入 {@link Report#failed()}，不影响其他文件。
+ * {@link Report#stats()} 里各阶段的忙碌时间可以用来找瓶颈、调整各阶段的线程数。
+ * <p>
+ * 默认用 {@link ChunkSource} 边解析边按文档结构和 token 预算分块（与 {@link StructuredTextSplitter} 的规则一致），
+ * 解析阶段每凑够 batchSize 个分块就直接交给向量化阶段，大文件不会整篇读进内存；
+ * 设置了 {@link Builder#parser} 或 {@link Builder#splitter} 时改为先解析成
+ * {@link Document} 再整篇分块。边解析边分块时文件中途失败，已经交出的分块仍会写入，配合确定性的分块 id 重新导入即可覆盖。
+ * <p>
+ * 设置了 {@link Builder#deduplicator} 时，分块阶段在交给向量化之前去掉近似重复的分块，不再为它们调用模型和写入。
+ */
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    /**
+     * 队列里的结束标记，每个下游工作线程收到一个后退出
+     */
+    private static final Object END = new Object();
+
+    public enum Stage {
+        WALK, DETECT, PARSE, SPLIT, EMBED, WRITE
+    }
+
+    /**
+     * 可能抛出受检异常的阶段处理函数
+     */
+    @FunctionalInterface
+    public interface Step<I, O> {
+        O apply(I input) throws Exception;
+    }
+
+    /**
+     * 边解析边产出分块，分块在解析线程上逐个交给 sink
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        void chunks(Path file, Consumer<TextSegment> sink) throws Exception;
+    }
+
+    /**
+     * @param workers        工作线程数
+     * @param queueCapacity  阶段输入队列的容量
+     * @param virtualThreads 是否使用虚拟线程，I/O 密集的阶段建议开启
+     */
+    public record StageOptions(int workers, int queueCapacity, boolean virtualThreads) {
+
+        public StageOptions {
+            ensureGreaterThanZero(workers, "workers");
+            ensureGreaterThanZero(queueCapacity, "queueCapacity");
+        }
+    }
+
+    /**
+     * @param items 阶段处理的条目数（遍历到解析阶段为文件数，之后边解析边分块时为分块批次数）
+     * @param busy  所有工作线程处理条目的时间之和，不含在队列上等待的时间
+     */
+    public record StageStats(long items, Duration busy) {
+    }
+
+    /**
+     * @param files      写入成功的文件数
+     * @param chunks     写入成功的分块数
+     * @param duplicates 作为近似重复去掉的分块数
+     * @param failed     失败的文件
+     * @param stats      各阶段的统计
+     */
+    public record Report(int files, long chunks, long duplicates, List<Path> failed, Map<Stage, StageStats> stats) {
+    }
+
+    private final Map<Stage, StageOptions> options;
+    private final ParallelFileWalker walker;
+    private final Step<Path, Boolean> detector;
+    private final ChunkSource chunkSource;
+    private final int batchSize;
+    private final Step<Path, Document> parser;
+    private final Step<Document, List<TextSegment>> splitter;
+    private final NearDuplicateFilter deduplicator;
+    private final Step<List<TextSegment>, List<Embedding>> embedder;
+    private final BiFunction<List<Embedding>, List<TextSegment>, List<String>> writer;
+
+    private IngestionPipeline(Builder builder) {
+        this.options = new EnumMap<>(builder.options);
+        this.walker = builder.walker;
+        this.detector = builder.detector;
+        boolean documentMode = builder.parser != null || builder.splitter != null;
+        this.chunkSource = documentMode ? null : builder.chunkSource;
+        this.batchSize = builder.batchSize;
+        this.parser = builder.parser != null ? builder.parser : file -> DocumentUtils.loadDocument(file.toFile());
+        this.splitter = builder.splitter != null ? builder.splitter : DocumentSplitterExample::splitByTokens;
+        this.deduplicator = builder.deduplicator;
+        this.embedder = ensureNotNull(builder.embedder, "embedder");
+        this.writer = ensureNotNull(builder.writer, "writer");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 向量化和写入都交给 {@link ChromaService}，其余阶段使用默认实现
+     */
+    public static Builder builder(ChromaService chroma) {
+        return new Builder().embedder(chroma::embedDocuments).writer(chroma::storeEmbeddings);
+    }
+
+    public static class Builder {
+
+        private final Map<Stage, StageOptions> options = new EnumMap<>(Stage.class);
+        private ParallelFileWalker walker = ParallelFileWalker.builder().build();
+        private Step<Path, Boolean> detector = IngestionPipeline::isSupportedDocument;
+        private ChunkSource chunkSource = (file, sink) -> DocumentUtils.streamChunks(file.toFile(), sink);
+        private int batchSize = 32;
+        private Step<Path, Document> parser;
+        private Step<Document, List<TextSegment>> splitter;
+        private NearDuplicateFilter deduplicator;
+        private Step<List<TextSegment>, List<Embedding>> embedder;
+        private BiFunction<List<Embedding>, List<TextSegment>, List<String>> writer;
+
+        Builder() {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            options.put(Stage.DETECT, new StageOptions(4, 256, true));
+            options.put(Stage.PARSE, new StageOptions(Math.max(1, cpus / 2), 64, false));
+            options.put(Stage.SPLIT, new StageOptions(Math.max(1, cpus / 4), 16, false));
+            // 向量化的并发度一般不超过模型服务的并行度，写入跟向量化保持一致
+            options.put(Stage.EMBED, new StageOptions(2, 16, true));
+            options.put(Stage.WRITE, new StageOptions(2, 16, true));
+        }
+
+        /**
+         * @param stage 除 {@link Stage#WALK} 外的阶段，遍历的并发度由 {@link #walker} 决定
+         */
+        public Builder stage(Stage stage, StageOptions stageOptions) {
+            if (stage == Stage.WALK) {
+                throw new IllegalArgumentException("the walk stage is configured through walker()");
+            }
+            options.put(stage, ensureNotNull(stageOptions, "stageOptions"));
+            return this;
+        }
+
+        public Builder stage(Stage stage, int workers, int queueCapacity) {
+            return stage(stage, new StageOptions(workers, queueCapacity, ensureNotNull(options.get(stage), "stage").virtualThreads()));
+        }
+
+        /**
+         * @param walker 遍历目录，可设置包含/排除的 glob、文件大小和符号链接策略；默认不过滤
+         */
+        public Builder walker(ParallelFileWalker walker) {
+            this.walker = ensureNotNull(walker, "walker");
+            return this;
+        }
+
+        /**
+         * @param detector 返回 false 的文件被跳过，默认按扩展名和内容识别 PDF、Word 和 Excel
+         */
+        public Builder detector(Step<Path, Boolean> detector) {
+            this.detector = ensureNotNull(detector, "detector");
+            return this;
+        }
+
+        /**
+         * @param chunkSource 边解析边分块，默认 {@link DocumentUtils#streamChunks(java.io.File, Consumer)}，按文档结构每块不超过 480 token
+         * @param batchSize   每凑够多少个分块交给向量化阶段，默认 32
+         */
+        public Builder chunkSource(ChunkSource chunkSource, int batchSize) {
+            this.chunkSource = ensureNotNull(chunkSource, "chunkSource");
+            this.batchSize = ensureGreaterThanZero(batchSize, "batchSize");
+            this.parser = null;
+            this.splitter = null;
+            return this;
+        }
+
+        /**
+         * @param parser 加载整篇文档，设置后不再边解析边分块；默认 {@link DocumentUtils#loadDocument}
+         */
+        public Builder parser(Step<Path, Document> parser) {
+            this.parser = ensureNotNull(parser, "parser");
+            return this;
+        }
+
+        /**
+         * @param splitter 整篇文档分块，设置后不再边解析边分块；默认 {@link DocumentSplitterExample#splitByTokens}
+         */
+        public Builder splitter(Step<Document, List<TextSegment>> splitter) {
+            this.splitter = ensureNotNull(splitter, "splitter");
+            return this;
+        }
+
+        /**
+         * @param deduplicator 向量化之前去掉近似重复的分块，可以在多次导入之间共用以跨目录去重；默认不去重
+         */
+        public Builder deduplicator(NearDuplicateFilter deduplicator) {
+            this.deduplicator = deduplicator;
+            return this;
+        }
+
+        /**
+         * @param embedder 一批分块的向量化，返回的向量与分块一一对应。边解析边分块时每次只收到一个文件的一批
+         *                 （至多 batchSize 个，见 {@link #chunkSource(ChunkSource, int)}），同一文件会调用多次；
+         *                 不要假定拿到的是整个文件的分块
+         */
+        public Builder embedder(Step<List<TextSegment>, List<Embedding>> embedder) {
+            this.embedder = embedder;
+            return this;
+        }
+
+        /**
+         * @param writer 写入向量和分块，返回分块 id
+         */
+        public Builder writer(BiFunction<List<Embedding>, List<TextSegment>, List<String>> writer) {
+            this.writer = writer;
+            return this;
+        }
+
+        public IngestionPipeline build() {
+            return new IngestionPipeline(this);
+        }
+    }
+
+    /**
+     * 流水线中的一个条目，始终带着来源文件，失败时据此记录；last 表示这是该文件的最后一个条目
+     */
+    private record Task(Path file, Object value, boolean last) {
+
+        Task with(Object value) {
+            return new Task(file, value, last);
+        }
+    }
+
+    /**
+     * 一个阶段：输入队列、工作线程和统计
+     */
+    private static final class Lane {
+
+        final Stage stage;
+        final StageOptions options;
+        final BlockingQueue<Object> queue;
+        final AtomicInteger running;
+        final LongAdder items = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+
+        Lane(Stage stage, StageOptions options) {
+            this.stage = stage;
+            this.options = options;
+            this.queue = new ArrayBlockingQueue<>(options.queueCapacity());
+            this.running = new AtomicInteger(options.workers());
+        }
+
+        StageStats stats() {
+            return new StageStats(items.sum(), Duration.ofNanos(busyNanos.sum()));
+        }
+    }
+
+    private record Embedded(List<TextSegment> segments, List<Embedding> embeddings) {
+    }
+
+    /**
+     * 处理一个条目，把零到多个条目交给下一阶段
+     */
+    @FunctionalInterface
+    private interface Handler {
+        void handle(Task task, Consumer<Task> emit) throws Exception;
+    }
+
+    /**
+     * 把边解析边产出的分块攒成批次。总是扣住最近的一批，解析结束后再把它标记为最后一批交出去
+     */
+    private final class ChunkBatcher implements Consumer<TextSegment> {
+
+        private final Path file;
+        private final Consumer<Task> emit;
+        private List<TextSegment> batch = new ArrayList<>();
+        private Task held;
+
+        ChunkBatcher(Path file, Consumer<Task> emit) {
+            this.file = file;
+            this.emit = emit;
+        }
+
+        @Override
+        public void accept(TextSegment segment) {
+            batch.add(segment);
+            if (batch.size() == batchSize) {
+                hold();
+            }
+        }
+
+        void finish() {
+            if (!batch.isEmpty()) {
+                hold();
+            }
+            if (held != null) {
+                emit.accept(new Task(file, held.value(), true));
+            }
+        }
+
+        private void hold() {
+            if (held != null) {
+                emit.accept(held);
+            }
+            held = new Task(file, batch, false);
+            batch = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 导入目录下的所有文件，全部处理完后返回
+     *
+     * @throws IOException 遍历目录失败；已经进入流水线的文件仍会处理完
+     */
+    public Report run(Path directory) throws IOException {
+        Lane walk = new Lane(Stage.WALK, new StageOptions(1, 1, true));
+        Map<Stage, Lane> lanes = new EnumMap<>(Stage.class);
+        lanes.put(Stage.WALK, walk);
+        for (Stage stage : List.of(Stage.DETECT, Stage.PARSE, Stage.SPLIT, Stage.EMBED, Stage.WRITE)) {
+            lanes.put(stage, new Lane(stage, options.get(stage)));
+        }
+
+        Set<Path> failed = Collections.synchronizedSet(new LinkedHashSet<>());
+        Set<Path> written = ConcurrentHashMap.newKeySet();
+        LongAdder chunks = new LongAdder();
+        AtomicReference<IOException> walkFailure = new AtomicReference<>();
+        long droppedBefore = deduplicator != null ? deduplicator.dropped() : 0;
+
+        Map<Stage, Handler> handlers = new EnumMap<>(Stage.class);
+        handlers.put(Stage.DETECT, (task, emit) -> {
+            if (detector.apply(task.file())) {
+                emit.accept(task);
+            }
+        });
+        handlers.put(Stage.PARSE, (task, emit) -> {
+            if (chunkSource == null) {
+                emit.accept(task.with(parser.apply(task.file())));
+                return;
+            }
+            ChunkBatcher batcher = new ChunkBatcher(task.file(), emit);
+            chunkSource.chunks(task.file(), batcher);
+            batcher.finish();
+        });
+        handlers.put(Stage.SPLIT, (task, emit) -> {
+            List<TextSegment> segments;
+            if (task.value() instanceof Document document) {
+                segments = splitter.apply(document);
+            } else {
+                // 边解析边分块时已经是分块批次
+                @SuppressWarnings("unchecked")
+                List<TextSegment> batch = (List<TextSegment>) task.value();
+                segments = batch;
+            }
+            if (segments == null || segments.isEmpty()) {
+                return;
+            }
+            List<TextSegment> unique = deduplicator != null ? deduplicator.filter(task.file(), segments) : segments;
+            // 最后一批全是重复时仍交下去（空批次），写入阶段据此把文件记为完成
+            if (!unique.isEmpty() || task.last()) {
+                emit.accept(task.with(unique));
+            }
+        });
+        handlers.put(Stage.EMBED, (task, emit) -> {
+            @SuppressWarnings("unchecked")
+            List<TextSegment> segments = (List<TextSegment>) task.value();
+            if (segments.isEmpty()) {
+                emit.accept(task.with(new Embedded(segments, List.of())));
+                return;
+            }
+            List<Embedding> embeddings = embedder.apply(segments);
+            if (embeddings.size() != segments.size()) {
+                throw new IllegalStateException(String.format(
+                        "expected %d embeddings but got %d", segments.size(), embeddings.size()));
+            }
+            emit.accept(task.with(new Embedded(segments, embeddings)));
+        });
+        handlers.put(Stage.WRITE, (task, emit) -> {
+            Embedded embedded = (Embedded) task.value();
+            if (!embedded.segments().isEmpty()) {
+                List<String> ids = writer.apply(embedded.embeddings(), embedded.segments());
+                chunks.add(ids.size());
+            }
+            if (task.last()) {
+                written.add(task.file());
+                log.debug("Stored {}", task.file());
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (Stage stage : handlers.keySet()) {
+            Lane lane = lanes.get(stage);
+            Lane next = stage == Stage.WRITE ? null : lanes.get(Stage.values()[stage.ordinal() + 1]);
+            Thread.Builder threadBuilder = lane.options.virtualThreads()
+                    ? Thread.ofVirtual().name("ingest-" + stage.name().toLowerCase() + "-", 0)
+                    : Thread.ofPlatform().daemon(true).name("ingest-" + stage.name().toLowerCase() + "-", 0);
+            for (int i = 0; i < lane.options.workers(); i++) {
+                threads.add(threadBuilder.start(() -> work(lane, next, handlers.get(stage), failed)));
+            }
+        }
+
+        Lane detect = lanes.get(Stage.DETECT);
+        threads.add(Thread.ofVirtual().name("ingest-walk").start(() -> {
+            try {
+                // 边遍历边交给检测阶段，找到第一个文件就开始处理
+                walker.walk(directory, file -> {
+                    detect.queue.put(new Task(file, null, true));
+                    walk.items.increment();
+                });
+            } catch (IOException e) {
+                walkFailure.set(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finish(walk, detect);
+            }
+        }));
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while ingesting " + directory, e);
+        }
+
+        // 边解析边分块时一个文件可能前面的批次写入成功、后面的失败，这样的文件算失败
+        written.removeAll(failed);
+        Map<Stage, StageStats> stats = new EnumMap<>(Stage.class);
+        lanes.forEach((stage, lane) -> stats.put(stage, lane.stats()));
+        long duplicates = deduplicator != null ? deduplicator.dropped() - droppedBefore : 0;
+        log.info("Ingested {}: {} files, {} chunks, {} duplicates, {} failed, stage busy time {}",
+                directory, written.size(), chunks.sum(), duplicates, failed.size(), stats);
+        if (walkFailure.get() != null) {
+            throw walkFailure.get();
+        }
+        return new Report(written.size(), chunks.sum(), duplicates, List.copyOf(failed), stats);
+    }
+
+    private static void work(Lane lane, Lane next, Handler handler, Set<Path> failed) {
+        try {
+            while (true) {
+                Object item = lane.queue.take();
+                if (item == END) {
+                    break;
+                }
+                Task task = (Task) item;
+                long[] blockedNanos = new long[1];
+                long start = System.nanoTime();
+                try {
+                    handler.handle(task, output -> blockedNanos[0] += put(next, output));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    log.warn("{} failed for {}", lane.stage, task.file(), e);
+                    failed.add(task.file());
+                } finally {
+                    lane.busyNanos.add(System.nanoTime() - start - blockedNanos[0]);
+                    lane.items.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish(lane, next);
+        }
+    }
+
+    /**
+     * 交给下一阶段，下一阶段的队列满时在这里阻塞，这就是背压
+     *
+     * @return 阻塞的时间，不计入本阶段的忙碌时间
+     */
+    private static long put(Lane next, Task task) {
+        if (next == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            next.queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while handing over " + task.file(), e);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 本阶段最后一个工作线程退出时，给下一阶段的每个工作线程发一个结束标记
+     */
+    private static void finish(Lane lane, Lane next) {
+        if (lane.running.decrementAndGet() != 0 || next == null) {
+            return;
+        }
+        try {
+            for (int i = 0; i < next.options.workers(); i++) {
+                next.queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 扩展名是 PDF、Word 或 Excel，且内容与扩展名一致；其他扩展名的文件不打开
+     */
+    private static boolean isSupportedDocument(Path file) throws IOException {
+        FileTypeChecker.FileType expected = FileTypeChecker.FileType.fromFileName(file.getFileName().toString());
+        return expected != FileTypeChecker.FileType.OTHER && FileTypeChecker.detect(file) == expected;
+    }
+}
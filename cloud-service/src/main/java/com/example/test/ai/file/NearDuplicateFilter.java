@@ -0,0 +1,332 @@
+package com.example.test.ai.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 向量化之前去掉近似重复的分块：每个分块算一个 64 位 SimHash，与已经保留的分块的汉明距离不超过 maxDistance 就算重复，
+ * 重复的分块不再向量化和写入，只记下它的来源，{@link #duplicates()} 可以从保留的分块查到所有重复出现的位置，
+ * {@link #save} 把这份对应关系写到文件里留存。
+ * 页眉页脚、合同模板条款这类在同一文件和不同文件里反复出现的文本只保留第一次出现的那份。
+ * <p>
+ * SimHash 的特征是相邻两个词的组合（汉字按字算词）。只有页码（"第 3 页 共 10 页"、"Page 3 of 10"、单独一行的数字）
+ * 里的数字归一化成 0；其余数字原样参与计算，而且两个分块里的数字必须完全一致才算重复，
+ * 只差金额、日期、期限的条款即使指纹很接近也都保留。
+ * 查找用 LSH 分段：64 位分成 maxDistance + 1 段，距离不超过 maxDistance 的两个指纹至少有一段完全相同，
+ * 只需要和这些段相同的指纹逐个比较。词数少于 minWords 的短文本指纹不稳定，要求指纹完全相同。
+ * <p>
+ * 线程安全；状态只在内存中，同一个实例导入多个目录时跨目录去重。同一文件同一位置的分块重新导入时不算重复。
+ */
+public class NearDuplicateFilter {
+
+    /**
+     * 分块的来源
+     *
+     * @param file  来源文件
+     * @param index 分块在文件中的序号，即分块元数据的 {@code index}，没有时为 -1
+     */
+    public record Source(Path file, int index) {
+    }
+
+    /**
+     * @param kept    保留并写入的分块
+     * @param sources 与它重复而被丢弃的分块
+     */
+    public record Duplicates(Source kept, List<Source> sources) {
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    /**
+     * 页码：第 3 页（共 10 页）、Page 3 (of 10)、只有数字和短横线的一行
+     */
+    private static final Pattern PAGE_NUMBER = Pattern.compile(
+            "第\\s*\\d+\\s*页(?:\\s*[,，/]?\\s*共\\s*\\d+\\s*页)?|\\bpage\\s+\\d+(?:\\s*(?:of|/)\\s*\\d+)?|^[\\s\\-—]*\\d+[\\s\\-—]*$",
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private final int maxDistance;
+    private final int minWords;
+    private final int bands;
+    private final int bandBits;
+
+    /**
+     * 每段一个表：段的取值 → 该段取这个值的已保留分块
+     */
+    private final List<Map<Long, List<Kept>>> index = new ArrayList<>();
+    private final List<Kept> all = new ArrayList<>();
+    private final Map<Source, Kept> bySource = new HashMap<>();
+    private long dropped;
+
+    private static final class Kept {
+        final long fingerprint;
+        final long numbers;
+        final Source source;
+        final List<Source> duplicates = new ArrayList<>();
+
+        Kept(long fingerprint, long numbers, Source source) {
+            this.fingerprint = fingerprint;
+            this.numbers = numbers;
+            this.source = source;
+        }
+    }
+
+    public NearDuplicateFilter() {
+        this(3, 8);
+    }
+
+    /**
+     * @param maxDistance 汉明距离不超过这个值算近似重复，0 到 15，默认 3
+     * @param minWords    词数少于这个值的分块只去掉完全相同（指纹相同）的，默认 8
+     */
+    public NearDuplicateFilter(int maxDistance, int minWords) {
+        if (maxDistance < 0 || maxDistance > 15) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 15 but is " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        this.minWords = minWords;
+        this.bands = maxDistance + 1;
+        this.bandBits = 64 / bands;
+        for (int i = 0; i < bands; i++) {
+            index.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * @return segments 中不重复的分块，顺序不变；重复的分块记入来源后丢弃
+     */
+    public List<TextSegment> filter(Path file, List<TextSegment> segments) {
+        List<TextSegment> kept = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            if (accept(file, segment)) {
+                kept.add(segment);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return 分块不与已保留的分块重复时返回 true 并保留它；重复时记入来源，返回 false
+     */
+    public boolean accept(Path file, TextSegment segment) {
+        Source source = new Source(file, index(segment));
+        List<String> words = words(segment.text());
+        long fingerprint = simHash(words);
+        long numbers = numbers(words);
+        int distance = words.size() < minWords ? 0 : maxDistance;
+
+        // 没有序号时无法判断是不是同一个分块重新导入
+        boolean positioned = source.index() >= 0;
+        synchronized (this) {
+            Kept previous = positioned ? bySource.get(source) : null;
+            if (previous != null && previous.fingerprint == fingerprint && previous.numbers == numbers) {
+                return true;
+            }
+            Kept match = find(fingerprint, numbers, distance);
+            if (match != null && (!positioned || !match.source.equals(source))) {
+                match.duplicates.add(source);
+                dropped++;
+                return false;
+            }
+            Kept kept = new Kept(fingerprint, numbers, source);
+            all.add(kept);
+            if (positioned) {
+                bySource.put(source, kept);
+            }
+            for (int band = 0; band < bands; band++) {
+                index.get(band).computeIfAbsent(band(fingerprint, band), key -> new ArrayList<>()).add(kept);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return 丢弃的分块数
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return 有重复的保留分块和与它重复而被丢弃的分块的来源，按保留的先后顺序
+     */
+    public synchronized List<Duplicates> duplicates() {
+        List<Duplicates> duplicates = new ArrayList<>();
+        for (Kept kept : all) {
+            if (!kept.duplicates.isEmpty()) {
+                duplicates.add(new Duplicates(kept.source, List.copyOf(kept.duplicates)));
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * 把 {@link #duplicates()} 以 JSON 写到 file（先写临时文件再原子替换）：每项是保留的分块的来源 {@code kept}
+     * 和与它重复而被丢弃的分块的来源 {@code duplicate_sources}，来源为 {@code {"file": 路径, "index": 序号}}
+     */
+    public void save(Path file) throws IOException {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (Duplicates duplicates : duplicates()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("kept", toJson(duplicates.kept()));
+            entry.put("duplicate_sources", duplicates.sources().stream().map(NearDuplicateFilter::toJson).toList());
+            entries.add(entry);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), entries);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Map<String, Object> toJson(Source source) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("file", source.file().toString());
+        json.put("index", source.index());
+        return json;
+    }
+
+    private Kept find(long fingerprint, long numbers, int distance) {
+        int searchedBands = distance == 0 ? 1 : bands;
+        for (int band = 0; band < searchedBands; band++) {
+            List<Kept> candidates = index.get(band).get(band(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Kept candidate : candidates) {
+                if (candidate.numbers == numbers && Long.bitCount(candidate.fingerprint ^ fingerprint) <= distance) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 第 band 段的取值，最后一段包含除不尽剩下的位
+     */
+    private long band(long fingerprint, int band) {
+        int from = band * bandBits;
+        int width = band == bands - 1 ? 64 - from : bandBits;
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        return (fingerprint >>> from) & mask;
+    }
+
+    private static int index(TextSegment segment) {
+        String index = segment.metadata().getString("index");
+        if (index == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 拆成词：连续的字母数字为一个词（转小写，页码里的数字换成 0），汉字、假名、谚文每字一个词，其余字符忽略
+     */
+    static List<String> words(String text) {
+        text = PAGE_NUMBER.matcher(text).replaceAll(
+                match -> Matcher.quoteReplacement(DIGITS.matcher(match.group()).replaceAll("0")));
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            boolean cjk = isCjk(codePoint);
+            if (Character.isLetterOrDigit(codePoint) && !cjk) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+                continue;
+            }
+            if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+            if (cjk) {
+                words.add(new String(Character.toChars(codePoint)));
+            }
+        }
+        if (!word.isEmpty()) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * 含数字的词按顺序算出的哈希，数字完全相同的两段文本取值相同
+     */
+    static long numbers(List<String> words) {
+        long hash = FNV_OFFSET;
+        for (String word : words) {
+            if (word.chars().anyMatch(Character::isDigit)) {
+                hash = hash(word, hash) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 以相邻两个词的组合为特征的 SimHash，只有一个词时用这个词本身
+     */
+    static long simHash(List<String> words) {
+        if (words.isEmpty()) {
+            return 0;
+        }
+        int[] weights = new int[64];
+        if (words.size() == 1) {
+            addFeature(weights, hash(words.get(0), FNV_OFFSET));
+        }
+        for (int i = 1; i < words.size(); i++) {
+            addFeature(weights, hash(words.get(i), hash(words.get(i - 1), FNV_OFFSET) * FNV_PRIME));
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void addFeature(int[] weights, long hash) {
+        // FNV 的低位分布差，混合一下再按位投票
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    private static long hash(String word, long seed) {
+        long hash = seed;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.test.ai.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * 并行遍历目录：每个目录由一个虚拟线程列出，同时列目录的数量不超过 parallelism，
+ * 列出一个目录后先派发子目录再交出其中的文件，找到第一个文件就可以开始处理，不用等整棵目录树列完。
+ * 网络共享盘上目录很深时，多个目录并发列出能掩盖每次请求的延迟。
+ * <p>
+ * 交出文件的顺序不固定。sink 阻塞（例如有界队列已满）时遍历随之放慢，这就是背压。
+ * 无法读取的目录记入 {@link Stats#failures()} 后跳过，不中断遍历。
+ */
+public class ParallelFileWalker {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelFileWalker.class);
+
+    /**
+     * 接收匹配的文件，可以阻塞
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Path file) throws InterruptedException;
+    }
+
+    /**
+     * @param files       交出的文件数
+     * @param directories 列出的目录数
+     * @param failures    无法读取的目录或文件数
+     */
+    public record Stats(long files, long directories, long failures) {
+    }
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final long minSize;
+    private final long maxSize;
+    private final boolean followLinks;
+    private final int parallelism;
+
+    private ParallelFileWalker(Builder builder) {
+        this.includes = List.copyOf(builder.includes);
+        this.excludes = List.copyOf(builder.excludes);
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.followLinks = builder.followLinks;
+        this.parallelism = ensureGreaterThanZero(builder.parallelism, "parallelism");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final List<String> includes = new ArrayList<>();
+        private final List<String> excludes = new ArrayList<>();
+        private long minSize = 0;
+        private long maxSize = Long.MAX_VALUE;
+        private boolean followLinks;
+        private int parallelism = 8;
+
+        /**
+         * @param globs 只交出匹配任一 glob 的文件，匹配相对根目录的路径或文件名，例如 {@code *.pdf}、{@code manuals/**}；
+         *              不设置时交出所有文件
+         */
+        public Builder include(String... globs) {
+            includes.addAll(List.of(globs));
+            return this;
+        }
+
+        /**
+         * @param globs 跳过匹配的文件和目录（目录整棵跳过），匹配规则同 {@link #include}，例如 {@code .git}、{@code **}{@code /tmp}
+         */
+        public Builder exclude(String... globs) {
+            excludes.addAll(List.of(globs));
+            return this;
+        }
+
+        /**
+         * @param minSize 小于这个字节数的文件被跳过，默认 0
+         */
+        public Builder minSize(long minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * @param maxSize 大于这个字节数的文件被跳过，默认不限制
+         */
+        public Builder maxSize(long maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param followLinks 是否跟随符号链接，默认 false 即跳过所有符号链接；跟随时同一目录只遍历一次，不会陷入循环
+         */
+        public Builder followLinks(boolean followLinks) {
+            this.followLinks = followLinks;
+            return this;
+        }
+
+        /**
+         * @param parallelism 同时列目录的数量，默认 8
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public ParallelFileWalker build() {
+            return new ParallelFileWalker(this);
+        }
+    }
+
+    /**
+     * 遍历 root，把匹配的文件交给 sink，全部交完后返回。root 是文件时只检查它本身
+     */
+    public Stats walk(Path root, Sink sink) throws IOException, InterruptedException {
+        Walk walk = new Walk(root, sink);
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+        if (!attributes.isDirectory()) {
+            if (attributes.isRegularFile() && walk.accepts(root.getFileName(), attributes)) {
+                sink.accept(root);
+                return new Stats(1, 0, 0);
+            }
+            return new Stats(0, 0, 0);
+        }
+        return walk.run(attributes);
+    }
+
+    /**
+     * 在后台遍历，匹配的文件经容量为 queueCapacity 的有界队列流出；流必须关闭，提前关闭会停止遍历
+     */
+    public Stream<Path> stream(Path root, int queueCapacity) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Object end = new Object();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread walker = Thread.ofVirtual().name("file-walker").start(() -> {
+            try {
+                walk(root, queue::put);
+            } catch (IOException | RuntimeException e) {
+                failure.set(e);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                queue.put(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Iterator<Path> iterator = new Iterator<>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while walking " + root, e);
+                    }
+                }
+                if (next == end) {
+                    Exception e = failure.get();
+                    if (e instanceof IOException io) {
+                        throw new UncheckedIOException(io);
+                    }
+                    if (e != null) {
+                        throw (RuntimeException) e;
+                    }
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Path file = (Path) next;
+                next = null;
+                return file;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(walker::interrupt);
+    }
+
+    /**
+     * 一次遍历的状态
+     */
+    private final class Walk {
+
+        private final Path root;
+        private final Sink sink;
+        private final List<PathMatcher> includeMatchers;
+        private final List<PathMatcher> excludeMatchers;
+        private final Semaphore listing = new Semaphore(parallelism);
+        private final AtomicInteger pending = new AtomicInteger();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        private final LongAdder files = new LongAdder();
+        private final LongAdder directories = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final AtomicReference<InterruptedException> interrupted = new AtomicReference<>();
+        private ExecutorService executor;
+
+        Walk(Path root, Sink sink) {
+            this.root = root;
+            this.sink = sink;
+            FileSystem fileSystem = root.getFileSystem();
+            this.includeMatchers = includes.stream().map(glob -> fileSystem.getPathMatcher("glob:" + glob)).toList();
+            this.excludeMatchers = excludes.stream().map(glob -> fileSystem.getPathMatcher("glob:" + glob)).toList();
+        }
+
+        Stats run(BasicFileAttributes rootAttributes) throws IOException, InterruptedException {
+            if (followLinks) {
+                visited.add(directoryKey(root, rootAttributes));
+            }
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                this.executor = executor;
+                submit(root);
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    throw e;
+                }
+            }
+            if (interrupted.get() != null) {
+                throw interrupted.get();
+            }
+            return new Stats(files.sum(), directories.sum(), failures.sum());
+        }
+
+        private void submit(Path directory) {
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        visit(directory);
+                    } finally {
+                        complete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 遍历已被中断
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        private void visit(Path directory) {
+            List<Path> matched = new ArrayList<>();
+            try {
+                listing.acquire();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    directories.increment();
+                    for (Path entry : entries) {
+                        BasicFileAttributes attributes = attributes(entry);
+                        if (attributes == null) {
+                            continue;
+                        }
+                        Path relative = root.relativize(entry);
+                        if (attributes.isDirectory()) {
+                            // 不跟随符号链接时目录树里不会有环
+                            if (!matchesAny(excludeMatchers, relative) && (!followLinks || visited.add(directoryKey(entry, attributes)))) {
+                                submit(entry);
+                            }
+                        } else if (attributes.isRegularFile() && accepts(relative, attributes)) {
+                            matched.add(entry);
+                        }
+                    }
+                } catch (IOException e) {
+                    failures.increment();
+                    log.warn("Failed to list {}: {}", directory, e.toString());
+                } finally {
+                    listing.release();
+                }
+                // 子目录已经派发出去，这里阻塞在 sink 上不影响其他目录继续列出
+                for (Path file : matched) {
+                    sink.accept(file);
+                    files.increment();
+                }
+            } catch (InterruptedException e) {
+                if (interrupted.compareAndSet(null, e)) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+
+        /**
+         * @return 文件属性；不跟随的符号链接、失效的链接和读取失败时返回 null
+         */
+        private BasicFileAttributes attributes(Path entry) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isSymbolicLink()) {
+                    return attributes;
+                }
+                return followLinks ? Files.readAttributes(entry, BasicFileAttributes.class) : null;
+            } catch (IOException e) {
+                failures.increment();
+                log.debug("Skipping {}: {}", entry, e.toString());
+                return null;
+            }
+        }
+
+        private Object directoryKey(Path directory, BasicFileAttributes attributes) {
+            if (attributes.fileKey() != null) {
+                return attributes.fileKey();
+            }
+            try {
+                return directory.toRealPath();
+            } catch (IOException e) {
+                return directory.toAbsolutePath().normalize();
+            }
+        }
+
+        boolean accepts(Path relative, BasicFileAttributes attributes) {
+            long size = attributes.size();
+            return size >= minSize && size <= maxSize
+                    && (includeMatchers.isEmpty() || matchesAny(includeMatchers, relative))
+                    && !matchesAny(excludeMatchers, relative);
+        }
+
+        private boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+            Path fileName = relative.getFileName();
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(relative) || (fileName != null && matcher.matches(fileName))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
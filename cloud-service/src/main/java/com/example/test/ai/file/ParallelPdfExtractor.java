@@ -0,0 +1,210 @@
+package com.example.test.ai.file;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * 按页段并行抽取 PDF 文本：把文档切成每段 pagesPerRange 页，在线程池里抽取，再按页码顺序交给
+ * {@link StreamingChunkHandler}，分块结果与单线程抽取一致。
+ * <p>
+ * PDFBox 的文档对象不是线程安全的，一次抽取里每个同时运行的页段各用一个打开的 {@link PDDocument}，
+ * 页段抽完把文档放回，下一个页段直接复用，不会每段重新加载一遍；数页数时加载的文档也交给页段复用。
+ * 同时在途的页段不超过线程数的两倍，已抽取未消费的文本有上限。线程池由所有调用方共用，
+ * 导入流水线里多个解析线程同时处理大 PDF 时总的 CPU 占用仍受 parallelism 限制。
+ * 每个打开的文档的流缓存最多占用 {@link #CACHE_MEMORY_BYTES} 堆内存，超出部分写临时文件，
+ * 一次抽取同时打开的文档数不超过 parallelism，所以抽取的总内存有上限。
+ */
+public class ParallelPdfExtractor implements AutoCloseable {
+
+    /**
+     * 每个打开的文档的流缓存在堆上的上限
+     */
+    static final long CACHE_MEMORY_BYTES = 16L * 1024 * 1024;
+
+    private final int pagesPerRange;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * @param parallelism   抽取线程数
+     * @param pagesPerRange 每个页段的页数
+     */
+    public ParallelPdfExtractor(int parallelism, int pagesPerRange) {
+        this.parallelism = ensureGreaterThanZero(parallelism, "parallelism");
+        this.pagesPerRange = ensureGreaterThanZero(pagesPerRange, "pagesPerRange");
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().daemon(true).name("pdf-extract-", 0).factory());
+    }
+
+    /**
+     * @return PDF 的页数
+     */
+    public static int pageCount(Path file) throws IOException {
+        try (PDDocument document = load(file)) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    /**
+     * 抽取全部页面，按页码顺序在调用线程上回调 handler，最后调用 {@link StreamingChunkHandler#endDocument()}
+     */
+    public void extract(Path file, StreamingChunkHandler handler) throws IOException {
+        try (DocumentPool documents = new DocumentPool(file)) {
+            PDDocument document = documents.borrow();
+            int pages = document.getNumberOfPages();
+            documents.release(document);
+            extract(file, pages, handler, documents);
+        }
+    }
+
+    /**
+     * 同 {@link #extract(Path, StreamingChunkHandler)}，调用方已经知道页数时不用先数页数
+     *
+     * @param pages {@link #pageCount(Path)} 的结果
+     */
+    public void extract(Path file, int pages, StreamingChunkHandler handler) throws IOException {
+        try (DocumentPool documents = new DocumentPool(file)) {
+            extract(file, pages, handler, documents);
+        }
+    }
+
+    private void extract(Path file, int pages, StreamingChunkHandler handler, DocumentPool documents) throws IOException {
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        int page = 1;
+        try {
+            while (nextPage <= pages || !inFlight.isEmpty()) {
+                while (nextPage <= pages && inFlight.size() < 2 * parallelism) {
+                    int from = nextPage;
+                    int to = Math.min(pages, from + pagesPerRange - 1);
+                    inFlight.addLast(executor.submit(() -> extractRange(documents, from, to)));
+                    nextPage = to + 1;
+                }
+                for (String text : inFlight.pollFirst().get()) {
+                    handler.startPage(page++);
+                    handler.characters(text.toCharArray(), 0, text.length());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while extracting " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("failed to extract " + file, e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * @return [from, to] 每一页的文本，页码从 1 开始
+     */
+    private static List<String> extractRange(DocumentPool documents, int from, int to) throws IOException {
+        PDDocument document = documents.borrow();
+        try {
+            PDFTextStripper stripper = new PDFTextStripper();
+            List<String> pages = new ArrayList<>(to - from + 1);
+            for (int page = from; page <= to; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(stripper.getText(document));
+            }
+            return pages;
+        } finally {
+            documents.release(document);
+        }
+    }
+
+    /**
+     * 打开文档，流缓存超过 {@link #CACHE_MEMORY_BYTES} 的部分放到临时文件
+     */
+    private static PDDocument load(Path file) throws IOException {
+        return Loader.loadPDF(file.toFile(), MemoryUsageSetting.setupMixed(CACHE_MEMORY_BYTES).streamCache);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一次抽取中打开的文档：借出的文档只被一个页段使用，用完放回给下一个页段。
+     * 关闭后放回的文档直接关掉（抽取出错时被取消、仍在运行的页段）
+     */
+    private static final class DocumentPool implements AutoCloseable {
+
+        private final Path file;
+        private final Deque<PDDocument> idle = new ArrayDeque<>();
+        private boolean closed;
+
+        DocumentPool(Path file) {
+            this.file = file;
+        }
+
+        PDDocument borrow() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("extraction of " + file + " was aborted");
+                }
+                PDDocument document = idle.pollFirst();
+                if (document != null) {
+                    return document;
+                }
+            }
+            return load(file);
+        }
+
+        void release(PDDocument document) throws IOException {
+            synchronized (this) {
+                if (!closed) {
+                    idle.addLast(document);
+                    return;
+                }
+            }
+            document.close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            List<PDDocument> documents;
+            synchronized (this) {
+                closed = true;
+                documents = List.copyOf(idle);
+                idle.clear();
+            }
+            IOException failure = null;
+            for (PDDocument document : documents) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.test.ai.file;
+
+import cn.idev.excel.FastExcel;
+import cn.idev.excel.context.AnalysisContext;
+import cn.idev.excel.event.AnalysisEventListener;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 用 fastexcel 的行监听器流式读取 xls/xlsx，每个工作表的连续若干行合成一个分块，不经过 Tika 和 POI 的整本加载。
+ * 内存中只有当前这一窗口的行；xlsx 的共享字符串表较大时 fastexcel 自动改用磁盘缓存。
+ * <p>
+ * 每个工作表的第一行作为表头，行渲染成 {@code 表头: 值 | 表头: 值}，空单元格和空行跳过。
+ * 分块正文以 {@code 工作表 名称，第 x-y 行} 开头，元数据是 baseMetadata 的副本加上从 0 开始的 {@code index}、
+ * {@code sheet}、{@code row_start} 和 {@code row_end}（Excel 里的行号，从 1 开始）以及 {@code headers}（表头用 | 连接）。
+ */
+public class SpreadsheetChunkReader {
+
+    private final int rowsPerChunk;
+    private final int maxChunkChars;
+
+    /**
+     * @param rowsPerChunk  每个分块最多的行数
+     * @param maxChunkChars 每个分块里行内容最多的字符数（不含开头的工作表和行号），单行超出时该行单独成块
+     */
+    public SpreadsheetChunkReader(int rowsPerChunk, int maxChunkChars) {
+        this.rowsPerChunk = ensureGreaterThanZero(rowsPerChunk, "rowsPerChunk");
+        this.maxChunkChars = ensureGreaterThanZero(maxChunkChars, "maxChunkChars");
+    }
+
+    /**
+     * 读取所有工作表，分块在读取线程上逐个交给 sink
+     *
+     * @return 分块数
+     */
+    public int read(File file, Metadata baseMetadata, Consumer<TextSegment> sink) {
+        RowWindow window = new RowWindow(baseMetadata == null ? new Metadata() : baseMetadata, ensureNotNull(sink, "sink"));
+        FastExcel.read(file, window).headRowNumber(1).doReadAll();
+        window.flush();
+        return window.index;
+    }
+
+    /**
+     * 攒一个窗口的行，凑够行数或字符数、或者换工作表时输出一个分块
+     */
+    private final class RowWindow extends AnalysisEventListener<Map<Integer, String>> {
+
+        private final Metadata baseMetadata;
+        private final Consumer<TextSegment> sink;
+        private final StringBuilder rows = new StringBuilder();
+        private List<String> headers = List.of();
+        private String sheet;
+        private int rowCount;
+        private int rowStart;
+        private int rowEnd;
+        private int index;
+
+        RowWindow(Metadata baseMetadata, Consumer<TextSegment> sink) {
+            this.baseMetadata = baseMetadata;
+            this.sink = sink;
+        }
+
+        @Override
+        public void invokeHeadMap(Map<Integer, String> headMap, AnalysisContext context) {
+            flush();
+            sheet = context.readSheetHolder().getSheetName();
+            List<String> names = new ArrayList<>();
+            headMap.forEach((column, name) -> {
+                while (names.size() < column) {
+                    names.add(null);
+                }
+                names.add(name == null || name.isBlank() ? null : name.strip());
+            });
+            headers = names;
+        }
+
+        @Override
+        public void invoke(Map<Integer, String> row, AnalysisContext context) {
+            String sheetName = context.readSheetHolder().getSheetName();
+            if (!sheetName.equals(sheet)) {
+                // 没有表头行的工作表
+                flush();
+                sheet = sheetName;
+                headers = List.of();
+            }
+            String line = render(row);
+            if (line.isEmpty()) {
+                return;
+            }
+            if (rowCount > 0 && (rowCount == rowsPerChunk || rows.length() + 1 + line.length() > maxChunkChars)) {
+                flush();
+            }
+            int rowNumber = context.readRowHolder().getRowIndex() + 1;
+            if (rowCount == 0) {
+                rowStart = rowNumber;
+            } else {
+                rows.append('\n');
+            }
+            rows.append(line);
+            rowEnd = rowNumber;
+            rowCount++;
+        }
+
+        @Override
+        public void doAfterAllAnalysed(AnalysisContext context) {
+            // 每个工作表读完调用一次
+            flush();
+        }
+
+        private String render(Map<Integer, String> row) {
+            StringBuilder line = new StringBuilder();
+            row.forEach((column, value) -> {
+                if (value == null || value.isBlank()) {
+                    return;
+                }
+                if (!line.isEmpty()) {
+                    line.append(" | ");
+                }
+                String header = column < headers.size() ? headers.get(column) : null;
+                if (header != null) {
+                    line.append(header).append(": ");
+                }
+                line.append(value.strip());
+            });
+            return line.toString();
+        }
+
+        void flush() {
+            if (rowCount == 0) {
+                return;
+            }
+            String text = "工作表 " + sheet + "，第 " + rowStart + "-" + rowEnd + " 行\n" + rows;
+            Metadata metadata = baseMetadata.copy()
+                    .put("index", String.valueOf(index++))
+                    .put("sheet", sheet)
+                    .put("row_start", rowStart)
+                    .put("row_end", rowEnd);
+            String joined = String.join(" | ", headers.stream().filter(Objects::nonNull).toList());
+            if (!joined.isEmpty()) {
+                metadata.put("headers", joined);
+            }
+            sink.accept(TextSegment.from(text, metadata));
+            rows.setLength(0);
+            rowCount = 0;
+        }
+    }
+}
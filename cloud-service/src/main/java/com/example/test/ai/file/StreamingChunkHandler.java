@@ -0,0 +1,366 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 边解析边分块的 SAX 处理器：Tika 每吐出一段文本就追加到缓冲区，凑够 maxChunkChars 就切出一个分块交给 sink，
+ * 缓冲区只保留最后 overlapChars 个字符作为下一块的开头。内存占用与文档大小无关，也没有 writeLimit 截断。
+ * <p>
+ * 切分点优先选在块后半段的最后一个空白处，避免把单词切断。段落、标题、表格行等块级元素结束时补一个换行，
+ * 连续的空白合并成一个。每个分块的元数据是 baseMetadata 的副本加上从 0 开始的 {@code index}，
+ * 与 langchain4j 的分割器一致。
+ * <p>
+ * 知道分页时（Tika 解析 PDF 输出的 {@code <div class="page">}，或调用方通过 {@link #startPage} 告知），
+ * 分块还带有 {@code page} 和 {@code page_end}：分块第一个和最后一个字符所在的页码，从 1 开始。
+ * <p>
+ * 用 {@link StructuredTextSplitter} 构造时不按字符数切，而是按行交给 {@link StructuredTextSplitter#session}，
+ * 按标题、段落、表格行和 token 预算分块：{@code <h1>}~{@code <h6>} 转成 Markdown 标题，单元格之间用制表符分隔
+ * （表格行不拆开），段落、列表项等块级元素结束时补一个空行。Word 文档的单元格里还套着段落
+ * （{@code <td><p>…</p></td>}），单元格内的块级元素结束和换行都只算一个空格，一行仍是一个表格行。
+ * 缓冲的只有当前一行和 splitter 里未装满的分块。
+ */
+public class StreamingChunkHandler extends DefaultHandler {
+
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "p", "div", "br", "li", "tr", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "blockquote", "table");
+    /**
+     * 按结构分块时只换行、不结束段落的块级元素
+     */
+    private static final Set<String> LINE_ELEMENTS = Set.of("br", "tr");
+    /**
+     * 按结构分块时一行最多缓冲的字符数，没有换行的超长文本按这个长度交给 splitter
+     */
+    private static final int MAX_LINE_CHARS = 4096;
+
+    private final int maxChunkChars;
+    private final int overlapChars;
+    private final Metadata baseMetadata;
+    private final Consumer<TextSegment> sink;
+
+    private final StringBuilder buffer = new StringBuilder();
+    /**
+     * 缓冲区里还没输出过的非空白字符数，为 0 时只剩重叠部分，结束时不再输出
+     */
+    private int pending;
+    private int index;
+    /**
+     * 页码标记 {缓冲区偏移, 页码}，按偏移递增；队首是缓冲区开头所在的页
+     */
+    private final ArrayDeque<int[]> pages = new ArrayDeque<>();
+    private int currentPage;
+
+    /**
+     * 按结构分块时的分块过程和当前行，按字符数分块时为 null
+     */
+    private final StructuredTextSplitter.Session session;
+    private final StringBuilder line = new StringBuilder();
+    private int headingLevel;
+    /**
+     * 当前所在的单元格层数，大于 0 时块级元素不换行
+     */
+    private int cellDepth;
+    /**
+     * 上一个非空白字符之后是否已有正文里的换行：正文里连续两个换行才是空行，
+     * 元素结束后 Tika 补的换行（如 {@code </tr>} 之后）不算，否则表格每行都会被空行隔开
+     */
+    private boolean newlineInText;
+
+    /**
+     * @param maxChunkChars 每块最大字符数
+     * @param overlapChars  块间重叠字符数，须小于 maxChunkChars 的一半
+     * @param baseMetadata  每个分块都带上的元数据，例如 {@code file_name}
+     * @param sink          接收分块，在解析线程上同步调用
+     */
+    public StreamingChunkHandler(int maxChunkChars, int overlapChars, Metadata baseMetadata, Consumer<TextSegment> sink) {
+        this.maxChunkChars = ensureGreaterThanZero(maxChunkChars, "maxChunkChars");
+        if (overlapChars < 0 || overlapChars >= maxChunkChars / 2) {
+            throw new IllegalArgumentException("overlapChars must be between 0 and maxChunkChars / 2 but is " + overlapChars);
+        }
+        this.overlapChars = overlapChars;
+        this.baseMetadata = baseMetadata == null ? new Metadata() : baseMetadata;
+        this.sink = ensureNotNull(sink, "sink");
+        this.session = null;
+    }
+
+    /**
+     * 按文档结构和 token 预算分块
+     *
+     * @param splitter     分块规则，每块的 token 上限、重叠等由它决定
+     * @param baseMetadata 每个分块都带上的元数据，例如 {@code file_name}
+     * @param sink         接收分块，在解析线程上同步调用
+     */
+    public StreamingChunkHandler(StructuredTextSplitter splitter, Metadata baseMetadata, Consumer<TextSegment> sink) {
+        this.maxChunkChars = 0;
+        this.overlapChars = 0;
+        this.baseMetadata = baseMetadata == null ? new Metadata() : baseMetadata;
+        this.sink = ensureNotNull(sink, "sink");
+        this.session = ensureNotNull(splitter, "splitter").session(this.baseMetadata, this.sink);
+    }
+
+    /**
+     * 之后追加的文本属于第 page 页
+     */
+    public void startPage(int page) {
+        if (session != null) {
+            endLine();
+            currentPage = page;
+            return;
+        }
+        currentPage = page;
+        if (!pages.isEmpty() && pages.peekLast()[0] == buffer.length()) {
+            pages.pollLast();
+        }
+        pages.addLast(new int[]{buffer.length(), page});
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        String name = localName.isEmpty() ? qName : localName;
+        if ("div".equals(name) && "page".equals(attributes.getValue("class"))) {
+            startPage(currentPage + 1);
+        }
+        if (session == null) {
+            return;
+        }
+        newlineInText = false;
+        if (isCell(name)) {
+            cellDepth++;
+        } else if (isHeading(name) && cellDepth == 0) {
+            endLine();
+            headingLevel = name.charAt(1) - '0';
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (session != null) {
+                // 单元格里的换行和制表符当作空格，制表符只用来分隔单元格
+                appendToLine(cellDepth > 0 && Character.isWhitespace(ch[i]) ? ' ' : ch[i]);
+            } else {
+                append(ch[i]);
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        String name = localName.isEmpty() ? qName : localName;
+        if (session == null) {
+            if (BLOCK_ELEMENTS.contains(name)) {
+                append('\n');
+            }
+            return;
+        }
+        newlineInText = false;
+        if (isCell(name)) {
+            cellDepth = Math.max(0, cellDepth - 1);
+            appendToLine('\t');
+        } else if (cellDepth > 0) {
+            if (BLOCK_ELEMENTS.contains(name)) {
+                appendToLine(' ');
+            }
+        } else if (BLOCK_ELEMENTS.contains(name)) {
+            endLine();
+            if (!LINE_ELEMENTS.contains(name)) {
+                session.line("", currentPage);
+            }
+        }
+        if (isHeading(name)) {
+            headingLevel = 0;
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        if (session != null) {
+            endLine();
+            session.finish();
+            currentPage = 0;
+            cellDepth = 0;
+            newlineInText = false;
+            return;
+        }
+        if (pending > 0) {
+            emit(buffer.length());
+        }
+        buffer.setLength(0);
+        pending = 0;
+        pages.clear();
+        currentPage = 0;
+    }
+
+    /**
+     * @return 已输出的分块数
+     */
+    public int chunkCount() {
+        return session != null ? session.chunkCount() : index;
+    }
+
+    /**
+     * 按结构分块时追加到当前行：换行符结束一行，正文里的空行结束段落，制表符保留（表格行的标志），其余空白合并成一个空格
+     */
+    private void appendToLine(char c) {
+        if (c == '\n') {
+            if (!line.isEmpty()) {
+                endLine();
+            } else if (newlineInText) {
+                session.line("", currentPage);
+            }
+            newlineInText = true;
+            return;
+        }
+        if (c == '\r') {
+            return;
+        }
+        if (Character.isWhitespace(c)) {
+            if (line.isEmpty()) {
+                return;
+            }
+            char last = line.charAt(line.length() - 1);
+            if (c == '\t' && last == ' ') {
+                line.setCharAt(line.length() - 1, '\t');
+            } else if (last != ' ' && last != '\t') {
+                line.append(c == '\t' ? '\t' : ' ');
+            }
+        } else {
+            line.append(c);
+            newlineInText = false;
+        }
+        if (line.length() >= MAX_LINE_CHARS) {
+            endLine();
+        }
+    }
+
+    private void endLine() {
+        if (line.isEmpty()) {
+            return;
+        }
+        String text = line.toString();
+        line.setLength(0);
+        if (headingLevel > 0 && StructuredTextSplitter.headingLevel(text.strip()) == 0) {
+            text = "#".repeat(headingLevel) + " " + text.strip();
+        }
+        session.line(text, currentPage);
+    }
+
+    private static boolean isCell(String name) {
+        return "td".equals(name) || "th".equals(name);
+    }
+
+    private static boolean isHeading(String name) {
+        return name.length() == 2 && name.charAt(0) == 'h' && name.charAt(1) >= '1' && name.charAt(1) <= '6';
+    }
+
+    private void append(char c) {
+        if (Character.isWhitespace(c)) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            char last = buffer.charAt(buffer.length() - 1);
+            if (last == '\n' || (last == ' ' && c != '\n')) {
+                return;
+            }
+            if (last == ' ') {
+                buffer.setCharAt(buffer.length() - 1, '\n');
+                return;
+            }
+            buffer.append(c == '\n' ? '\n' : ' ');
+        } else {
+            buffer.append(c);
+            pending++;
+        }
+        if (buffer.length() > maxChunkChars) {
+            cut();
+        }
+    }
+
+    private void cut() {
+        int end = maxChunkChars;
+        for (int i = maxChunkChars; i > maxChunkChars / 2; i--) {
+            if (Character.isWhitespace(buffer.charAt(i))) {
+                end = i;
+                break;
+            }
+        }
+        emit(end);
+        pending = 0;
+        for (int i = end; i < buffer.length(); i++) {
+            if (!Character.isWhitespace(buffer.charAt(i))) {
+                pending++;
+            }
+        }
+
+        // 从 end - overlapChars 之后的第一个空白处开始保留，重叠部分不以半个单词开头
+        int keepFrom = end - overlapChars;
+        for (int i = keepFrom; i < end && overlapChars > 0; i++) {
+            if (Character.isWhitespace(buffer.charAt(i))) {
+                keepFrom = i + 1;
+                break;
+            }
+        }
+        buffer.delete(0, keepFrom);
+        for (int[] marker : pages) {
+            marker[0] -= keepFrom;
+        }
+        while (pages.size() > 1 && secondMarker()[0] <= 0) {
+            pages.pollFirst();
+        }
+        if (!pages.isEmpty() && pages.peekFirst()[0] < 0) {
+            pages.peekFirst()[0] = 0;
+        }
+    }
+
+    private int[] secondMarker() {
+        Iterator<int[]> iterator = pages.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    private void emit(int end) {
+        String text = buffer.substring(0, end).strip();
+        if (text.isEmpty()) {
+            return;
+        }
+        Metadata metadata = baseMetadata.copy().put("index", String.valueOf(index++));
+        if (!pages.isEmpty()) {
+            int first = 0;
+            while (Character.isWhitespace(buffer.charAt(first))) {
+                first++;
+            }
+            int last = end - 1;
+            while (Character.isWhitespace(buffer.charAt(last))) {
+                last--;
+            }
+            metadata.put("page", pageAt(first)).put("page_end", pageAt(last));
+        }
+        sink.accept(TextSegment.from(text, metadata));
+    }
+
+    private int pageAt(int offset) {
+        int page = pages.peekFirst()[1];
+        for (int[] marker : pages) {
+            if (marker[0] > offset) {
+                break;
+            }
+            page = marker[1];
+        }
+        return page;
+    }
+}
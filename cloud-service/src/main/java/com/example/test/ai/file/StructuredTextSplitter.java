@@ -0,0 +1,551 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 按文档结构和 token 预算分块：先一遍扫描把文本切成标题、段落和表格行，每块只计一次 token 数，
+ * 再按顺序装进不超过 maxTokens 的分块。段落装不下时整段挪到下一块，单段超出预算才按句子拆，
+ * 单句还超出才按词（汉字按字）硬切。全程线性，不用正则。
+ * <p>
+ * 遇到标题时，当前分块已有 minTokens 以上就先结束，新章节从新分块开始，章节之间不加重叠；
+ * 分块元数据的 {@code heading} 是分块开头所在的标题路径，例如 {@code 第一章 安装 > 1.2 配置}。
+ * 表格行（以 {@code |} 开头或含制表符）不拆开，表格跨分块时在新分块开头重复表头行。
+ * <p>
+ * 长度按 {@link TokenCounter} 计，默认的 {@link TokenCounter#multilingual()} 是对 multilingual-e5
+ * 分词结果的保守估算；有条件时可以换成模型自己的分词器，例如 langchain4j 的
+ * {@code TokenCountEstimator::estimateTokenCountInText}。
+ * <p>
+ * 除了整篇 {@link #split}，还可以用 {@link #session} 逐行喂入文本、分块逐个交给 sink，
+ * 边解析边分块时不需要全文（见 {@link StreamingChunkHandler}）。逐行喂入时可以带上页码，
+ * 分块的 {@code page} 和 {@code page_end} 是它包含的第一行和最后一行所在的页。
+ */
+public class StructuredTextSplitter implements DocumentSplitter {
+
+    /**
+     * 计算一段文本的 token 数
+     */
+    @FunctionalInterface
+    public interface TokenCounter {
+
+        int count(String text);
+
+        /**
+         * multilingual-e5（XLM-R SentencePiece 词表）的保守估算：汉字、假名和谚文每字 1 个，
+         * 其他文字的字母数字串每 4 个字符 1 个（不足按 1 个），标点符号每个 1 个，空白不计
+         */
+        static TokenCounter multilingual() {
+            return StructuredTextSplitter::estimateTokens;
+        }
+    }
+
+    private enum Kind {HEADING, PARAGRAPH, ROW}
+
+    /**
+     * page、pageEnd 为 0 表示不知道页码
+     */
+    private record Block(Kind kind, String text, int tokens, int level, int page, int pageEnd) {
+    }
+
+    /**
+     * 分块里的一段文本，separator 是它和前一段之间的分隔符
+     */
+    private record Piece(String text, int tokens, String separator, boolean heading, int page, int pageEnd) {
+    }
+
+    /**
+     * 逐行喂入的分块过程，不是线程安全的，一篇文档用一个
+     */
+    public interface Session {
+
+        /**
+         * @param line 一行文本，不含换行符；空行结束当前段落
+         * @param page 这一行所在的页码，从 1 开始，不知道时为 0
+         */
+        void line(String line, int page);
+
+        /**
+         * 输出剩下的分块
+         */
+        void finish();
+
+        /**
+         * @return 已输出的分块数
+         */
+        int chunkCount();
+    }
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int minTokens;
+    private final TokenCounter tokenCounter;
+
+    private StructuredTextSplitter(Builder builder) {
+        this.maxTokens = ensureGreaterThanZero(builder.maxTokens, "maxTokens");
+        if (builder.overlapTokens < 0 || builder.overlapTokens >= maxTokens / 2) {
+            throw new IllegalArgumentException("overlapTokens must be between 0 and maxTokens / 2 but is " + builder.overlapTokens);
+        }
+        this.overlapTokens = builder.overlapTokens;
+        this.minTokens = builder.minTokens != null ? builder.minTokens : maxTokens / 4;
+        this.tokenCounter = ensureNotNull(builder.tokenCounter, "tokenCounter");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int maxTokens = 480;
+        private int overlapTokens = 48;
+        private Integer minTokens;
+        private TokenCounter tokenCounter = TokenCounter.multilingual();
+
+        /**
+         * @param maxTokens 每块最多的 token 数，默认 480，给 e5 的 512 上限留出 {@code passage: } 前缀和特殊 token 的余量
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * @param overlapTokens 同一章节内相邻分块最多重叠的 token 数，按整段、整句（硬切时按词）重叠，须小于 maxTokens 的一半，默认 48
+         */
+        public Builder overlapTokens(int overlapTokens) {
+            this.overlapTokens = overlapTokens;
+            return this;
+        }
+
+        /**
+         * @param minTokens 遇到标题时当前分块达到这个 token 数才另起一块，否则标题并入当前分块，默认 maxTokens 的 1/4
+         */
+        public Builder minTokens(int minTokens) {
+            this.minTokens = minTokens;
+            return this;
+        }
+
+        /**
+         * @param tokenCounter 计算 token 数，默认 {@link TokenCounter#multilingual()}
+         */
+        public Builder tokenCounter(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        public StructuredTextSplitter build() {
+            return new StructuredTextSplitter(this);
+        }
+    }
+
+    int maxTokens() {
+        return maxTokens;
+    }
+
+    @Override
+    public List<TextSegment> split(Document document) {
+        List<TextSegment> segments = new ArrayList<>();
+        // 全文已在内存中，段落不用提前结束
+        LineSession session = new LineSession(document.metadata(), segments::add, Integer.MAX_VALUE);
+        String text = document.text();
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            session.line(text.substring(start, end), 0);
+            start = end + 1;
+        }
+        session.finish();
+        return segments;
+    }
+
+    /**
+     * 逐行分块，分块在调用 {@link Session#line} 或 {@link Session#finish} 的线程上交给 sink。
+     * 没有空行分隔的段落累计超过 maxTokens 的 4 倍时在行尾提前结束（超出预算的段落本来就要按句子拆），
+     * 缓冲的文本与文档大小无关
+     */
+    public Session session(Metadata baseMetadata, Consumer<TextSegment> sink) {
+        return new LineSession(baseMetadata == null ? new Metadata() : baseMetadata,
+                ensureNotNull(sink, "sink"), 4 * maxTokens);
+    }
+
+    /**
+     * 按行扫描：空行结束段落，标题和表格行各自成块，其余连续的行合成一个段落
+     */
+    private final class LineSession implements Session {
+
+        private final Packer packer;
+        private final int maxParagraphTokens;
+        private final StringBuilder paragraph = new StringBuilder();
+        private int paragraphTokens;
+        private int paragraphPage;
+        private int paragraphPageEnd;
+
+        LineSession(Metadata baseMetadata, Consumer<TextSegment> sink, int maxParagraphTokens) {
+            this.packer = new Packer(baseMetadata, sink);
+            this.maxParagraphTokens = maxParagraphTokens;
+        }
+
+        @Override
+        public void line(String text, int page) {
+            String line = text.strip();
+            int level = headingLevel(line);
+            if (line.isEmpty() || level > 0 || isTableRow(line)) {
+                endParagraph();
+                if (level > 0) {
+                    packer.accept(block(Kind.HEADING, line, level, page, page));
+                } else if (!line.isEmpty()) {
+                    packer.accept(block(Kind.ROW, line, 0, page, page));
+                }
+                return;
+            }
+            if (!paragraph.isEmpty() && page != paragraphPageEnd) {
+                // 段落跨页时按页拆开，每块的页码是准确的，装箱时两半通常还在同一分块里
+                endParagraph();
+            }
+            if (paragraph.isEmpty()) {
+                paragraphPage = page;
+            } else {
+                paragraph.append('\n');
+            }
+            paragraph.append(line);
+            paragraphPageEnd = page;
+            if (maxParagraphTokens != Integer.MAX_VALUE) {
+                paragraphTokens += tokenCounter.count(line);
+                if (paragraphTokens > maxParagraphTokens) {
+                    endParagraph();
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            endParagraph();
+            packer.finish();
+        }
+
+        @Override
+        public int chunkCount() {
+            return packer.count;
+        }
+
+        private void endParagraph() {
+            if (!paragraph.isEmpty()) {
+                packer.accept(block(Kind.PARAGRAPH, paragraph.toString(), 0, paragraphPage, paragraphPageEnd));
+                paragraph.setLength(0);
+                paragraphTokens = 0;
+            }
+        }
+    }
+
+    private Block block(Kind kind, String text, int level, int page, int pageEnd) {
+        return new Block(kind, text, tokenCounter.count(text), level, page, pageEnd);
+    }
+
+    /**
+     * @return Markdown 标题按 # 的个数，{@code 第X章}、{@code 第X节} 分别为 1、2；不是标题返回 0
+     */
+    static int headingLevel(String line) {
+        int hashes = 0;
+        while (hashes < line.length() && line.charAt(hashes) == '#') {
+            hashes++;
+        }
+        if (hashes > 0) {
+            return hashes <= 6 && hashes < line.length() && line.charAt(hashes) == ' ' ? hashes : 0;
+        }
+        if (line.length() > 40 || !line.startsWith("第")) {
+            return 0;
+        }
+        for (int i = 1; i < line.length() && i <= 8; i++) {
+            char c = line.charAt(i);
+            if (c == '章' || c == '篇') {
+                return i > 1 ? 1 : 0;
+            }
+            if (c == '节') {
+                return i > 1 ? 2 : 0;
+            }
+            if (!Character.isDigit(c) && "一二三四五六七八九十百零〇".indexOf(c) < 0) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    static boolean isTableRow(String line) {
+        return line.startsWith("|") || line.indexOf('\t') >= 0;
+    }
+
+    /**
+     * 一篇文档的装箱状态
+     */
+    private final class Packer {
+
+        private final Metadata baseMetadata;
+        private final Consumer<TextSegment> sink;
+        private int count;
+        private final List<Piece> pieces = new ArrayList<>();
+        private int tokens;
+        private final Deque<Block> headings = new ArrayDeque<>();
+        private String chunkHeading;
+        private String tableHeader;
+        private int tableHeaderTokens;
+        private Kind previous;
+        /**
+         * 正在装的块的页码，拆开的句子和词沿用
+         */
+        private int page;
+        private int pageEnd;
+
+        Packer(Metadata baseMetadata, Consumer<TextSegment> sink) {
+            this.baseMetadata = baseMetadata;
+            this.sink = sink;
+        }
+
+        void accept(Block block) {
+            page = block.page();
+            pageEnd = block.pageEnd();
+            switch (block.kind()) {
+                case HEADING -> {
+                    if (tokens >= minTokens) {
+                        flush(false);
+                    }
+                    while (!headings.isEmpty() && headings.peekLast().level() >= block.level()) {
+                        headings.pollLast();
+                    }
+                    headings.addLast(block);
+                    add(block.text(), block.tokens(), "\n\n", false, true);
+                }
+                case ROW -> {
+                    if (previous != Kind.ROW) {
+                        tableHeader = block.text();
+                        tableHeaderTokens = block.tokens();
+                    }
+                    add(block.text(), block.tokens(), previous == Kind.ROW ? "\n" : "\n\n", true);
+                }
+                case PARAGRAPH -> {
+                    // 分块里只有标题时不把标题单独留下，段落装不下就按句子接着装
+                    if (block.tokens() <= maxTokens && (tokens + block.tokens() <= maxTokens || !headingsOnly())) {
+                        add(block.text(), block.tokens(), "\n\n", false);
+                    } else {
+                        splitSentences(block.text());
+                    }
+                }
+            }
+            previous = block.kind();
+        }
+
+        void finish() {
+            flush(false);
+        }
+
+        /**
+         * 超出预算的段落按句子装，句子之间不加分隔符（句末空白保留在句子里）
+         */
+        private void splitSentences(String paragraph) {
+            String separator = "\n\n";
+            int start = 0;
+            for (int i = 0; i < paragraph.length(); i++) {
+                if (isSentenceEnd(paragraph, i)) {
+                    int end = i + 1;
+                    while (end < paragraph.length() && isClosing(paragraph.charAt(end))) {
+                        end++;
+                    }
+                    while (end < paragraph.length() && Character.isWhitespace(paragraph.charAt(end))) {
+                        end++;
+                    }
+                    addSentence(paragraph.substring(start, end), separator);
+                    separator = "";
+                    start = end;
+                    i = end - 1;
+                }
+            }
+            if (start < paragraph.length()) {
+                addSentence(paragraph.substring(start), separator);
+            }
+        }
+
+        private void addSentence(String sentence, String separator) {
+            int sentenceTokens = tokenCounter.count(sentence);
+            if (sentenceTokens <= maxTokens && (tokens + sentenceTokens <= maxTokens || !headingsOnly())) {
+                add(sentence, sentenceTokens, separator, false);
+                return;
+            }
+            // 单句超出预算（或紧跟在标题后装不下）：按词（连续字母数字和其后的空白）或单个字硬切，接着当前分块往下装
+            int i = 0;
+            while (i < sentence.length()) {
+                int end = i + Character.charCount(sentence.codePointAt(i));
+                if (isWordChar(sentence.codePointAt(i))) {
+                    while (end < sentence.length() && isWordChar(sentence.codePointAt(end))) {
+                        end += Character.charCount(sentence.codePointAt(end));
+                    }
+                }
+                while (end < sentence.length() && Character.isWhitespace(sentence.charAt(end))) {
+                    end++;
+                }
+                String unit = sentence.substring(i, end);
+                add(unit, tokenCounter.count(unit), i == 0 ? separator : "", false);
+                i = end;
+            }
+        }
+
+        private void add(String text, int textTokens, String separator, boolean tableRow) {
+            add(text, textTokens, separator, tableRow, false);
+        }
+
+        private void add(String text, int textTokens, String separator, boolean tableRow, boolean heading) {
+            if (tokens + textTokens > maxTokens && !pieces.isEmpty()) {
+                flush(true);
+                if (tableRow && !text.equals(tableHeader) && tableHeaderTokens + textTokens <= maxTokens) {
+                    // 表格续到新分块：重复表头，不用普通重叠
+                    pieces.clear();
+                    tokens = 0;
+                    append(tableHeader, tableHeaderTokens, "", false);
+                } else {
+                    while (!pieces.isEmpty() && tokens + textTokens > maxTokens) {
+                        tokens -= pieces.removeFirst().tokens();
+                    }
+                }
+            }
+            append(text, textTokens, separator, heading);
+        }
+
+        private void append(String text, int textTokens, String separator, boolean heading) {
+            append(new Piece(text, textTokens, separator, heading, page, pageEnd));
+        }
+
+        private void append(Piece piece) {
+            if (pieces.isEmpty()) {
+                chunkHeading = headingPath();
+            }
+            pieces.add(pieces.isEmpty()
+                    ? new Piece(piece.text(), piece.tokens(), "", piece.heading(), piece.page(), piece.pageEnd())
+                    : piece);
+            tokens += piece.tokens();
+        }
+
+        /**
+         * 输出当前分块；overlap 为 true 时保留末尾不超过 overlapTokens 的整段作为下一块的开头
+         */
+        private void flush(boolean overlap) {
+            if (pieces.isEmpty()) {
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            for (Piece piece : pieces) {
+                text.append(piece.separator()).append(piece.text());
+            }
+            Metadata metadata = baseMetadata.copy().put("index", String.valueOf(count++));
+            if (chunkHeading != null) {
+                metadata.put("heading", chunkHeading);
+            }
+            if (pieces.getFirst().page() > 0) {
+                metadata.put("page", pieces.getFirst().page()).put("page_end", pieces.getLast().pageEnd());
+            }
+            sink.accept(TextSegment.from(text.toString().strip(), metadata));
+
+            int keep = pieces.size();
+            int keptTokens = 0;
+            if (overlap) {
+                while (keep > 1 && keptTokens + pieces.get(keep - 1).tokens() <= overlapTokens) {
+                    keep--;
+                    keptTokens += pieces.get(keep).tokens();
+                }
+            }
+            List<Piece> kept = new ArrayList<>(pieces.subList(keep, pieces.size()));
+            pieces.clear();
+            tokens = 0;
+            for (Piece piece : kept) {
+                append(piece);
+            }
+        }
+
+        private boolean headingsOnly() {
+            if (pieces.isEmpty()) {
+                return false;
+            }
+            for (Piece piece : pieces) {
+                if (!piece.heading()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String headingPath() {
+            if (headings.isEmpty()) {
+                return null;
+            }
+            StringBuilder path = new StringBuilder();
+            for (Block heading : headings) {
+                if (!path.isEmpty()) {
+                    path.append(" > ");
+                }
+                path.append(stripHashes(heading.text()));
+            }
+            return path.toString();
+        }
+    }
+
+    private static String stripHashes(String heading) {
+        int i = 0;
+        while (i < heading.length() && heading.charAt(i) == '#') {
+            i++;
+        }
+        return heading.substring(i).strip();
+    }
+
+    private static boolean isSentenceEnd(String text, int i) {
+        char c = text.charAt(i);
+        if ("。！？；!?;".indexOf(c) >= 0) {
+            return true;
+        }
+        // 英文句点后面要跟空白，避免切开 3.14、e.g 这类写法
+        return c == '.' && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1)));
+    }
+
+    private static boolean isClosing(char c) {
+        return "\"'”’）)】」』".indexOf(c) >= 0;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) && !isCjk(codePoint);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    static int estimateTokens(String text) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isWordChar(codePoint)) {
+                run++;
+                continue;
+            }
+            tokens += (run + 3) / 4;
+            run = 0;
+            if (!Character.isWhitespace(codePoint)) {
+                tokens++;
+            }
+        }
+        return tokens + (run + 3) / 4;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.test.ai.ollama;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 批量向量化：把 {@link #embedAll} 的输入切成固定大小的批次交给底层模型，同时最多 maxConcurrentBatches 个批次在途。
+ * <p>
+ * 某个批次因输入被拒绝（请求体过大、超出上下文长度、参数校验失败）时对半拆分后重试，直到单条仍失败才抛出异常。
+ * 连接失败、超时等与输入无关的错误不拆分，直接抛出并停止派发剩余批次：服务不可用时拆分只会把一次失败放大成几十次超时等待。
+ * 返回的向量与输入一一对应，token 用量为各批次之和。
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingEmbeddingModel.class);
+
+    /**
+     * 请求无效、请求体过大、无法处理的内容
+     */
+    private static final Set<Integer> REJECTED_STATUS_CODES = Set.of(400, 413, 422);
+
+    /**
+     * Ollama 输入超出上下文时返回 500，只能从报错信息识别，例如 "input length exceeds the context length"
+     */
+    private static final Pattern INPUT_TOO_LONG = Pattern.compile(
+            "context length|input length|too (large|long)", Pattern.CASE_INSENSITIVE);
+
+    private final EmbeddingModel delegate;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+
+    private BatchingEmbeddingModel(Builder builder) {
+        this.delegate = ensureNotNull(builder.delegate, "delegate");
+        this.batchSize = ensureGreaterThanZero(getOrDefault(builder.batchSize, 32), "batchSize");
+        this.maxConcurrentBatches = ensureGreaterThanZero(getOrDefault(builder.maxConcurrentBatches, 2), "maxConcurrentBatches");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private EmbeddingModel delegate;
+        private Integer batchSize;
+        private Integer maxConcurrentBatches;
+
+        /**
+         * @param delegate 实际执行向量化的模型，例如 {@code OllamaEmbeddingModel}
+         */
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * @param batchSize 每次请求的最大条数，默认 32
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentBatches 同时在途的批次数，默认 2；一般不超过模型服务的并行度（Ollama 的 OLLAMA_NUM_PARALLEL）
+         */
+        public Builder maxConcurrentBatches(int maxConcurrentBatches) {
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        public BatchingEmbeddingModel build() {
+            return new BatchingEmbeddingModel(this);
+        }
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        if (textSegments.isEmpty()) {
+            return Response.from(List.of());
+        }
+        if (textSegments.size() <= batchSize) {
+            Embedding[] embeddings = new Embedding[textSegments.size()];
+            TokenUsage tokenUsage = embedBatch(textSegments, 0, textSegments.size(), embeddings);
+            return Response.from(Arrays.asList(embeddings), tokenUsage);
+        }
+
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        Semaphore inFlight = new Semaphore(maxConcurrentBatches);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<TokenUsage>> batches = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < textSegments.size(); from += batchSize) {
+                int batchFrom = from;
+                int batchTo = Math.min(from + batchSize, textSegments.size());
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    batches.forEach(batch -> batch.cancel(true));
+                    throw new IllegalStateException("interrupted while embedding", e);
+                }
+                if (failed.get()) {
+                    // 已有批次失败，结果注定作废，不再派发
+                    inFlight.release();
+                    break;
+                }
+                batches.add(executor.submit(() -> {
+                    try {
+                        return embedBatch(textSegments, batchFrom, batchTo, embeddings);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+        }
+
+        TokenUsage tokenUsage = null;
+        for (Future<TokenUsage> batch : batches) {
+            try {
+                tokenUsage = TokenUsage.sum(tokenUsage, batch.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while embedding", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return Response.from(Arrays.asList(embeddings), tokenUsage);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    /**
+     * 向量化 [from, to) 并写入 embeddings 的对应位置，输入被拒绝时对半拆分重试
+     */
+    private TokenUsage embedBatch(List<TextSegment> textSegments, int from, int to, Embedding[] embeddings) {
+        try {
+            Response<List<Embedding>> response = delegate.embedAll(textSegments.subList(from, to));
+            List<Embedding> content = response.content();
+            if (content.size() != to - from) {
+                throw new IllegalStateException(String.format(
+                        "expected %d embeddings but model returned %d", to - from, content.size()));
+            }
+            for (int i = 0; i < content.size(); i++) {
+                embeddings[from + i] = content.get(i);
+            }
+            return response.tokenUsage();
+        } catch (RuntimeException e) {
+            if (to - from == 1 || !isInputRejected(e)) {
+                throw e;
+            }
+            int middle = (from + to) >>> 1;
+            log.warn("Embedding batch [{}, {}) failed, retrying as [{}, {}) and [{}, {}): {}",
+                    from, to, from, middle, middle, to, e.getMessage());
+            TokenUsage first = embedBatch(textSegments, from, middle, embeddings);
+            return TokenUsage.sum(first, embedBatch(textSegments, middle, to, embeddings));
+        }
+    }
+
+    /**
+     * 判断失败是否由输入本身引起、拆小后可能成功。沿 cause 链查找：
+     * 出现 I/O 错误或超时说明服务不可达或过载，一律不拆分；
+     * 请求被判为无效（4xx 中的 400/413/422、参数校验失败）或报错信息指出输入超长时才拆分。
+     */
+    static boolean isInputRejected(Throwable error) {
+        boolean rejected = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException
+                    || cause instanceof java.util.concurrent.TimeoutException
+                    || cause instanceof TimeoutException) {
+                return false;
+            }
+            if (cause instanceof InvalidRequestException || cause instanceof IllegalArgumentException) {
+                rejected = true;
+            } else if (cause instanceof HttpException httpException && REJECTED_STATUS_CODES.contains(httpException.statusCode())) {
+                rejected = true;
+            } else if (cause.getMessage() != null && INPUT_TOO_LONG.matcher(cause.getMessage()).find()) {
+                rejected = true;
+            }
+        }
+        return rejected;
+    }
+}
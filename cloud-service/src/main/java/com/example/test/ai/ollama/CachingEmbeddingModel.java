@@ -0,0 +1,260 @@
+package com.example.test.ai.ollama;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 按内容缓存向量：key 为 SHA-256(模型名 + 文本) 的前 128 位，同一模型下相同文本只向量化一次。
+ * <p>
+ * 第一层是堆上的 LRU，按向量字节数限制大小；可选的第二层是 {@link EmbeddingDiskCache}，重启后依然有效。
+ * 磁盘缓存目录由打开它的实例独占到 {@link #close()}，用完必须关闭。
+ * 只缓存文本，元数据不参与 key。{@link #embedAll} 只把未命中的文本（去重后）交给底层模型，一次调用完成。
+ */
+public class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    /**
+     * 每个堆上条目除向量外的大致开销（key、map 节点、数组头）
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final long maxHeapBytes;
+    private final EmbeddingDiskCache diskCache;
+
+    private final LinkedHashMap<Key, float[]> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private long heapBytes;
+
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * SHA-256 的前 128 位
+     */
+    record Key(long high, long low) {
+    }
+
+    /**
+     * @param heapHits  堆上命中次数
+     * @param diskHits  磁盘命中次数
+     * @param misses    未命中（交给底层模型）的次数
+     * @param heapBytes 堆上缓存的估算字节数
+     * @param diskBytes 磁盘缓存文件的字节数，未启用磁盘层时为 0
+     */
+    public record Stats(long heapHits, long diskHits, long misses, long heapBytes, long diskBytes) {
+
+        public double hitRate() {
+            long total = heapHits + diskHits + misses;
+            return total == 0 ? 0 : (double) (heapHits + diskHits) / total;
+        }
+    }
+
+    private CachingEmbeddingModel(Builder builder) {
+        this.delegate = ensureNotNull(builder.delegate, "delegate");
+        this.modelName = ensureNotBlank(builder.modelName, "modelName");
+        this.maxHeapBytes = getOrDefault(builder.maxHeapBytes, 64L * 1024 * 1024);
+        this.diskCache = builder.diskDirectory == null
+                ? null : EmbeddingDiskCache.tryOpen(builder.diskDirectory, getOrDefault(builder.maxDiskBytes, 1024L * 1024 * 1024));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private EmbeddingModel delegate;
+        private String modelName;
+        private Long maxHeapBytes;
+        private Path diskDirectory;
+        private Long maxDiskBytes;
+
+        /**
+         * @param delegate 未命中时实际执行向量化的模型
+         */
+        public Builder delegate(EmbeddingModel delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * @param modelName 参与 key 计算的模型名，换模型后旧的缓存自然失效
+         */
+        public Builder modelName(String modelName) {
+            this.modelName = modelName;
+            return this;
+        }
+
+        /**
+         * @param maxHeapBytes 堆上缓存的字节上限，默认 64MB（1024 维约 1.5 万条）
+         */
+        public Builder maxHeapBytes(long maxHeapBytes) {
+            this.maxHeapBytes = maxHeapBytes;
+            return this;
+        }
+
+        /**
+         * @param diskDirectory 磁盘缓存目录，不设置时只用堆上缓存；目录正被其他实例使用时也只用堆上缓存
+         */
+        public Builder diskDirectory(Path diskDirectory) {
+            this.diskDirectory = diskDirectory;
+            return this;
+        }
+
+        /**
+         * @param maxDiskBytes 磁盘缓存的字节上限，默认 1GB
+         */
+        public Builder maxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        public CachingEmbeddingModel build() {
+            return new CachingEmbeddingModel(this);
+        }
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        // 同一批里重复的文本只请求一次
+        Map<Key, List<Integer>> missing = new LinkedHashMap<>();
+        List<TextSegment> toEmbed = new ArrayList<>();
+        for (int i = 0; i < textSegments.size(); i++) {
+            Key key = key(textSegments.get(i).text());
+            float[] vector = lookup(key);
+            if (vector != null) {
+                embeddings[i] = Embedding.from(vector.clone());
+                continue;
+            }
+            List<Integer> positions = missing.get(key);
+            if (positions == null) {
+                misses.increment();
+                positions = new ArrayList<>();
+                missing.put(key, positions);
+                toEmbed.add(textSegments.get(i));
+            }
+            positions.add(i);
+        }
+        if (toEmbed.isEmpty()) {
+            return Response.from(Arrays.asList(embeddings));
+        }
+
+        Response<List<Embedding>> response = delegate.embedAll(toEmbed);
+        int next = 0;
+        for (Map.Entry<Key, List<Integer>> entry : missing.entrySet()) {
+            Embedding embedding = response.content().get(next++);
+            // 缓存自己的副本，调用方修改返回的向量不会污染缓存
+            store(entry.getKey(), embedding.vector().clone());
+            for (int position : entry.getValue()) {
+                embeddings[position] = embedding;
+            }
+        }
+        return Response.from(Arrays.asList(embeddings), response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    public Stats stats() {
+        synchronized (heap) {
+            return new Stats(heapHits.sum(), diskHits.sum(), misses.sum(), heapBytes,
+                    diskCache == null ? 0 : diskCache.sizeInBytes());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (diskCache != null) {
+            try {
+                diskCache.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private float[] lookup(Key key) {
+        synchronized (heap) {
+            float[] vector = heap.get(key);
+            if (vector != null) {
+                heapHits.increment();
+                return vector;
+            }
+        }
+        if (diskCache == null) {
+            return null;
+        }
+        float[] vector = diskCache.get(key);
+        if (vector != null) {
+            diskHits.increment();
+            putHeap(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(Key key, float[] vector) {
+        putHeap(key, vector);
+        if (diskCache != null) {
+            diskCache.put(key, vector);
+        }
+    }
+
+    private void putHeap(Key key, float[] vector) {
+        long bytes = entryBytes(vector);
+        if (bytes > maxHeapBytes) {
+            return;
+        }
+        synchronized (heap) {
+            float[] previous = heap.put(key, vector);
+            if (previous != null) {
+                heapBytes -= entryBytes(previous);
+            }
+            heapBytes += bytes;
+            var eldest = heap.entrySet().iterator();
+            while (heapBytes > maxHeapBytes && eldest.hasNext()) {
+                heapBytes -= entryBytes(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    private Key key(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+            return new Key(hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long entryBytes(float[] vector) {
+        return ENTRY_OVERHEAD_BYTES + (long) vector.length * Float.BYTES;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.test.ai.ollama;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link CachingEmbeddingModel} 的磁盘层：两代追加写文件，堆上只保留 key 到文件偏移的索引。
+ * 每个文件以 int magic | int version 开头，其后每条记录（小端序）：
+ * <pre>
+ * long keyHigh | long keyLow | int dimension | float[dimension] | int crc32c
+ * </pre>
+ * 当前代超过 maxBytes / 2 时轮换：旧一代被丢弃，当前代变为旧一代。旧一代中命中的向量会重新写入当前代，
+ * 因此常用的向量一直保留，总大小不超过 maxBytes。
+ * <p>
+ * 同一目录同时只能被一个实例使用：打开时对目录下的锁文件加排他锁，拿不到锁（其他进程或本进程的另一个实例
+ * 正在使用）时 {@link #tryOpen} 返回 null，调用方只用堆上缓存。读取时校验记录里的 key 和校验和，
+ * 不一致的记录按未命中处理，不会把损坏的数据或别的文本的向量返回出去。
+ */
+final class EmbeddingDiskCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingDiskCache.class);
+
+    private static final String CURRENT = "embeddings.cache";
+    private static final String PREVIOUS = "embeddings.cache.old";
+    private static final String LOCK = "embeddings.cache.lock";
+    private static final int MAGIC = 0x454D4243;
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int HEADER_BYTES = 2 * Long.BYTES + Integer.BYTES;
+    private static final int CHECKSUM_BYTES = Integer.BYTES;
+    /**
+     * 维度上限，读到更大的值说明记录头已损坏
+     */
+    private static final int MAX_DIMENSION = 1 << 16;
+
+    private final Path directory;
+    private final long generationBytes;
+    private final FileChannel lockChannel;
+    private Generation current;
+    private Generation previous;
+
+    private EmbeddingDiskCache(Path directory, long maxBytes, FileChannel lockChannel) throws IOException {
+        this.directory = directory;
+        this.generationBytes = Math.max(1, maxBytes / 2);
+        this.lockChannel = lockChannel;
+        this.previous = Files.exists(directory.resolve(PREVIOUS)) ? Generation.open(directory.resolve(PREVIOUS)) : null;
+        this.current = Generation.open(directory.resolve(CURRENT));
+    }
+
+    /**
+     * 打开目录下的磁盘缓存并独占它
+     *
+     * @return 目录正被其他进程或本进程的另一个实例使用时返回 null
+     */
+    static EmbeddingDiskCache tryOpen(Path directory, long maxBytes) {
+        try {
+            Files.createDirectories(directory);
+            FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                lockChannel.close();
+                log.warn("Embedding cache {} is in use by another process, using the heap cache only", directory);
+                return null;
+            }
+            try {
+                return new EmbeddingDiskCache(directory, maxBytes, lockChannel);
+            } catch (IOException | RuntimeException e) {
+                // 关闭通道同时释放锁
+                lockChannel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized float[] get(CachingEmbeddingModel.Key key) {
+        try {
+            float[] vector = current.read(key);
+            if (vector == null && previous != null) {
+                vector = previous.read(key);
+                if (vector != null) {
+                    put(key, vector);
+                }
+            }
+            return vector;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void put(CachingEmbeddingModel.Key key, float[] vector) {
+        try {
+            if (current.index.containsKey(key)) {
+                return;
+            }
+            if (current.size + recordBytes(vector.length) > generationBytes && current.size > FILE_HEADER_BYTES) {
+                rotate();
+            }
+            current.append(key, vector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long sizeInBytes() {
+        return current.size + (previous == null ? 0 : previous.size);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            current.channel.close();
+            if (previous != null) {
+                previous.channel.close();
+            }
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (previous != null) {
+            previous.channel.close();
+        }
+        current.channel.force(false);
+        current.channel.close();
+        Files.move(directory.resolve(CURRENT), directory.resolve(PREVIOUS), StandardCopyOption.REPLACE_EXISTING);
+        previous = Generation.open(directory.resolve(PREVIOUS));
+        current = Generation.open(directory.resolve(CURRENT));
+    }
+
+    private static long recordBytes(int dimension) {
+        return HEADER_BYTES + (long) dimension * Float.BYTES + CHECKSUM_BYTES;
+    }
+
+    private static final class Generation {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final Map<CachingEmbeddingModel.Key, Long> index = new HashMap<>();
+        private long size;
+
+        private Generation(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * 打开并扫描一代文件重建索引。格式不符的文件（包括旧版本）整体清空；
+         * 截掉写到一半或校验和不对的尾部记录。中间记录只在读取时校验。
+         */
+        static Generation open(Path path) throws IOException {
+            Generation generation = new Generation(path, FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            FileChannel channel = generation.channel;
+            long fileSize = channel.size();
+            if (!hasFileHeader(channel, fileSize)) {
+                channel.truncate(0);
+                ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                fileHeader.putInt(MAGIC).putInt(VERSION).flip();
+                while (fileHeader.hasRemaining()) {
+                    channel.write(fileHeader, FILE_HEADER_BYTES - fileHeader.remaining());
+                }
+                generation.size = FILE_HEADER_BYTES;
+                return generation;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = FILE_HEADER_BYTES;
+            long last = -1;
+            while (position + HEADER_BYTES <= fileSize) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                CachingEmbeddingModel.Key key = new CachingEmbeddingModel.Key(header.getLong(), header.getLong());
+                int dimension = header.getInt();
+                if (dimension < 0 || dimension > MAX_DIMENSION || position + recordBytes(dimension) > fileSize) {
+                    break;
+                }
+                generation.index.put(key, position);
+                last = position;
+                position += recordBytes(dimension);
+            }
+            generation.size = position;
+            // 进程在写最后一条记录时退出，长度可能刚好对上但内容不完整
+            if (last >= 0 && generation.verify(last) == null) {
+                generation.index.values().remove(last);
+                position = last;
+                generation.size = last;
+            }
+            if (position < fileSize) {
+                log.warn("Truncating {} bytes of incomplete records from {}", fileSize - position, path);
+                channel.truncate(position);
+            }
+            return generation;
+        }
+
+        private static boolean hasFileHeader(FileChannel channel, long fileSize) throws IOException {
+            if (fileSize < FILE_HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, fileHeader, 0);
+            fileHeader.flip();
+            return fileHeader.getInt() == MAGIC && fileHeader.getInt() == VERSION;
+        }
+
+        float[] read(CachingEmbeddingModel.Key key) throws IOException {
+            Long position = index.get(key);
+            if (position == null) {
+                return null;
+            }
+            ByteBuffer record = verify(position);
+            if (record == null || record.getLong(0) != key.high() || record.getLong(Long.BYTES) != key.low()) {
+                log.warn("Dropping corrupt embedding cache record at offset {} of {}", position, path);
+                index.remove(key);
+                return null;
+            }
+            float[] vector = new float[record.getInt(2 * Long.BYTES)];
+            record.position(HEADER_BYTES);
+            record.asFloatBuffer().get(vector);
+            return vector;
+        }
+
+        /**
+         * 读出 position 处的整条记录并校验
+         *
+         * @return 记录内容（不含校验和），维度越界、超出文件或校验和不符时返回 null
+         */
+        private ByteBuffer verify(long position) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, position);
+            int dimension = header.getInt(2 * Long.BYTES);
+            if (dimension < 0 || dimension > MAX_DIMENSION || position + recordBytes(dimension) > size) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate((int) recordBytes(dimension)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, record, position);
+            int stored = record.getInt(record.capacity() - CHECKSUM_BYTES);
+            record.flip().limit(record.capacity() - CHECKSUM_BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(record.duplicate());
+            return (int) crc.getValue() == stored ? record : null;
+        }
+
+        void append(CachingEmbeddingModel.Key key, float[] vector) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) recordBytes(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(key.high()).putLong(key.low()).putInt(vector.length);
+            buffer.asFloatBuffer().put(vector);
+            buffer.position(HEADER_BYTES + vector.length * Float.BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().flip());
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            index.put(key, size);
+            size = position;
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("unexpected end of embedding cache file");
+                }
+                position += read;
+            }
+        }
+    }
+}
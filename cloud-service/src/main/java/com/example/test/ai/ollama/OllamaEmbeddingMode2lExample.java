@@ -1,5 +1,6 @@
 package com.example.test.ai.ollama;
 
+import com.example.test.ai.vector.SimilarityKernels;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -56,13 +57,23 @@ public class OllamaEmbeddingMode2lExample {
         return dotProduct / (normA * normB);
     }
 
+    /**
+     * 计算向量余弦相似度，直接在 float[] 上计算，不创建 INDArray
+     */
+    public static double calculateCosineSimilarity(float[] vectorA, float[] vectorB) {
+        if (vectorA.length != vectorB.length) {
+            throw new IllegalArgumentException("向量维度不一致");
+        }
+        return SimilarityKernels.cosineSimilarity(vectorA, vectorB);
+    }
+
     static void find_top_similar_texts(String input_text,List<TextSegment> text_list,int top_n,EmbeddingModel model){
-        INDArray vectorA = Nd4j.create(model.embed(input_text).content().vector());
+        float[] vectorA = model.embed(input_text).content().vector();
+        List<Embedding> embeddings = model.embedAll(text_list).content();
         List<Map<Integer,Double>> similarities = new ArrayList<>();
-        for(int i=0;i<model.embedAll(text_list).content().size();i++) {
-            Embedding embedding = model.embedAll(text_list).content().get(i);
-            INDArray vectorB = Nd4j.create(embedding.vector());
-            Double similarity = calculateCosineSimilarity(vectorA, vectorB);
+        for(int i=0;i<embeddings.size();i++) {
+            Embedding embedding = embeddings.get(i);
+            Double similarity = calculateCosineSimilarity(vectorA, embedding.vector());
             Map<Integer,Double> map = new HashMap<>();
             map.put(i+1,similarity);
             similarities.add(map);
@@ -0,0 +1,525 @@
+package com.example.test.ai.vector;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * 进程内 BM25 倒排索引，补充向量检索对精确词的召回：合同编号、型号、人名和生僻词的向量相似度往往不高，按词命中却很准。
+ * <p>
+ * 分词：连续的字母数字转小写为一个词，用 {@code - _ / .} 连起来的编号再整体作为一个词（如 {@code ht-2024-001}）；
+ * 汉字、假名和谚文按相邻两字切分，单独一个字时取这个字。得分是标准 BM25，没有归一化，只能在同一次查询内比较。
+ * <p>
+ * 同 id 重复写入视为覆盖。删除立即从倒排表移除，空出的文档表位置留给下一次写入，反复覆盖写入同一批分块时
+ * 文档表不会变长。读写锁保护，检索可以并发。
+ * {@link #save}/{@link #load} 以 JSON lines 保存 id、文本和元数据，加载时重新分词建索引。
+ * <p>
+ * 用 {@link #open} 打开时另有一个追加写的日志文件（索引文件名加 {@code .journal}）：每次写入和删除先追加到日志，
+ * 进程中途退出、没来得及 {@link #save} 时，下次打开回放日志，已写入向量库的分块不会从关键词检索里丢失。
+ * {@link #save} 写完快照后清空日志，相当于压缩。日志只写到操作系统缓冲，不逐条 fsync，防进程崩溃不防断电。
+ * <p>
+ * 整个索引在堆上：每个分块的原文和元数据常驻，倒排表每个（词，分块）组合一个 HashMap 条目，约 60~80 字节。
+ * 一个 500 字的中文分块有几百个不同的二元词，索引里约占几十 KB，十万个分块要预留数 GB 堆；
+ * 打开时读完整个快照和日志并重新分词，耗时与分块数成正比。
+ */
+public class Bm25Index implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+    private static final Comparator<Hit> BY_SCORE = Comparator.comparingDouble(Hit::score);
+
+    private final double k1;
+    private final double b;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 词 → 文档序号 → 词频
+     */
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    /**
+     * 按文档序号，删除后为 null
+     */
+    private final List<Doc> docs = new ArrayList<>();
+    /**
+     * docs 中为 null 的序号，写入时优先复用
+     */
+    private final ArrayDeque<Integer> freeDocs = new ArrayDeque<>();
+    private final Map<String, Integer> docsById = new HashMap<>();
+    private long totalLength;
+    /**
+     * {@link #open} 打开时的快照文件和日志，{@link #load} 或 {@link Builder#build} 得到的索引为 null
+     */
+    private Path snapshotFile;
+    private FileChannel journal;
+
+    private record Doc(String id, TextSegment segment, int length) {
+    }
+
+    private record Hit(int doc, double score) {
+    }
+
+    private Bm25Index(Builder builder) {
+        this.k1 = getOrDefault(builder.k1, 1.2);
+        this.b = getOrDefault(builder.b, 0.75);
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("k1 must be >= 0 and b between 0 and 1 but got k1=" + k1 + ", b=" + b);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Double k1;
+        private Double b;
+
+        /**
+         * @param k1 词频饱和参数，默认 1.2；越大词频的影响越大
+         */
+        public Builder k1(double k1) {
+            this.k1 = k1;
+            return this;
+        }
+
+        /**
+         * @param b 文档长度归一化程度，0 到 1，默认 0.75
+         */
+        public Builder b(double b) {
+            this.b = b;
+            return this;
+        }
+
+        public Bm25Index build() {
+            return new Bm25Index(this);
+        }
+    }
+
+    public void add(String id, TextSegment segment) {
+        ensureNotNull(id, "id");
+        ensureNotNull(segment, "segment");
+        lock.writeLock().lock();
+        try {
+            addLocked(id, segment);
+            journal(List.of(addEntry(id, segment)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param ids 与 segments 一一对应，通常是写入向量库返回的 id，这样两路检索的结果可以按 id 合并
+     */
+    public void addAll(List<String> ids, List<TextSegment> segments) {
+        if (ids.size() != segments.size()) {
+            throw new IllegalArgumentException("ids and segments must have the same size but got "
+                    + ids.size() + " and " + segments.size());
+        }
+        lock.writeLock().lock();
+        try {
+            List<Map<String, Object>> entries = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                addLocked(ensureNotNull(ids.get(i), "id"), ensureNotNull(segments.get(i), "segment"));
+                entries.add(addEntry(ids.get(i), segments.get(i)));
+            }
+            journal(entries);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::removeLocked);
+            journal(ids.stream().map(id -> Map.<String, Object>of("remove", id)).toList());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 文档表的长度，包括还没被复用的空位
+     */
+    int capacity() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param filter 可为 null；在分块元数据上求值，语义与向量库的过滤条件一致
+     * @return 按 BM25 得分从高到低，最多 maxResults 个；查询里的词都没出现过时为空
+     */
+    public List<EmbeddingMatch<TextSegment>> search(String query, int maxResults, Filter filter) {
+        ensureGreaterThanZero(maxResults, "maxResults");
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            int documents = docsById.size();
+            if (documents == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documents;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((doc, frequency) -> {
+                    double norm = k1 * (1 - b + b * docs.get(doc).length() / averageLength);
+                    scores.merge(doc, idf * frequency * (k1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(BY_SCORE);
+            scores.forEach((doc, score) -> {
+                if (filter != null && !filter.test(docs.get(doc).segment().metadata())) {
+                    return;
+                }
+                if (top.size() < maxResults) {
+                    top.add(new Hit(doc, score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new Hit(doc, score));
+                }
+            });
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Hit hit = top.poll();
+                Doc doc = docs.get(hit.doc());
+                matches.add(new EmbeddingMatch<>(hit.score(), doc.id(), null, doc.segment()));
+            }
+            return matches.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入 file（先写临时文件再原子替换）。file 是 {@link #open} 打开的文件时随后清空日志，
+     * 期间持有写锁，写入和检索都要等快照写完
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean compact = journal != null && file.equals(snapshotFile);
+        Lock saveLock = compact ? lock.writeLock() : lock.readLock();
+        saveLock.lock();
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Doc doc : docs) {
+                    if (doc == null) {
+                        continue;
+                    }
+                    writer.write(OBJECT_MAPPER.writeValueAsString(addEntry(doc.id(), doc.segment())));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            if (compact) {
+                journal.truncate(0);
+            }
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * 读取 file 的快照并回放日志，之后的写入和删除都追加到日志；用完需要 {@link #close}
+     */
+    public static Bm25Index open(Path file, Builder builder) throws IOException {
+        Bm25Index index = load(file, builder);
+        Path journalFile = journalFile(file);
+        Path parent = journalFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            index.replay(journalFile, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        index.snapshotFile = file;
+        index.journal = channel;
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static Path journalFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    /**
+     * 依次应用日志里完整的行，截掉写到一半的尾部，把通道定位到末尾供追加
+     */
+    @SuppressWarnings("unchecked")
+    private void replay(Path journalFile, FileChannel channel) throws IOException {
+        long size = channel.size();
+        long valid = 0;
+        // 截断在多字节字符中间的尾部按替换字符解码，那一行解析失败，不会抛出解码异常
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    Map<String, Object> entry;
+                    try {
+                        entry = OBJECT_MAPPER.readValue(line, MAP_TYPE);
+                    } catch (IOException e) {
+                        break;
+                    }
+                    if (entry.containsKey("remove")) {
+                        removeLocked((String) entry.get("remove"));
+                    } else {
+                        Metadata metadata = Metadata.from((Map<String, Object>) entry.get("metadata"));
+                        addLocked((String) entry.get("id"), TextSegment.from((String) entry.get("text"), metadata));
+                    }
+                }
+                valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        if (valid < size) {
+            channel.truncate(valid);
+        }
+        channel.position(channel.size());
+        if (valid > size) {
+            // 最后一行完整但换行符没写进去
+            channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+    }
+
+    /**
+     * 把一批写入或删除作为一次写操作追加到日志，调用方持有写锁
+     */
+    private void journal(List<Map<String, Object>> entries) {
+        if (journal == null || entries.isEmpty()) {
+            return;
+        }
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (Map<String, Object> entry : entries) {
+                lines.append(OBJECT_MAPPER.writeValueAsString(entry)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Object> addEntry(String id, TextSegment segment) {
+        Map<String, Object> line = new HashMap<>();
+        line.put("id", id);
+        line.put("text", segment.text());
+        line.put("metadata", segment.metadata().toMap());
+        return line;
+    }
+
+    /**
+     * 读取 {@link #save} 写的文件并重建索引，文件不存在时返回空索引
+     */
+    @SuppressWarnings("unchecked")
+    public static Bm25Index load(Path file, Builder builder) throws IOException {
+        Bm25Index index = builder.build();
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Map<String, Object> entry = OBJECT_MAPPER.readValue(line, MAP_TYPE);
+                Metadata metadata = Metadata.from((Map<String, Object>) entry.get("metadata"));
+                index.addLocked((String) entry.get("id"), TextSegment.from((String) entry.get("text"), metadata));
+            }
+        }
+        return index;
+    }
+
+    private void addLocked(String id, TextSegment segment) {
+        removeLocked(id);
+        List<String> terms = tokenize(segment.text());
+        Doc added = new Doc(id, segment, terms.size());
+        int doc;
+        if (freeDocs.isEmpty()) {
+            doc = docs.size();
+            docs.add(added);
+        } else {
+            // 空位的倒排表项在删除时已经清掉，直接复用序号
+            doc = freeDocs.pop();
+            docs.set(doc, added);
+        }
+        docsById.put(id, doc);
+        totalLength += terms.size();
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> new HashMap<>()).merge(doc, 1, Integer::sum);
+        }
+    }
+
+    private void removeLocked(String id) {
+        Integer doc = docsById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        Doc removed = docs.set(doc, null);
+        freeDocs.push(doc);
+        totalLength -= removed.length();
+        for (String term : new LinkedHashSet<>(tokenize(removed.segment().text()))) {
+            Map<Integer, Integer> posting = postings.get(term);
+            posting.remove(doc);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * 拆成检索词，见类注释；同一个词出现几次就返回几次
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        StringBuilder compound = new StringBuilder();
+        int parts = 0;
+        int previousCjk = -1;
+        boolean cjkRunEmitted = false;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            boolean cjk = isCjk(codePoint);
+
+            if (Character.isLetterOrDigit(codePoint) && !cjk) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+                compound.appendCodePoint(Character.toLowerCase(codePoint));
+            } else {
+                if (!word.isEmpty()) {
+                    terms.add(word.toString());
+                    word.setLength(0);
+                    parts++;
+                }
+                // 连接符前后都是字母数字时编号继续，否则编号结束
+                boolean joins = isConnector(codePoint) && parts > 0 && i < text.length()
+                        && isWordChar(text.codePointAt(i));
+                if (joins) {
+                    compound.appendCodePoint(codePoint);
+                } else {
+                    if (parts > 1) {
+                        terms.add(compound.toString());
+                    }
+                    compound.setLength(0);
+                    parts = 0;
+                }
+            }
+
+            if (cjk) {
+                if (previousCjk >= 0) {
+                    terms.add(new String(Character.toChars(previousCjk)) + new String(Character.toChars(codePoint)));
+                    cjkRunEmitted = true;
+                }
+                previousCjk = codePoint;
+            } else {
+                if (previousCjk >= 0 && !cjkRunEmitted) {
+                    terms.add(new String(Character.toChars(previousCjk)));
+                }
+                previousCjk = -1;
+                cjkRunEmitted = false;
+            }
+        }
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+            parts++;
+        }
+        if (parts > 1) {
+            terms.add(compound.toString());
+        }
+        if (previousCjk >= 0 && !cjkRunEmitted) {
+            terms.add(new String(Character.toChars(previousCjk)));
+        }
+        return terms;
+    }
+
+    private static boolean isConnector(int codePoint) {
+        return codePoint == '-' || codePoint == '_' || codePoint == '/' || codePoint == '.';
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) && !isCjk(codePoint);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,680 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.Utils.randomUUID;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 持久化的本地向量库：向量与文本存放在内存映射的不可变 {@link VectorSegment} 中，不占用堆；
+ * 新写入先进 {@link VectorWriteLog} 和内存表，攒够 flushThreshold 条后落成新段，段数超过 maxSegments 时合并为一个段。
+ * <p>
+ * 重启时只映射段文件、扫描一遍 id 并回放日志，不读取向量。堆上只保留 id 到位置的映射和每段的删除位图。
+ * 检索为精确的暴力扫描，得分与 {@link HnswEmbeddingStore} 一样为余弦相似度换算到 [0, 1]，
+ * 返回的 {@link Embedding} 为归一化后的向量。同 id 重复写入视为覆盖，序号大的生效。
+ * <p>
+ * 配置 {@link Quantization} 后每个段另存一份量化码：检索先扫量化码取 maxResults * rescoreFactor 个候选，
+ * 再用全精度向量重新打分，只有候选的原始向量会被读到。内存表中的记录始终全精度计算。
+ * 码本整个库共用一份（{@code codebook.qnt}），第一次落成至少 {@link #SHARED_CODEBOOK_SAMPLE} 条的段时训练，
+ * 之后落盘和合并都只编码、不再训练，持有写锁的时间不包括 k-means。在此之前的小段各自用自己的向量训练。
+ */
+public class DiskEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String WRITE_LOG = "vectors.wal";
+    private static final String CODEBOOK = "codebook.qnt";
+    private static final Comparator<Hit> BY_SCORE = Comparator.comparingDouble(Hit::similarity);
+    private static final long QUANTIZER_SEED = 42L;
+    /**
+     * 段至少有这么多条向量时，用它训练的码本才保存下来给以后的段共用
+     */
+    static final int SHARED_CODEBOOK_SAMPLE = 4096;
+
+    private final Path directory;
+    private final int flushThreshold;
+    private final int maxSegments;
+    private final Quantization quantization;
+    private final Integer productSubspaces;
+    private final int rescoreFactor;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final VectorWriteLog writeLog;
+    private final List<VectorSegment> segments = new ArrayList<>();
+    private final Map<VectorSegment, BitSet> deleted = new HashMap<>();
+    private final Map<VectorSegment, QuantizedSegment> codes = new HashMap<>();
+    private final Map<String, VectorRecord> memtable = new LinkedHashMap<>();
+    private final Map<String, Location> locations = new HashMap<>();
+    private final Map<String, Long> tombstones = new HashMap<>();
+    private Integer dimension;
+    /**
+     * 共用码本，还没有训练过时为 null
+     */
+    private VectorQuantizer codebook;
+    private long nextSeq;
+    private int nextGeneration;
+
+    /**
+     * 记录所在位置，segment 为 null 表示在内存表中
+     */
+    private record Location(long seq, VectorSegment segment, int ordinal) {
+    }
+
+    private record Hit(float similarity, VectorSegment segment, int ordinal, VectorRecord record) {
+    }
+
+    private DiskEmbeddingStore(Builder builder) {
+        this.directory = ensureNotNull(builder.directory, "directory");
+        this.flushThreshold = ensureGreaterThanZero(getOrDefault(builder.flushThreshold, 10_000), "flushThreshold");
+        this.maxSegments = ensureGreaterThanZero(getOrDefault(builder.maxSegments, 8), "maxSegments");
+        this.quantization = builder.quantization;
+        this.productSubspaces = builder.productSubspaces;
+        this.rescoreFactor = ensureGreaterThanZero(getOrDefault(builder.rescoreFactor, 4), "rescoreFactor");
+        this.dimension = builder.dimension;
+        try {
+            Files.createDirectories(directory);
+            openSegments();
+            this.writeLog = new VectorWriteLog(directory.resolve(WRITE_LOG), getOrDefault(builder.syncWrites, true));
+            writeLog.replay(new VectorWriteLog.Visitor() {
+                @Override
+                public void add(VectorRecord record) {
+                    applyAdd(record);
+                }
+
+                @Override
+                public void delete(String id, long seq) {
+                    applyDelete(id, seq);
+                }
+            });
+        } catch (IOException e) {
+            segments.forEach(this::closeSegment);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private Integer dimension;
+        private Integer flushThreshold;
+        private Integer maxSegments;
+        private Boolean syncWrites;
+        private Quantization quantization;
+        private Integer productSubspaces;
+        private Integer rescoreFactor;
+
+        /**
+         * @param directory 数据目录，不存在时自动创建；同一目录同时只能被一个实例打开
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param dimension 向量维度，不设置时取已有段或第一条写入向量的维度
+         */
+        public Builder dimension(int dimension) {
+            this.dimension = dimension;
+            return this;
+        }
+
+        /**
+         * @param flushThreshold 内存表落成段的条数，默认 10000；也是重启时需要回放的日志上限
+         */
+        public Builder flushThreshold(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+            return this;
+        }
+
+        /**
+         * @param maxSegments 段数超过该值时合并全部段并清理已删除记录，默认 8
+         */
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * @param syncWrites 每次写入后是否对日志 fsync，默认 true；关闭后宕机可能丢失最近的写入
+         */
+        public Builder syncWrites(boolean syncWrites) {
+            this.syncWrites = syncWrites;
+            return this;
+        }
+
+        /**
+         * @param quantization 段的量化方式，默认不量化；已有段会在打开时补建量化码
+         */
+        public Builder quantization(Quantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * @param productSubspaces 乘积量化的子空间数，需整除维度；默认每 8 维一个子空间（不能整除时依次尝试 4、2、1 维）
+         */
+        public Builder productSubspaces(int productSubspaces) {
+            this.productSubspaces = productSubspaces;
+            return this;
+        }
+
+        /**
+         * @param rescoreFactor 量化粗排保留 maxResults 的多少倍候选做全精度重排，默认 4；越大召回越高
+         */
+        public Builder rescoreFactor(int rescoreFactor) {
+            this.rescoreFactor = rescoreFactor;
+            return this;
+        }
+
+        public DiskEmbeddingStore build() {
+            return new DiskEmbeddingStore(this);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = randomUUID();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = randomUUID();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = embeddings.stream().map(embedding -> randomUUID()).collect(toList());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and textSegments must have the same size");
+        }
+        lock.writeLock().lock();
+        try {
+            List<VectorRecord> records = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                float[] vector = HnswEmbeddingStore.normalize(embeddings.get(i).vector());
+                checkDimension(vector.length);
+                records.add(new VectorRecord(nextSeq + i, ids.get(i), vector,
+                        textSegments == null ? null : textSegments.get(i)));
+            }
+            records.forEach(writeLog::appendAdd);
+            writeLog.commit();
+            records.forEach(this::applyAdd);
+            maybeFlush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (dimension == null) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = HnswEmbeddingStore.normalize(request.queryEmbedding().vector());
+            if (query.length != dimension) {
+                throw new IllegalArgumentException(String.format(
+                        "query dimension %d does not match store dimension %d", query.length, dimension));
+            }
+            Filter filter = request.filter();
+            int maxResults = request.maxResults();
+            PriorityQueue<Hit> top = new PriorityQueue<>(maxResults + 1, BY_SCORE);
+
+            for (VectorSegment segment : segments) {
+                QuantizedSegment quantized = codes.get(segment);
+                if (quantized == null) {
+                    scan(segment, query, filter, top, maxResults);
+                } else {
+                    PriorityQueue<Hit> candidates = new PriorityQueue<>(maxResults * rescoreFactor + 1, BY_SCORE);
+                    scan(segment, quantized, query, filter, candidates, maxResults * rescoreFactor);
+                    for (Hit candidate : candidates) {
+                        int i = candidate.ordinal();
+                        offer(top, new Hit(segment.similarity(query, i), segment, i, null), maxResults);
+                    }
+                }
+            }
+            for (VectorRecord record : memtable.values()) {
+                if (filter != null && !filter.test(record.metadata())) {
+                    continue;
+                }
+                offer(top, new Hit(SimilarityKernels.dot(query, record.vector()), null, -1, record), maxResults);
+            }
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Hit hit = top.poll();
+                double score = RelevanceScore.fromCosineSimilarity(hit.similarity());
+                if (score < request.minScore()) {
+                    continue;
+                }
+                VectorRecord record = hit.record() != null ? hit.record() : hit.segment().read(hit.ordinal());
+                matches.add(new EmbeddingMatch<>(score, record.id(), Embedding.from(record.vector()), record.segment()));
+            }
+            return new EmbeddingSearchResult<>(matches.reversed());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        lock.writeLock().lock();
+        try {
+            delete(ids.stream().filter(locations::containsKey).distinct().toList());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "filter");
+        lock.writeLock().lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            for (VectorSegment segment : segments) {
+                BitSet dead = deleted.get(segment);
+                for (int i = dead.nextClearBit(0); i < segment.count(); i = dead.nextClearBit(i + 1)) {
+                    VectorRecord record = segment.read(i);
+                    if (filter.test(record.metadata())) {
+                        ids.add(record.id());
+                    }
+                }
+            }
+            memtable.values().stream().filter(record -> filter.test(record.metadata())).forEach(record -> ids.add(record.id()));
+            delete(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            for (VectorSegment segment : segments) {
+                closeSegment(segment);
+                segment.delete();
+            }
+            segments.clear();
+            deleted.clear();
+            memtable.clear();
+            locations.clear();
+            tombstones.clear();
+            writeLog.rewrite(Map.of(), List.of());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 当前有效（未删除）的向量条数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 立即把内存表落成一个新段，并清空日志中已落盘的写入
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            flushMemtable();
+            if (segments.size() > maxSegments) {
+                compactSegments();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 落盘内存表并把所有段合并为一个，物理删除已删除和被覆盖的记录
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            flushMemtable();
+            compactSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            writeLog.close();
+            segments.forEach(this::closeSegment);
+            segments.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openSegments() throws IOException {
+        List<Path> bases;
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> all = files.toList();
+            // 未完成的段和日志重写只留下 .tmp 文件，直接丢弃
+            for (Path file : all) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            bases = all.stream()
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(".vec"))
+                    .map(name -> directory.resolve(name.substring(0, name.length() - ".vec".length())))
+                    .sorted(Comparator.comparingInt(DiskEmbeddingStore::generationOf))
+                    .toList();
+        }
+        for (Path base : bases) {
+            VectorSegment segment = VectorSegment.open(base);
+            checkDimension(segment.dimension());
+            attach(segment);
+            nextSeq = Math.max(nextSeq, segment.maxSeq() + 1);
+            nextGeneration = Math.max(nextGeneration, generationOf(base) + 1);
+            for (int i = 0; i < segment.count(); i++) {
+                ByteBuffer record = segment.record(i);
+                place(VectorRecord.decodeId(record), new Location(VectorRecord.decodeSeq(record), segment, i));
+            }
+        }
+    }
+
+    private void applyAdd(VectorRecord record) {
+        checkDimension(record.vector().length);
+        nextSeq = Math.max(nextSeq, record.seq() + 1);
+        Long tombstone = tombstones.get(record.id());
+        if (tombstone != null && tombstone > record.seq()) {
+            return;
+        }
+        if (place(record.id(), new Location(record.seq(), null, -1))) {
+            memtable.put(record.id(), record);
+        }
+    }
+
+    private void applyDelete(String id, long seq) {
+        nextSeq = Math.max(nextSeq, seq + 1);
+        tombstones.merge(id, seq, Math::max);
+        Location location = locations.get(id);
+        if (location != null && location.seq() < seq) {
+            locations.remove(id);
+            markDeleted(id, location);
+        }
+    }
+
+    /**
+     * 序号较大的记录生效，另一条标记为删除；段合并后宕机或日志已落段时会出现同序号的重复记录
+     *
+     * @return 新记录是否生效
+     */
+    private boolean place(String id, Location location) {
+        Location current = locations.get(id);
+        if (current != null && current.seq() >= location.seq()) {
+            markDeleted(id, location);
+            return false;
+        }
+        if (current != null) {
+            markDeleted(id, current);
+        }
+        locations.put(id, location);
+        return true;
+    }
+
+    private void markDeleted(String id, Location location) {
+        if (location.segment() == null) {
+            memtable.remove(id);
+        } else {
+            deleted.get(location.segment()).set(location.ordinal());
+        }
+    }
+
+    private void delete(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            long seq = nextSeq;
+            for (int i = 0; i < ids.size(); i++) {
+                writeLog.appendDelete(ids.get(i), seq + i);
+            }
+            writeLog.commit();
+            for (int i = 0; i < ids.size(); i++) {
+                applyDelete(ids.get(i), seq + i);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void maybeFlush() throws IOException {
+        if (memtable.size() < flushThreshold) {
+            return;
+        }
+        flushMemtable();
+        if (segments.size() > maxSegments) {
+            compactSegments();
+        }
+    }
+
+    private void flushMemtable() throws IOException {
+        if (memtable.isEmpty()) {
+            return;
+        }
+        VectorSegment segment;
+        try (VectorSegment.Writer writer = VectorSegment.writer(nextSegmentBase(), dimension)) {
+            for (VectorRecord record : memtable.values()) {
+                writer.append(record);
+            }
+            segment = writer.finish();
+        }
+        attach(segment);
+        int ordinal = 0;
+        for (VectorRecord record : memtable.values()) {
+            locations.put(record.id(), new Location(record.seq(), segment, ordinal++));
+        }
+        memtable.clear();
+        // 墓碑仍可能屏蔽旧段中的记录，保留到合并为止
+        writeLog.rewrite(tombstones, List.of());
+    }
+
+    private void compactSegments() throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        List<VectorSegment> old = List.copyOf(segments);
+        VectorSegment merged;
+        try (VectorSegment.Writer writer = VectorSegment.writer(nextSegmentBase(), dimension)) {
+            for (VectorSegment segment : old) {
+                BitSet dead = deleted.get(segment);
+                for (int i = dead.nextClearBit(0); i < segment.count(); i = dead.nextClearBit(i + 1)) {
+                    writer.append(segment.read(i));
+                }
+            }
+            merged = writer.finish();
+        }
+        segments.clear();
+        deleted.clear();
+        attach(merged);
+        for (int i = 0; i < merged.count(); i++) {
+            ByteBuffer record = merged.record(i);
+            locations.put(VectorRecord.decodeId(record), new Location(VectorRecord.decodeSeq(record), merged, i));
+        }
+        for (VectorSegment segment : old) {
+            closeSegment(segment);
+            segment.delete();
+        }
+        // 旧段删除后墓碑才可以丢弃，否则中途宕机会让旧段中已删除的记录复活
+        tombstones.clear();
+        writeLog.rewrite(tombstones, List.copyOf(memtable.values()));
+    }
+
+    private void scan(VectorSegment segment, float[] query, Filter filter, PriorityQueue<Hit> top, int limit) {
+        BitSet dead = deleted.get(segment);
+        for (int i = dead.nextClearBit(0); i < segment.count(); i = dead.nextClearBit(i + 1)) {
+            float similarity = segment.similarity(query, i);
+            if (top.size() == limit && similarity <= top.peek().similarity()) {
+                continue;
+            }
+            if (filter != null && !filter.test(segment.read(i).metadata())) {
+                continue;
+            }
+            offer(top, new Hit(similarity, segment, i, null), limit);
+        }
+    }
+
+    /**
+     * 与 {@link #scan(VectorSegment, float[], Filter, PriorityQueue, int)} 相同，只是用量化码的近似得分
+     */
+    private void scan(VectorSegment segment, QuantizedSegment quantized, float[] query, Filter filter,
+                      PriorityQueue<Hit> top, int limit) {
+        BitSet dead = deleted.get(segment);
+        VectorQuantizer.Scorer scorer = quantized.scorer(query);
+        for (int i = dead.nextClearBit(0); i < segment.count(); i = dead.nextClearBit(i + 1)) {
+            float similarity = quantized.score(scorer, i);
+            if (top.size() == limit && similarity <= top.peek().similarity()) {
+                continue;
+            }
+            if (filter != null && !filter.test(segment.read(i).metadata())) {
+                continue;
+            }
+            offer(top, new Hit(similarity, segment, i, null), limit);
+        }
+    }
+
+    private void attach(VectorSegment segment) {
+        segments.add(segment);
+        deleted.put(segment, new BitSet(segment.count()));
+        if (quantization != null) {
+            int subspaces = getOrDefault(productSubspaces, defaultSubspaces(segment.dimension()));
+            codes.put(segment, QuantizedSegment.openOrBuild(segment, quantization, subspaces, () -> codebook(segment, subspaces)));
+        }
+    }
+
+    /**
+     * 给 segment 编码用的码本：有共用码本时直接用；没有时用这个段训练，段足够大就保存为共用码本
+     */
+    private VectorQuantizer codebook(VectorSegment segment, int subspaces) {
+        Path file = directory.resolve(CODEBOOK);
+        if (codebook == null) {
+            codebook = QuantizedSegment.readCodebook(file, quantization, segment.dimension(), subspaces);
+        }
+        if (codebook != null) {
+            return codebook;
+        }
+        VectorQuantizer trained = QuantizedSegment.train(segment, quantization, subspaces, QUANTIZER_SEED);
+        if (segment.count() >= SHARED_CODEBOOK_SAMPLE) {
+            QuantizedSegment.writeCodebook(file, trained, segment.dimension());
+            codebook = trained;
+        }
+        return trained;
+    }
+
+    private void closeSegment(VectorSegment segment) {
+        QuantizedSegment quantized = codes.remove(segment);
+        if (quantized != null) {
+            quantized.close();
+        }
+        segment.close();
+    }
+
+    private static int defaultSubspaces(int dimension) {
+        for (int subDimension = 8; subDimension > 1; subDimension /= 2) {
+            if (dimension % subDimension == 0) {
+                return dimension / subDimension;
+            }
+        }
+        return dimension;
+    }
+
+    private Path nextSegmentBase() {
+        return directory.resolve(String.format("%s%08d", SEGMENT_PREFIX, nextGeneration++));
+    }
+
+    private void checkDimension(int actual) {
+        if (dimension == null) {
+            dimension = actual;
+        } else if (actual != dimension) {
+            throw new IllegalArgumentException(String.format(
+                    "embedding dimension %d does not match store dimension %d", actual, dimension));
+        }
+    }
+
+    private static int generationOf(Path base) {
+        return Integer.parseInt(base.getFileName().toString().substring(SEGMENT_PREFIX.length()));
+    }
+
+    private static void offer(PriorityQueue<Hit> top, Hit hit, int maxResults) {
+        top.offer(hit);
+        if (top.size() > maxResults) {
+            top.poll();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import static dev.langchain4j.internal.Utils.getOrDefault;
+import static dev.langchain4j.internal.Utils.randomUUID;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 进程内 HNSW 向量库，可替代 {@code ChromaEmbeddingStoreV2} 用于延迟敏感的检索（无网络往返）。
+ * <p>
+ * 与 chroma 集合一致使用余弦距离，得分同样换算到 [0, 1]；过滤条件直接在元数据上求值，
+ * 语义与 {@code ChromaMetadataFilterMapper} 映射到 chroma where 子句的一致。
+ * 向量归一化后存储，返回的 {@link Embedding} 为归一化后的向量。删除只打墓碑标记，节点仍参与图遍历。
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int initialCapacity;
+    private final long seed;
+    private final Integer configuredDimension;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswIndex index;
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private HnswEmbeddingStore(Builder builder) {
+        this.m = getOrDefault(builder.m, 16);
+        // 层级分布按 1/ln(m) 缩放，m = 1 时为无穷大
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2, but is: " + m);
+        }
+        this.efConstruction = ensureGreaterThanZero(getOrDefault(builder.efConstruction, 200), "efConstruction");
+        this.efSearch = ensureGreaterThanZero(getOrDefault(builder.efSearch, 64), "efSearch");
+        this.initialCapacity = getOrDefault(builder.initialCapacity, 1024);
+        this.seed = getOrDefault(builder.seed, 42L);
+        this.configuredDimension = builder.dimension;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Integer m;
+        private Integer efConstruction;
+        private Integer efSearch;
+        private Integer dimension;
+        private Integer initialCapacity;
+        private Long seed;
+
+        /**
+         * @param m 每层每个节点的最大邻居数（第 0 层为 2m），至少为 2，默认 16；越大召回越高、内存越多
+         */
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * @param efConstruction 建图时的候选队列长度，默认 200；越大图质量越好、写入越慢
+         */
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * @param efSearch 检索时的候选队列长度（实际取 max(efSearch, maxResults)），默认 64；越大召回越高、检索越慢
+         */
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * @param dimension 向量维度，不设置时取第一条写入向量的维度
+         */
+        public Builder dimension(int dimension) {
+            this.dimension = dimension;
+            return this;
+        }
+
+        /**
+         * @param initialCapacity 预分配的向量条数，默认 1024
+         */
+        public Builder initialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * @param seed 层级随机数种子，相同数据、相同种子建出的图相同
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public HnswEmbeddingStore build() {
+            return new HnswEmbeddingStore(this);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = randomUUID();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = randomUUID();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = embeddings.stream().map(embedding -> randomUUID()).collect(toList());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and textSegments must have the same size");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                float[] vector = normalize(embeddings.get(i).vector());
+                HnswIndex hnsw = indexFor(vector.length);
+                // 同 id 重复写入视为覆盖：旧节点打墓碑
+                Integer previous = nodesById.get(ids.get(i));
+                if (previous != null) {
+                    deleted.set(previous);
+                }
+                int node = hnsw.add(vector);
+                this.ids.add(ids.get(i));
+                segments.add(textSegments == null ? null : textSegments.get(i));
+                nodesById.put(ids.get(i), node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = normalize(request.queryEmbedding().vector());
+            if (query.length != index.dimension()) {
+                throw new IllegalArgumentException(String.format(
+                        "query dimension %d does not match store dimension %d", query.length, index.dimension()));
+            }
+            IntPredicate accept = acceptor(request.filter());
+            int ef = Math.max(efSearch, request.maxResults());
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+            for (HnswIndex.Candidate candidate : index.search(query, ef, accept)) {
+                double score = RelevanceScore.fromCosineSimilarity(candidate.similarity());
+                if (score < request.minScore()) {
+                    break;
+                }
+                int node = candidate.node();
+                matches.add(new EmbeddingMatch<>(score, ids.get(node), Embedding.from(index.vector(node)), segments.get(node)));
+                if (matches.size() == request.maxResults()) {
+                    break;
+                }
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    deleted.set(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "filter");
+        lock.writeLock().lock();
+        try {
+            for (int node = 0; node < ids.size(); node++) {
+                if (!deleted.get(node) && filter.test(metadataOf(node))) {
+                    deleted.set(node);
+                    nodesById.remove(ids.get(node));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            index = null;
+            ids.clear();
+            segments.clear();
+            nodesById.clear();
+            deleted.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 当前有效（未删除）的向量条数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private HnswIndex indexFor(int dimension) {
+        if (index == null) {
+            int expected = getOrDefault(configuredDimension, dimension);
+            index = new HnswIndex(expected, m, efConstruction, initialCapacity, seed);
+        }
+        if (dimension != index.dimension()) {
+            throw new IllegalArgumentException(String.format(
+                    "embedding dimension %d does not match store dimension %d", dimension, index.dimension()));
+        }
+        return index;
+    }
+
+    private IntPredicate acceptor(Filter filter) {
+        if (filter == null) {
+            return node -> !deleted.get(node);
+        }
+        return node -> !deleted.get(node) && filter.test(metadataOf(node));
+    }
+
+    private Metadata metadataOf(int node) {
+        TextSegment segment = segments.get(node);
+        return segment == null ? new Metadata() : segment.metadata();
+    }
+
+    static float[] normalize(float[] vector) {
+        return SimilarityKernels.normalize(vector);
+    }
+}
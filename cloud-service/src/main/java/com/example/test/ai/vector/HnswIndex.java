@@ -0,0 +1,265 @@
+package com.example.test.ai.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW 图索引（Malkov &amp; Yashunin），向量以 float 连续存放在一个数组中，节点用 int 编号。
+ * 向量需事先归一化，相似度为点积（即余弦相似度）。
+ * 本类不做同步，由 {@link HnswEmbeddingStore} 用读写锁保护。
+ */
+class HnswIndex {
+
+    private static final Comparator<Candidate> BY_SIMILARITY = Comparator.comparingDouble(Candidate::similarity);
+
+    private final int dimension;
+    private final int m;
+    private final int maxConnections0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    private float[] vectors;
+    /**
+     * links[node][level][0] 为邻居数量，其后为邻居编号
+     */
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimension, int m, int efConstruction, int initialCapacity, long seed) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxConnections0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        int capacity = Math.max(16, initialCapacity);
+        this.vectors = new float[capacity * dimension];
+        this.links = new int[capacity][][];
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+    }
+
+    /**
+     * 插入一个已归一化的向量，返回节点编号
+     */
+    int add(float[] vector) {
+        int node = size;
+        ensureCapacity(node + 1);
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxConnections0 : m) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vector, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, ep, efConstruction, l, n -> n != node);
+            int[] selected = selectNeighbors(candidates, m);
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbor : selected) {
+                connect(neighbor, node, l);
+            }
+            if (!candidates.isEmpty()) {
+                ep = candidates.get(0).node();
+            }
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 返回与 query 最相似的至多 ef 个被 accept 接受的节点，按相似度降序。
+     * 未被接受的节点（已删除或不满足过滤条件）仍参与图遍历，只是不进入结果。
+     */
+    List<Candidate> search(float[] query, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(query, ep, l);
+        }
+        return searchLayer(query, ep, ef, 0, accept);
+    }
+
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BY_SIMILARITY.reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(BY_SIMILARITY);
+
+        Candidate start = new Candidate(entry, similarity(query, entry));
+        visited.set(entry);
+        candidates.add(start);
+        if (accept.test(entry)) {
+            results.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[] neighbors = neighbors(current.node(), level);
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    if (accept.test(neighbor)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SIMILARITY.reversed());
+        return sorted;
+    }
+
+    private int greedyClosest(float[] query, int entry, int level) {
+        int best = entry;
+        float bestSimilarity = similarity(query, entry);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = neighbors(best, level);
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float similarity = similarity(query, neighbors[i]);
+                if (similarity > bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 给 node 在 level 层加一条指向 target 的边，超出上限时用启发式重新挑选邻居
+     */
+    private void connect(int node, int target, int level) {
+        int[] own = links[node][level];
+        int maxConnections = own.length - 1;
+        if (own[0] < maxConnections) {
+            own[++own[0]] = target;
+            return;
+        }
+        int offset = node * dimension;
+        List<Candidate> candidates = new ArrayList<>(own[0] + 1);
+        for (int i = 1; i <= own[0]; i++) {
+            candidates.add(new Candidate(own[i], similarity(vectors, offset, own[i])));
+        }
+        candidates.add(new Candidate(target, similarity(vectors, offset, target)));
+        candidates.sort(BY_SIMILARITY.reversed());
+        int[] selected = selectNeighbors(candidates, maxConnections);
+        own[0] = selected.length;
+        System.arraycopy(selected, 0, own, 1, selected.length);
+    }
+
+    /**
+     * 论文中的启发式选邻（Algorithm 4）：候选按相似度降序，只有当它比已选邻居更接近基准点时才选入，
+     * 使邻居分布在不同方向上；名额不满时再按相似度补齐。
+     */
+    private int[] selectNeighbors(List<Candidate> sortedCandidates, int max) {
+        int[] selected = new int[Math.min(max, sortedCandidates.size())];
+        int count = 0;
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            int offset = candidate.node() * dimension;
+            for (int i = 0; i < count; i++) {
+                if (similarity(vectors, offset, selected[i]) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && count < selected.length; i++) {
+            selected[count++] = pruned.get(i).node();
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private int[] neighbors(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : new int[]{0};
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private float similarity(float[] query, int node) {
+        return SimilarityKernels.dot(query, 0, vectors, node * dimension, dimension);
+    }
+
+    private float similarity(float[] storage, int offset, int node) {
+        return SimilarityKernels.dot(storage, offset, vectors, node * dimension, dimension);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= links.length) {
+            return;
+        }
+        int capacity = Math.max(required, links.length + (links.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    record Candidate(int node, float similarity) {
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.test.ai.vector;
+
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 乘积量化：dimension 维向量切成 subspaces 段，每段用 k-means 训练至多 256 个中心，编码为最近中心的编号。
+ * 打分用非对称距离：先算出查询每段与每个中心的点积表，一个码的近似点积就是 subspaces 次查表相加。
+ */
+final class ProductQuantizer implements VectorQuantizer {
+
+    private static final int MAX_CENTROIDS = 256;
+    private static final int ITERATIONS = 12;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    private final int centroids;
+    /**
+     * codebook[((s * centroids) + c) * subDimension + i] 为第 s 段第 c 个中心的第 i 维
+     */
+    private final float[] codebook;
+
+    private ProductQuantizer(int dimension, int subspaces, int centroids, float[] codebook) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.centroids = centroids;
+        this.codebook = codebook;
+    }
+
+    static ProductQuantizer train(List<float[]> sample, int dimension, int subspaces, long seed) {
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException(String.format(
+                    "dimension %d is not divisible into %d subspaces", dimension, subspaces));
+        }
+        int subDimension = dimension / subspaces;
+        int centroids = Math.max(1, Math.min(MAX_CENTROIDS, sample.size()));
+        float[] codebook = new float[subspaces * centroids * subDimension];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int s = 0; s < subspaces; s++) {
+            kmeans(sample, s * subDimension, subDimension, centroids, codebook, s * centroids * subDimension, random);
+        }
+        return new ProductQuantizer(dimension, subspaces, centroids, codebook);
+    }
+
+    static ProductQuantizer read(ByteBuffer buffer) {
+        int dimension = buffer.getInt();
+        int subspaces = buffer.getInt();
+        int centroids = buffer.getInt();
+        float[] codebook = new float[subspaces * centroids * (dimension / subspaces)];
+        buffer.asFloatBuffer().get(codebook);
+        buffer.position(buffer.position() + codebook.length * Float.BYTES);
+        return new ProductQuantizer(dimension, subspaces, centroids, codebook);
+    }
+
+    int subspaces() {
+        return subspaces;
+    }
+
+    @Override
+    public Quantization type() {
+        return Quantization.PRODUCT;
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code) {
+        for (int s = 0; s < subspaces; s++) {
+            code[s] = (byte) nearest(vector, s * subDimension, codebook, s * centroids * subDimension, centroids, subDimension);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        float[] table = new float[subspaces * centroids];
+        for (int s = 0; s < subspaces; s++) {
+            for (int c = 0; c < centroids; c++) {
+                table[s * centroids + c] = SimilarityKernels.dot(query, s * subDimension,
+                        codebook, (s * centroids + c) * subDimension, subDimension);
+            }
+        }
+        return (codes, byteOffset) -> {
+            float score = 0f;
+            for (int s = 0; s < subspaces; s++) {
+                score += table[s * centroids + Byte.toUnsignedInt(codes.get(ValueLayout.JAVA_BYTE, byteOffset + s))];
+            }
+            return score;
+        };
+    }
+
+    @Override
+    public int serializedSize() {
+        return 3 * Integer.BYTES + codebook.length * Float.BYTES;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(dimension).putInt(subspaces).putInt(centroids);
+        buffer.asFloatBuffer().put(codebook);
+        buffer.position(buffer.position() + codebook.length * Float.BYTES);
+    }
+
+    /**
+     * 在样本的 [offset, offset + subDimension) 维上做 Lloyd 迭代，结果写入 codebook 从 base 开始的位置
+     */
+    private static void kmeans(List<float[]> sample, int offset, int subDimension, int k,
+                               float[] codebook, int base, SplittableRandom random) {
+        int n = sample.size();
+        if (n == 0) {
+            return;
+        }
+        // 用不重复的随机样本初始化中心
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int c = 0; c < k; c++) {
+            int pick = c + random.nextInt(n - c);
+            int tmp = order[c];
+            order[c] = order[pick];
+            order[pick] = tmp;
+            System.arraycopy(sample.get(order[c]), offset, codebook, base + c * subDimension, subDimension);
+        }
+
+        int[] assignment = new int[n];
+        float[] sums = new float[k * subDimension];
+        int[] counts = new int[k];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            boolean changed = iteration == 0;
+            for (int i = 0; i < n; i++) {
+                int nearest = nearest(sample.get(i), offset, codebook, base, k, subDimension);
+                changed |= nearest != assignment[i];
+                assignment[i] = nearest;
+            }
+            if (!changed) {
+                break;
+            }
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                float[] vector = sample.get(i);
+                int c = assignment[i];
+                counts[c]++;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[c * subDimension + d] += vector[offset + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // 空簇重新取一个随机样本，避免浪费编号
+                    System.arraycopy(sample.get(random.nextInt(n)), offset, codebook, base + c * subDimension, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    codebook[base + c * subDimension + d] = sums[c * subDimension + d] / counts[c];
+                }
+            }
+        }
+    }
+
+    private static int nearest(float[] vector, int offset, float[] codebook, int base, int k, int subDimension) {
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < k; c++) {
+            float distance = SimilarityKernels.l2Squared(vector, offset, codebook, base + c * subDimension, subDimension);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
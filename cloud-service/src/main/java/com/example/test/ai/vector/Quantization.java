@@ -0,0 +1,18 @@
+package com.example.test.ai.vector;
+
+/**
+ * 磁盘段的量化方式。量化码只用于粗排，候选集最终用全精度向量重新打分。
+ */
+public enum Quantization {
+
+    /**
+     * 每维一个 int8，按维度独立的 min/max 线性映射，体积为 float32 的 1/4
+     */
+    INT8,
+
+    /**
+     * 乘积量化：向量切成若干子空间，每个子空间用 256 个聚类中心之一的编号（1 字节）表示，
+     * 每个子空间 8 维时体积为 float32 的 1/32
+     */
+    PRODUCT
+}
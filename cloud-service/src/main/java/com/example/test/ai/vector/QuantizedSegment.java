@@ -0,0 +1,205 @@
+package com.example.test.ai.vector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 一个 {@link VectorSegment} 的量化码，存放在同名的 {@code .qnt} 文件中（小端序）并以内存映射读取：
+ * <pre>
+ * 32 字节头：magic | version | type | dimension | count | codeSize | codebookBytes | 保留
+ * 码本 | count * codeSize 字节的码
+ * </pre>
+ * 码本由调用方提供（见 {@link DiskEmbeddingStore} 的共用码本），只在需要生成量化码时才取；
+ * 每个段的文件里都存一份自己编码用的码本，所以不同码本编码的段可以并存。
+ * 码本文件（{@link #writeCodebook}）用同样的格式，只是条数为 0、没有码。
+ */
+final class QuantizedSegment implements AutoCloseable {
+
+    static final int MAGIC = 0x56514e54; // "VQNT"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int TRAINING_SAMPLE = 16_384;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment file;
+    private final VectorQuantizer quantizer;
+    private final long codesOffset;
+
+    private QuantizedSegment(Arena arena, MemorySegment file, VectorQuantizer quantizer, long codesOffset) {
+        this.arena = arena;
+        this.file = file;
+        this.quantizer = quantizer;
+        this.codesOffset = codesOffset;
+    }
+
+    /**
+     * 打开段对应的量化码；文件不存在或量化方式、子空间数、条数与要求不符时用 codebook 提供的码本重新生成
+     *
+     * @param subspaces 乘积量化的子空间数，INT8 时忽略
+     * @param codebook  需要生成时才调用，返回的码本类型和子空间数须与 type、subspaces 一致
+     */
+    static QuantizedSegment openOrBuild(VectorSegment segment, Quantization type, int subspaces,
+                                        Supplier<VectorQuantizer> codebook) {
+        Path path = VectorSegment.file(segment.base(), ".qnt");
+        if (Files.exists(path)) {
+            QuantizedSegment existing = open(path);
+            if (existing.matches(segment, type, subspaces)) {
+                return existing;
+            }
+            existing.close();
+        }
+        try {
+            build(path, segment, codebook.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return open(path);
+    }
+
+    /**
+     * 读取 {@link #writeCodebook} 保存的码本
+     *
+     * @return 文件不存在，或量化方式、维度、子空间数与要求不符时返回 null
+     */
+    static VectorQuantizer readCodebook(Path path, Quantization type, int dimension, int subspaces) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (QuantizedSegment codebook = open(path)) {
+            boolean matches = codebook.quantizer.type() == type
+                    && codebook.file.get(INT, 12) == dimension
+                    && (type != Quantization.PRODUCT || ((ProductQuantizer) codebook.quantizer).subspaces() == subspaces);
+            // 码本读取时已复制到堆上，关闭映射后仍可使用
+            return matches ? codebook.quantizer : null;
+        }
+    }
+
+    /**
+     * 把码本单独保存到 path（先写临时文件再原子替换）
+     */
+    static void writeCodebook(Path path, VectorQuantizer quantizer, int dimension) {
+        try {
+            build(path, null, dimension, quantizer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    VectorQuantizer.Scorer scorer(float[] query) {
+        return quantizer.scorer(query);
+    }
+
+    /**
+     * 第 i 条向量与查询的近似点积，scorer 需由 {@link #scorer} 生成
+     */
+    float score(VectorQuantizer.Scorer scorer, int i) {
+        return scorer.score(file, codesOffset + (long) i * quantizer.codeSize());
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private boolean matches(VectorSegment segment, Quantization type, int subspaces) {
+        return quantizer.type() == type
+                && file.get(INT, 12) == segment.dimension()
+                && file.get(INT, 16) == segment.count()
+                && (type != Quantization.PRODUCT || ((ProductQuantizer) quantizer).subspaces() == subspaces);
+    }
+
+    private static QuantizedSegment open(Path path) {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            if (file.get(INT, 0) != MAGIC || file.get(INT, 4) != VERSION) {
+                throw new IllegalStateException("not a quantized segment: " + path);
+            }
+            Quantization type = Quantization.values()[file.get(INT, 8)];
+            int codebookBytes = file.get(INT, 24);
+            ByteBuffer codebook = file.asSlice(HEADER_BYTES, codebookBytes).asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+            return new QuantizedSegment(arena, file, VectorQuantizer.read(type, codebook), HEADER_BYTES + codebookBytes);
+        } catch (IOException e) {
+            arena.close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 用段中的向量（至多 {@link #TRAINING_SAMPLE} 条）训练码本
+     */
+    static VectorQuantizer train(VectorSegment segment, Quantization type, int subspaces, long seed) {
+        // 等间隔抽样，避免只用到段开头（通常是同一个文件）的向量
+        int step = Math.max(1, segment.count() / TRAINING_SAMPLE);
+        List<float[]> sample = new ArrayList<>(Math.min(segment.count(), TRAINING_SAMPLE));
+        for (int i = 0; i < segment.count() && sample.size() < TRAINING_SAMPLE; i += step) {
+            sample.add(segment.vector(i));
+        }
+        return switch (type) {
+            case INT8 -> ScalarQuantizer.train(sample, segment.dimension());
+            case PRODUCT -> ProductQuantizer.train(sample, segment.dimension(), subspaces, seed);
+        };
+    }
+
+    private static void build(Path path, VectorSegment segment, VectorQuantizer quantizer) throws IOException {
+        build(path, segment, segment.dimension(), quantizer);
+    }
+
+    /**
+     * @param segment 要编码的段，为 null 时只写码本
+     */
+    private static void build(Path path, VectorSegment segment, int dimension, VectorQuantizer quantizer) throws IOException {
+        int count = segment == null ? 0 : segment.count();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + quantizer.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(quantizer.type().ordinal())
+                    .putInt(dimension).putInt(count).putInt(quantizer.codeSize())
+                    .putInt(quantizer.serializedSize()).putInt(0);
+            quantizer.writeTo(header);
+            header.flip();
+            writeFully(channel, header);
+
+            byte[] code = new byte[quantizer.codeSize()];
+            ByteBuffer codes = ByteBuffer.allocate(Math.max(code.length, 64 * 1024 / code.length * code.length));
+            for (int i = 0; i < count; i++) {
+                quantizer.encode(segment.vector(i), code);
+                if (codes.remaining() < code.length) {
+                    codes.flip();
+                    writeFully(channel, codes);
+                    codes.clear();
+                }
+                codes.put(code);
+            }
+            codes.flip();
+            writeFully(channel, codes);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * 倒数排名融合（RRF）：每一路结果里排第 r 位（从 1 开始）的条目得 1/(k + r)，按 embeddingId 累加后排序。
+ * 只看名次不看分数，BM25 得分和余弦相似度量纲不同也能直接合并；k 越大，各路靠前名次之间的差距越小，通常取 60。
+ * <p>
+ * 返回的 score 是融合分，同一 id 在多路出现时保留第一路里的条目（含 embedding）。
+ */
+public final class ReciprocalRankFusion {
+
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    public static <T> List<EmbeddingMatch<T>> fuse(List<List<EmbeddingMatch<T>>> rankings, int maxResults) {
+        return fuse(rankings, DEFAULT_K, maxResults);
+    }
+
+    public static <T> List<EmbeddingMatch<T>> fuse(List<List<EmbeddingMatch<T>>> rankings, int k, int maxResults) {
+        ensureGreaterThanZero(k, "k");
+        ensureGreaterThanZero(maxResults, "maxResults");
+        Map<String, EmbeddingMatch<T>> first = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<EmbeddingMatch<T>> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                EmbeddingMatch<T> match = ranking.get(rank);
+                first.putIfAbsent(match.embeddingId(), match);
+                scores.merge(match.embeddingId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        // 同分时按首次出现的先后，即第一路的名次优先
+        List<EmbeddingMatch<T>> fused = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> {
+            EmbeddingMatch<T> match = first.get(id);
+            fused.add(new EmbeddingMatch<>(score, id, match.embedding(), match.embedded()));
+        });
+        fused.sort(Comparator.comparingDouble((EmbeddingMatch<T> match) -> match.score()).reversed());
+        return fused.size() > maxResults ? new ArrayList<>(fused.subList(0, maxResults)) : fused;
+    }
+}
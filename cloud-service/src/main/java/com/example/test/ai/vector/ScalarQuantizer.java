@@ -0,0 +1,95 @@
+package com.example.test.ai.vector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * int8 标量量化：第 d 维按训练样本的 [min, max] 均匀分成 256 档，存为有符号字节 b，
+ * 还原值为 min + (b + 128) * scale。近似点积拆成与码无关的常数项加上 query*scale 与码的点积，
+ * 后者交给 {@link SimilarityKernels#dotInt8}。
+ */
+final class ScalarQuantizer implements VectorQuantizer {
+
+    private final float[] min;
+    private final float[] scale;
+
+    private ScalarQuantizer(float[] min, float[] scale) {
+        this.min = min;
+        this.scale = scale;
+    }
+
+    static ScalarQuantizer train(List<float[]> sample, int dimension) {
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int d = 0; d < dimension; d++) {
+                min[d] = Math.min(min[d], vector[d]);
+                max[d] = Math.max(max[d], vector[d]);
+            }
+        }
+        float[] scale = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            if (min[d] > max[d]) {
+                min[d] = 0f;
+                max[d] = 0f;
+            }
+            // 常数维所有码都落在 min 上，scale 取 1 只为避免除零
+            scale[d] = max[d] > min[d] ? (max[d] - min[d]) / 255f : 1f;
+        }
+        return new ScalarQuantizer(min, scale);
+    }
+
+    static ScalarQuantizer read(ByteBuffer buffer) {
+        int dimension = buffer.getInt();
+        float[] min = new float[dimension];
+        float[] scale = new float[dimension];
+        buffer.asFloatBuffer().get(min).get(scale);
+        buffer.position(buffer.position() + 2 * dimension * Float.BYTES);
+        return new ScalarQuantizer(min, scale);
+    }
+
+    @Override
+    public Quantization type() {
+        return Quantization.INT8;
+    }
+
+    @Override
+    public int codeSize() {
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code) {
+        for (int d = 0; d < min.length; d++) {
+            int level = Math.round((vector[d] - min[d]) / scale[d]);
+            code[d] = (byte) (Math.clamp(level, 0, 255) - 128);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        float[] scaled = new float[min.length];
+        float bias = 0f;
+        for (int d = 0; d < min.length; d++) {
+            scaled[d] = query[d] * scale[d];
+            bias += query[d] * (min[d] + 128 * scale[d]);
+        }
+        float constant = bias;
+        return (codes, byteOffset) -> constant + SimilarityKernels.dotInt8(scaled, codes, byteOffset);
+    }
+
+    @Override
+    public int serializedSize() {
+        return Integer.BYTES + 2 * min.length * Float.BYTES;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(min.length);
+        buffer.asFloatBuffer().put(min).put(scale);
+        buffer.position(buffer.position() + 2 * min.length * Float.BYTES);
+    }
+}
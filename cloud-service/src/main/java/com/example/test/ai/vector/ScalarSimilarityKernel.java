@@ -0,0 +1,47 @@
+package com.example.test.ai.vector;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * 纯标量实现，运行时没有 jdk.incubator.vector 模块时使用，也作为 SIMD 实现的对照
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float dot = 0f;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment segment, long byteOffset) {
+        float dot = 0f;
+        for (int i = 0; i < query.length; i++) {
+            dot += query[i] * segment.get(VectorSegment.FLOAT, byteOffset + (long) i * Float.BYTES);
+        }
+        return dot;
+    }
+
+    @Override
+    public float dotInt8(float[] query, MemorySegment codes, long byteOffset) {
+        float dot = 0f;
+        for (int i = 0; i < query.length; i++) {
+            dot += query[i] * codes.get(ValueLayout.JAVA_BYTE, byteOffset + i);
+        }
+        return dot;
+    }
+
+    @Override
+    public float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.test.ai.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * 基于 Vector API 的实现：按首选宽度（AVX2 为 8 路、AVX-512 为 16 路）做 FMA 累加，尾部不足一个向量的部分逐个计算。
+ * 累加顺序与标量实现不同，结果在 float 舍入误差内一致。
+ */
+final class SimdSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * 与 SPECIES 车道数相同的字节向量，用于 int8 码转 float；车道数少于 8（最小的 64 位形状）时为 null，退回逐个计算
+     */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = SPECIES.length() < 8
+            ? null : VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.length() * Byte.SIZE));
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment segment, long byteOffset) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(query.length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector vq = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector vs = FloatVector.fromMemorySegment(SPECIES, segment,
+                    byteOffset + (long) i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            sum = vq.fma(vs, sum);
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            dot += query[i] * segment.get(VectorSegment.FLOAT, byteOffset + (long) i * Float.BYTES);
+        }
+        return dot;
+    }
+
+    @Override
+    public float dotInt8(float[] query, MemorySegment codes, long byteOffset) {
+        int i = 0;
+        float dot = 0f;
+        if (BYTE_SPECIES != null) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            int bound = SPECIES.loopBound(query.length);
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector vc = (FloatVector) ByteVector.fromMemorySegment(BYTE_SPECIES, codes, byteOffset + i, ByteOrder.LITTLE_ENDIAN)
+                        .convertShape(VectorOperators.B2F, SPECIES, 0);
+                sum = FloatVector.fromArray(SPECIES, query, i).fma(vc, sum);
+            }
+            dot = sum.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < query.length; i++) {
+            dot += query[i] * codes.get(ValueLayout.JAVA_BYTE, byteOffset + i);
+        }
+        return dot;
+    }
+
+    @Override
+    public float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            sum = diff.fma(diff, sum);
+        }
+        float l2 = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            l2 += diff * diff;
+        }
+        return l2;
+    }
+}
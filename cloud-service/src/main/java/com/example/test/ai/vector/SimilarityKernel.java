@@ -0,0 +1,23 @@
+package com.example.test.ai.vector;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * 相似度计算内核，向量均为连续存放的 float。由 {@link SimilarityKernels} 选择实现，调用方不直接使用。
+ */
+interface SimilarityKernel {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * query 与 segment 中从 byteOffset 开始的 query.length 个小端 float 的点积
+     */
+    float dot(float[] query, MemorySegment segment, long byteOffset);
+
+    /**
+     * query 与 segment 中从 byteOffset 开始的 query.length 个 int8 的点积
+     */
+    float dotInt8(float[] query, MemorySegment codes, long byteOffset);
+
+    float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length);
+}
@@ -0,0 +1,141 @@
+package com.example.test.ai.vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * 向量相似度计算入口，直接在 float[] 上计算，不像 ND4J 那样为每个向量包一层 INDArray。
+ * <p>
+ * 运行时加了 {@code --add-modules jdk.incubator.vector} 时使用 SIMD 实现，否则退回标量实现；
+ * 设置系统属性 {@code vector.kernel=scalar} 可强制使用标量实现。
+ */
+public final class SimilarityKernels {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarityKernels.class);
+    private static final SimilarityKernel KERNEL = select();
+
+    private SimilarityKernels() {
+    }
+
+    /**
+     * @return 当前是否使用 Vector API 实现
+     */
+    public static boolean simd() {
+        return !(KERNEL instanceof ScalarSimilarityKernel);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * query 与内存映射段中从 byteOffset 开始的 query.length 个小端 float 的点积
+     */
+    public static float dot(float[] query, MemorySegment segment, long byteOffset) {
+        return KERNEL.dot(query, segment, byteOffset);
+    }
+
+    /**
+     * query 与 codes 中从 byteOffset 开始的 query.length 个 int8 的点积，供 int8 量化打分使用
+     */
+    public static float dotInt8(float[] query, MemorySegment codes, long byteOffset) {
+        return KERNEL.dotInt8(query, codes, byteOffset);
+    }
+
+    /**
+     * 已归一化向量的余弦相似度，即点积；未归一化的向量用 {@link #cosineSimilarity}
+     */
+    public static float cosineNormalized(float[] a, float[] b) {
+        return dot(a, b);
+    }
+
+    /**
+     * 未归一化向量的余弦相似度，任一向量为零向量时返回 0
+     */
+    public static float cosineSimilarity(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        float dot = KERNEL.dot(a, 0, b, 0, a.length);
+        float normA = KERNEL.dot(a, 0, a, 0, a.length);
+        float normB = KERNEL.dot(b, 0, b, 0, b.length);
+        if (normA == 0f || normB == 0f) {
+            return 0f;
+        }
+        return (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    /**
+     * 欧氏距离的平方
+     */
+    public static float l2Squared(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return KERNEL.l2Squared(a, 0, b, 0, a.length);
+    }
+
+    public static float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.l2Squared(a, aOffset, b, bOffset, length);
+    }
+
+    public static float l2(float[] a, float[] b) {
+        return (float) Math.sqrt(l2Squared(a, b));
+    }
+
+    /**
+     * 一对多打分：matrix 按行连续存放 count 个 query.length 维向量，第 i 行与 query 的点积写入 scores[i]
+     */
+    public static void dotAll(float[] query, float[] matrix, int count, float[] scores) {
+        int dimension = query.length;
+        if ((long) count * dimension > matrix.length || count > scores.length) {
+            throw new IllegalArgumentException(String.format(
+                    "matrix of %d floats or %d scores cannot hold %d vectors of dimension %d",
+                    matrix.length, scores.length, count, dimension));
+        }
+        for (int i = 0; i < count; i++) {
+            scores[i] = KERNEL.dot(query, 0, matrix, i * dimension, dimension);
+        }
+    }
+
+    /**
+     * 返回归一化后的副本，零向量原样复制
+     */
+    public static float[] normalize(float[] vector) {
+        float sum = KERNEL.dot(vector, 0, vector, 0, vector.length);
+        float[] normalized = vector.clone();
+        if (sum == 0f) {
+            return normalized;
+        }
+        float inverse = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] *= inverse;
+        }
+        return normalized;
+    }
+
+    private static void checkLength(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException(String.format("vector dimensions differ: %d vs %d", a, b));
+        }
+    }
+
+    private static SimilarityKernel select() {
+        if ("scalar".equalsIgnoreCase(System.getProperty("vector.kernel"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.info("Using scalar similarity kernel");
+            return new ScalarSimilarityKernel();
+        }
+        try {
+            SimilarityKernel kernel = new SimdSimilarityKernel();
+            log.info("Using Vector API similarity kernel");
+            return kernel;
+        } catch (LinkageError e) {
+            log.warn("Vector API unavailable, falling back to scalar similarity kernel", e);
+            return new ScalarSimilarityKernel();
+        }
+    }
+}
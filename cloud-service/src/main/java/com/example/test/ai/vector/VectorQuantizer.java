@@ -0,0 +1,49 @@
+package com.example.test.ai.vector;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+
+/**
+ * 把已归一化的向量编码成定长字节码，并对查询向量给出近似点积。实现都是训练后不可变的，可并发使用。
+ */
+interface VectorQuantizer {
+
+    Quantization type();
+
+    /**
+     * 每个向量编码后的字节数
+     */
+    int codeSize();
+
+    void encode(float[] vector, byte[] code);
+
+    /**
+     * 为一个查询预计算打分所需的数据，返回的 {@link Scorer} 只属于这个查询
+     */
+    Scorer scorer(float[] query);
+
+    /**
+     * 码本序列化后的字节数
+     */
+    int serializedSize();
+
+    /**
+     * 以小端序写出码本，buffer 需留有 {@link #serializedSize()} 字节
+     */
+    void writeTo(ByteBuffer buffer);
+
+    static VectorQuantizer read(Quantization type, ByteBuffer buffer) {
+        return switch (type) {
+            case INT8 -> ScalarQuantizer.read(buffer);
+            case PRODUCT -> ProductQuantizer.read(buffer);
+        };
+    }
+
+    interface Scorer {
+
+        /**
+         * codes 中从 byteOffset 开始的一个码与查询向量的近似点积
+         */
+        float score(MemorySegment codes, long byteOffset);
+    }
+}
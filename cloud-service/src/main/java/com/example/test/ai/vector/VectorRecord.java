@@ -0,0 +1,102 @@
+package com.example.test.ai.vector;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 一条向量记录及其二进制编码（小端）：
+ * <pre>
+ * long seq | int idLen | id | int textLen(-1 表示无文本) | text | int metaLen | metadata JSON
+ * </pre>
+ * seq 为全局递增写入序号，删除以 (id, seq) 墓碑表示，只屏蔽序号更小的记录，因此删除后可以用同一 id 重新写入。
+ */
+record VectorRecord(long seq, String id, float[] vector, TextSegment segment) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    byte[] encode() {
+        byte[] id = this.id.getBytes(StandardCharsets.UTF_8);
+        byte[] text = segment == null ? null : segment.text().getBytes(StandardCharsets.UTF_8);
+        byte[] metadata = segment == null ? new byte[0] : writeMetadata(segment.metadata());
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + id.length + 4 + (text == null ? 0 : text.length) + 4 + metadata.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(seq);
+        buffer.putInt(id.length).put(id);
+        if (text == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(text.length).put(text);
+        }
+        buffer.putInt(metadata.length).put(metadata);
+        return buffer.array();
+    }
+
+    /**
+     * 解码一条记录（不含向量），buffer 需为小端序并定位在记录起始处
+     */
+    static VectorRecord decode(ByteBuffer buffer, float[] vector) {
+        long seq = buffer.getLong();
+        String id = readString(buffer, buffer.getInt());
+        int textLength = buffer.getInt();
+        String text = textLength < 0 ? null : readString(buffer, textLength);
+        byte[] metadata = new byte[buffer.getInt()];
+        buffer.get(metadata);
+        TextSegment segment = text == null ? null : TextSegment.from(text, readMetadata(metadata));
+        return new VectorRecord(seq, id, vector, segment);
+    }
+
+    /**
+     * 只读出 seq 和 id，用于墓碑判断，不解析文本与元数据
+     */
+    static long decodeSeq(ByteBuffer buffer) {
+        return buffer.getLong(buffer.position());
+    }
+
+    static String decodeId(ByteBuffer buffer) {
+        int position = buffer.position() + 8;
+        int length = buffer.getInt(position);
+        byte[] bytes = new byte[length];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Metadata metadata() {
+        return segment == null ? new Metadata() : segment.metadata();
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] writeMetadata(Metadata metadata) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(metadata.toMap());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Metadata readMetadata(byte[] bytes) {
+        if (bytes.length == 0) {
+            return new Metadata();
+        }
+        try {
+            return new Metadata(OBJECT_MAPPER.readValue(bytes, METADATA_TYPE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
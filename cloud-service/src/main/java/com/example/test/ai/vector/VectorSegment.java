@@ -0,0 +1,249 @@
+package com.example.test.ai.vector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 只读的磁盘向量段，通过 {@link FileChannel#map} 映射为 {@link MemorySegment}，向量与文本都不加载到堆上。
+ * 一个段由三个文件组成（均为小端序）：
+ * <ul>
+ *     <li>{@code .vec}：32 字节头（magic、version、dimension、count、maxSeq）+ count*dimension 个 float（已归一化）</li>
+ *     <li>{@code .rec}：按顺序拼接的 {@link VectorRecord} 编码</li>
+ *     <li>{@code .idx}：count+1 个 long，第 i 条记录位于 [idx[i], idx[i+1])</li>
+ * </ul>
+ * 段写完即不可变，文件先写到 .tmp 再原子改名，.vec 最后改名。
+ */
+final class VectorSegment implements AutoCloseable {
+
+    static final int MAGIC = 0x56534547; // "VSEG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Path base;
+    private final Arena arena;
+    private final MemorySegment vectors;
+    private final MemorySegment records;
+    private final MemorySegment offsets;
+    private final int dimension;
+    private final int count;
+    private final long maxSeq;
+
+    private VectorSegment(Path base, Arena arena, MemorySegment vectors, MemorySegment records, MemorySegment offsets) {
+        this.base = base;
+        this.arena = arena;
+        this.vectors = vectors;
+        this.records = records;
+        this.offsets = offsets;
+        if (vectors.get(INT, 0) != MAGIC || vectors.get(INT, 4) != VERSION) {
+            throw new IllegalStateException("not a vector segment: " + file(base, ".vec"));
+        }
+        this.dimension = vectors.get(INT, 8);
+        this.count = vectors.get(INT, 12);
+        this.maxSeq = vectors.get(LONG, 16);
+    }
+
+    static VectorSegment open(Path base) {
+        Arena arena = Arena.ofShared();
+        try {
+            return new VectorSegment(base, arena,
+                    map(file(base, ".vec"), arena), map(file(base, ".rec"), arena), map(file(base, ".idx"), arena));
+        } catch (RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    static Writer writer(Path base, int dimension) {
+        return new Writer(base, dimension);
+    }
+
+    Path base() {
+        return base;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long maxSeq() {
+        return maxSeq;
+    }
+
+    /**
+     * 与已归一化的 query 的点积（余弦相似度）
+     */
+    float similarity(float[] query, int i) {
+        return SimilarityKernels.dot(query, vectors, HEADER_BYTES + (long) i * dimension * Float.BYTES);
+    }
+
+    float[] vector(int i) {
+        long offset = HEADER_BYTES + (long) i * dimension * Float.BYTES;
+        return vectors.asSlice(offset, (long) dimension * Float.BYTES).toArray(FLOAT);
+    }
+
+    /**
+     * 第 i 条记录的只读视图（小端序），配合 {@link VectorRecord} 的解码方法使用
+     */
+    ByteBuffer record(int i) {
+        long start = offsets.get(LONG, (long) i * Long.BYTES);
+        long end = offsets.get(LONG, (long) (i + 1) * Long.BYTES);
+        return records.asSlice(start, end - start).asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    VectorRecord read(int i) {
+        return VectorRecord.decode(record(i), vector(i));
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    void delete() throws IOException {
+        // .vec 先删，残留的 .rec/.idx 不会被当成段加载
+        Files.deleteIfExists(file(base, ".vec"));
+        Files.deleteIfExists(file(base, ".rec"));
+        Files.deleteIfExists(file(base, ".idx"));
+        Files.deleteIfExists(file(base, ".qnt"));
+    }
+
+    static Path file(Path base, String extension) {
+        return base.resolveSibling(base.getFileName() + extension);
+    }
+
+    private static MemorySegment map(Path file, Arena arena) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 流式写入一个新段，记录按 append 顺序存放，内存占用与段大小无关
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final Path base;
+        private final int dimension;
+        private final FileChannel vectorChannel;
+        private final FileChannel recordChannel;
+        private final FileChannel offsetChannel;
+        private final ByteBuffer vectorBuffer;
+        private final ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long recordOffset;
+        private int count;
+        private long maxSeq = -1;
+        private boolean finished;
+
+        private Writer(Path base, int dimension) {
+            this.base = base;
+            this.dimension = dimension;
+            this.vectorBuffer = ByteBuffer.allocate(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                this.vectorChannel = openTmp(".vec");
+                this.recordChannel = openTmp(".rec");
+                this.offsetChannel = openTmp(".idx");
+                vectorChannel.position(HEADER_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void append(VectorRecord record) throws IOException {
+            if (record.vector().length != dimension) {
+                throw new IllegalArgumentException(String.format(
+                        "embedding dimension %d does not match segment dimension %d", record.vector().length, dimension));
+            }
+            vectorBuffer.clear();
+            vectorBuffer.asFloatBuffer().put(record.vector());
+            writeFully(vectorChannel, vectorBuffer);
+
+            writeOffset(recordOffset);
+            byte[] encoded = record.encode();
+            writeFully(recordChannel, ByteBuffer.wrap(encoded));
+            recordOffset += encoded.length;
+
+            count++;
+            maxSeq = Math.max(maxSeq, record.seq());
+        }
+
+        int count() {
+            return count;
+        }
+
+        /**
+         * 写入头部、刷盘并原子改名，返回打开的新段
+         */
+        VectorSegment finish() throws IOException {
+            writeOffset(recordOffset);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(count).putLong(maxSeq);
+            header.clear();
+            vectorChannel.position(0);
+            writeFully(vectorChannel, header);
+            for (FileChannel channel : new FileChannel[]{vectorChannel, recordChannel, offsetChannel}) {
+                channel.force(true);
+                channel.close();
+            }
+            finished = true;
+            move(".rec");
+            move(".idx");
+            move(".vec");
+            return open(base);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            vectorChannel.close();
+            recordChannel.close();
+            offsetChannel.close();
+            Files.deleteIfExists(file(base, ".vec.tmp"));
+            Files.deleteIfExists(file(base, ".rec.tmp"));
+            Files.deleteIfExists(file(base, ".idx.tmp"));
+        }
+
+        private void writeOffset(long offset) throws IOException {
+            offsetBuffer.clear();
+            offsetBuffer.putLong(offset).flip();
+            writeFully(offsetChannel, offsetBuffer);
+        }
+
+        private FileChannel openTmp(String extension) throws IOException {
+            return FileChannel.open(file(base, extension + ".tmp"),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        private void move(String extension) throws IOException {
+            Files.move(file(base, extension + ".tmp"), file(base, extension),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
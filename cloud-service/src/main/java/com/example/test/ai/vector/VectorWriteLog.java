@@ -0,0 +1,185 @@
+package com.example.test.ai.vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写日志，记录尚未落成段的写入和删除。每条日志（小端序）：
+ * <pre>
+ * byte op | int len | payload | int crc32(payload)
+ * ADD:    int dimension | float[dimension] | {@link VectorRecord} 编码
+ * DELETE: long seq | int idLen | id
+ * </pre>
+ * 回放时遇到长度或校验不对的尾部（写到一半宕机）直接截断。
+ */
+final class VectorWriteLog implements AutoCloseable {
+
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final int ENTRY_OVERHEAD = 1 + Integer.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final boolean sync;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private FileChannel channel;
+
+    VectorWriteLog(Path path, boolean sync) throws IOException {
+        this.path = path;
+        this.sync = sync;
+        this.channel = open(path);
+    }
+
+    interface Visitor {
+
+        void add(VectorRecord record);
+
+        void delete(String id, long seq);
+    }
+
+    /**
+     * 依次回放日志中完整的条目，并截掉损坏的尾部
+     */
+    void replay(Visitor visitor) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        // 日志大小受 flushThreshold 约束，直接读到堆上；不用 mmap，避免 Windows 下无法截断已映射的文件
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        long valid = 0;
+        while (buffer.remaining() >= ENTRY_OVERHEAD) {
+            int start = buffer.position();
+            byte op = buffer.get();
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length + Integer.BYTES) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(buffer.position() + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt()) {
+                buffer.position(start);
+                break;
+            }
+            switch (op) {
+                case ADD -> {
+                    float[] vector = new float[payload.getInt()];
+                    payload.asFloatBuffer().get(vector);
+                    payload.position(payload.position() + vector.length * Float.BYTES);
+                    visitor.add(VectorRecord.decode(payload, vector));
+                }
+                case DELETE -> {
+                    long seq = payload.getLong();
+                    byte[] id = new byte[payload.getInt()];
+                    payload.get(id);
+                    visitor.delete(new String(id, StandardCharsets.UTF_8), seq);
+                }
+                default -> throw new IllegalStateException("unknown write log entry " + op + " in " + path);
+            }
+            valid = buffer.position();
+        }
+        if (valid < size) {
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    void appendAdd(VectorRecord record) {
+        byte[] encoded = record.encode();
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + record.vector().length * Float.BYTES + encoded.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        payload.putInt(record.vector().length);
+        payload.asFloatBuffer().put(record.vector());
+        payload.position(payload.position() + record.vector().length * Float.BYTES);
+        payload.put(encoded);
+        append(ADD, payload.array());
+    }
+
+    void appendDelete(String id, long seq) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        payload.putLong(seq).putInt(bytes.length).put(bytes);
+        append(DELETE, payload.array());
+    }
+
+    /**
+     * 把缓冲的条目一次写入文件，开启 sync 时同时刷盘
+     */
+    void commit() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 用给定的墓碑和内存表重写日志（段落盘或合并之后调用），先写临时文件再原子替换
+     */
+    void rewrite(Map<String, Long> tombstones, List<VectorRecord> memtable) throws IOException {
+        pending.reset();
+        tombstones.forEach((id, seq) -> appendDelete(id, seq));
+        memtable.forEach(this::appendAdd);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        } finally {
+            pending.reset();
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = open(path);
+        channel.position(channel.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte op, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(1 + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(op).putInt(payload.length);
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue());
+        pending.writeBytes(header.array());
+        pending.writeBytes(payload);
+        pending.writeBytes(trailer.array());
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.test.controller;
+
+import cn.idev.excel.support.ExcelTypeEnum;
+import com.example.test.service.UsersExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    @Autowired
+    private UsersExportService usersExportService;
+
+    // 导出用户表，format 为 xlsx（默认）或 csv；响应体在异步线程上边查边写，不占用请求线程
+    @GetMapping("/users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "xlsx") String format) {
+        ExcelTypeEnum type = switch (format.toLowerCase()) {
+            case "xlsx" -> ExcelTypeEnum.XLSX;
+            case "csv" -> ExcelTypeEnum.CSV;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unsupported format: " + format);
+        };
+        MediaType contentType = type == ExcelTypeEnum.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename("用户" + type.getValue(), StandardCharsets.UTF_8)
+                .build();
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(out -> usersExportService.export(out, type));
+    }
+}
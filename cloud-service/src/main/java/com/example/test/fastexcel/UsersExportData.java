@@ -0,0 +1,41 @@
+package com.example.test.fastexcel;
+
+import cn.idev.excel.annotation.ExcelProperty;
+import cn.idev.excel.annotation.format.DateTimeFormat;
+import cn.idev.excel.annotation.write.style.ColumnWidth;
+import com.example.test.entity.Users;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+public class UsersExportData {
+    @ExcelProperty("用户ID")
+    private Long id;
+
+    @ColumnWidth(20)
+    @ExcelProperty("用户名")
+    private String username;
+
+    @ColumnWidth(30)
+    @ExcelProperty("邮箱")
+    private String email;
+
+    @ColumnWidth(22)
+    @DateTimeFormat("yyyy-MM-dd HH:mm:ss")
+    @ExcelProperty("创建时间")
+    private LocalDateTime createdAt;
+
+    public static UsersExportData from(Users user) {
+        UsersExportData data = new UsersExportData();
+        data.setId(user.getId());
+        data.setUsername(user.getUsername());
+        data.setEmail(user.getEmail());
+        data.setCreatedAt(user.getCreatedAt());
+        return data;
+    }
+}
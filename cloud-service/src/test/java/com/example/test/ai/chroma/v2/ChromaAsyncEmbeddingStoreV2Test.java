@@ -0,0 +1,160 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.test.ai.chroma.v2.FakeChromaServer.COLLECTION_JSON;
+import static com.example.test.ai.chroma.v2.FakeChromaServer.error;
+import static com.example.test.ai.chroma.v2.FakeChromaServer.ok;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 异步存储单元测试 - 集合 id 不在调用线程上解析、取消请求以及错误传递，使用本地的假 chroma 服务
+ */
+class ChromaAsyncEmbeddingStoreV2Test {
+
+    static final String QUERY_JSON = "{\"ids\":[[\"a\",\"b\"]],\"distances\":[[0.2,1.0]],"
+            + "\"documents\":[[\"A\",\"B\"]],\"metadatas\":[[{\"file_name\":\"a.pdf\"},null]]}";
+
+    private final ChromaHttpTransport transport = ChromaHttpTransport.builder().build();
+
+    @Test
+    void testFirstCallDoesNotBlockOnCollectionLookup() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (FakeChromaServer server = new FakeChromaServer(request -> {
+            if (request.isCreateCollection()) {
+                await(release);
+                return ok(COLLECTION_JSON);
+            }
+            return ok(QUERY_JSON);
+        })) {
+            ChromaAsyncEmbeddingStoreV2 store = store(server).async();
+
+            // 同步解析集合的话，这里会一直等到 release，测试超时
+            CompletableFuture<EmbeddingSearchResult<TextSegment>> first =
+                    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> store.searchAsync(request()));
+            assertFalse(first.isDone());
+            release.countDown();
+
+            EmbeddingSearchResult<TextSegment> result = first.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("a", "b"), result.matches().stream().map(EmbeddingMatch::embeddingId).toList());
+            assertEquals(0.9, result.matches().get(0).score(), 1e-9);
+            assertEquals("a.pdf", result.matches().get(0).embedded().metadata().getString("file_name"));
+            assertEquals(2, store.searchAsync(request()).get(5, TimeUnit.SECONDS).matches().size());
+            assertEquals(1, server.count(FakeChromaServer.Request::isCreateCollection));
+            assertTrue(server.requests().getLast().path().endsWith("/collections/col-1/query"));
+        }
+    }
+
+    @Test
+    void testCancelStopsHttpCall() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (FakeChromaServer server = new FakeChromaServer(request -> {
+            if (request.isCreateCollection()) {
+                return ok(COLLECTION_JSON);
+            }
+            arrived.countDown();
+            await(release);
+            return ok(QUERY_JSON);
+        })) {
+            CompletableFuture<EmbeddingSearchResult<TextSegment>> future = store(server).async().searchAsync(request());
+            assertTrue(arrived.await(5, TimeUnit.SECONDS));
+
+            assertTrue(future.cancel(true));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (transport.client().dispatcher().runningCallsCount() > 0) {
+                assertTrue(System.nanoTime() < deadline, "query call was not cancelled");
+                Thread.sleep(10);
+            }
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testCancelWhileResolvingCollectionSendsNothing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (FakeChromaServer server = new FakeChromaServer(request -> {
+            if (request.isCreateCollection()) {
+                await(release);
+                return ok(COLLECTION_JSON);
+            }
+            return ok(QUERY_JSON);
+        })) {
+            ChromaAsyncEmbeddingStoreV2 store = store(server).async();
+            CompletableFuture<EmbeddingSearchResult<TextSegment>> cancelled = store.searchAsync(request());
+            assertTrue(cancelled.cancel(true));
+            release.countDown();
+
+            // 取消只针对这一次调用，集合查找本身照常完成并缓存
+            store.searchAsync(request()).get(5, TimeUnit.SECONDS);
+            assertEquals(1, server.count(FakeChromaServer.Request::isQuery));
+            assertEquals(1, server.count(FakeChromaServer.Request::isCreateCollection));
+        }
+    }
+
+    @Test
+    void testHttpErrorIsPropagated() throws Exception {
+        try (FakeChromaServer server = new FakeChromaServer(request ->
+                request.isCreateCollection() ? ok(COLLECTION_JSON) : error("{\"error\":\"boom\"}"))) {
+            CompletableFuture<EmbeddingSearchResult<TextSegment>> future = store(server).async().searchAsync(request());
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RuntimeException.class, e.getCause());
+            assertTrue(e.getCause().getMessage().contains("status code: 500"), e.getCause().getMessage());
+            assertTrue(e.getCause().getMessage().contains("boom"));
+        }
+    }
+
+    @Test
+    void testCollectionLookupFailureIsPropagatedAndNotCached() throws Exception {
+        try (FakeChromaServer server = new FakeChromaServer(request -> error("{\"error\":\"chroma down\"}"))) {
+            ChromaAsyncEmbeddingStoreV2 store = store(server).async();
+
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> store.searchAsync(request()).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause().getMessage().contains("chroma down"), e.getCause().getMessage());
+            assertEquals(0, server.count(FakeChromaServer.Request::isQuery));
+
+            server.handler(request -> request.isCreateCollection() ? ok(COLLECTION_JSON) : ok(QUERY_JSON));
+            assertEquals(2, store.searchAsync(request()).get(5, TimeUnit.SECONDS).matches().size());
+        }
+    }
+
+    private ChromaEmbeddingStoreV2 store(FakeChromaServer server) {
+        // 集合注册表是进程级的，每个测试用不同的集合名
+        return ChromaEmbeddingStoreV2.builder()
+                .baseUrl(server.baseUrl())
+                .collectionName("t", "d", "docs-" + UUID.randomUUID())
+                .transport(transport)
+                .build();
+    }
+
+    static EmbeddingSearchRequest request() {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{0.1f, 0.2f}))
+                .maxResults(5)
+                .build();
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量写入单元测试 - 按条数和估算字节数切分子批次、限制并发、重试与失败汇总，不依赖 chroma 服务
+ */
+class ChromaBulkIngesterTest {
+
+    @Test
+    void testSplitsByCount() {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().maxBatchSize(4).build(),
+                request -> batches.add(request.getIds()));
+
+        ingester.ingest(ids(10), embeddings(10, 4), null);
+
+        assertEquals(List.of(ids(10).subList(0, 4), ids(10).subList(4, 8), ids(10).subList(8, 10)), batches);
+    }
+
+    @Test
+    void testSplitsByBytesAndSendsOversizedRecordAlone() {
+        // 4 维的记录约 84 字节，20 维的约 340 字节，超过上限 200 也要单独发出去
+        List<Embedding> embeddings = List.of(embedding(4), embedding(4), embedding(20), embedding(4));
+        assertEquals(84, ChromaBulkIngester.estimateBytes("id-0", embeddings.get(0), null));
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().maxBatchBytes(200).build(),
+                request -> batches.add(request.getIds()));
+
+        ingester.ingest(ids(4), embeddings, null);
+
+        assertEquals(List.of(List.of("id-0", "id-1"), List.of("id-2"), List.of("id-3")), batches);
+    }
+
+    @Test
+    void testBoundsRequestsInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger sent = new AtomicInteger();
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().maxBatchSize(1).maxInFlight(2).build(), request -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            sent.incrementAndGet();
+        });
+
+        ingester.ingest(ids(20), embeddings(20, 4), null);
+
+        assertEquals(20, sent.get());
+        assertTrue(peak.get() <= 2, "peak in flight: " + peak.get());
+    }
+
+    @Test
+    void testRetriesTransientFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().build(), request -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection reset");
+            }
+        });
+
+        ingester.ingest(ids(3), embeddings(3, 4), null);
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testRetryExhaustionIsAggregated() {
+        ConcurrentHashMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().maxBatchSize(2).maxRetries(2).build(), request -> {
+            String first = request.getIds().getFirst();
+            attempts.computeIfAbsent(first, key -> new AtomicInteger()).incrementAndGet();
+            if (first.equals("id-2") || first.equals("id-6")) {
+                throw new IllegalStateException("chroma rejected " + first);
+            }
+            stored.addAll(request.getIds());
+        });
+
+        ChromaBulkIngestException e = assertThrows(ChromaBulkIngestException.class,
+                () -> ingester.ingest(ids(8), embeddings(8, 4), null));
+
+        assertEquals("4 of 8 embeddings could not be added", e.getMessage());
+        assertEquals(List.of("id-2", "id-3", "id-6", "id-7"), e.getFailedIds().stream().sorted().toList());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        // 首次发送加 2 次重试
+        assertEquals(3, attempts.get("id-2").get());
+        assertEquals(3, attempts.get("id-6").get());
+        assertEquals(List.of("id-0", "id-1", "id-4", "id-5"), stored.stream().sorted().toList());
+    }
+
+    @Test
+    void testRejectsMismatchedSizes() {
+        ChromaBulkIngester ingester = new ChromaBulkIngester(options().build(), request -> fail("nothing should be sent"));
+
+        assertThrows(IllegalArgumentException.class, () -> ingester.ingest(ids(2), embeddings(3, 4), null));
+    }
+
+    private static ChromaBulkIngestOptions.Builder options() {
+        // 串行发送，子批次按顺序到达，便于断言
+        return ChromaBulkIngestOptions.builder().maxInFlight(1).retryBackoff(Duration.ofMillis(1));
+    }
+
+    private static List<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "id-" + i).toList();
+    }
+
+    private static List<Embedding> embeddings(int count, int dimension) {
+        return IntStream.range(0, count).mapToObj(i -> embedding(dimension)).toList();
+    }
+
+    private static Embedding embedding(int dimension) {
+        return Embedding.from(new float[dimension]);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.test.ai.chroma.v2;
+
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * chroma 客户端 JSON 单元测试 - 向量按 float[] 读写，向量里的 null 报错而不是存成 0
+ */
+class ChromaClientV2Test {
+
+    @Test
+    void testWritesVectorsAsNumberArrays() throws Exception {
+        AddEmbeddingsRequest request = AddEmbeddingsRequest.builder()
+                .ids(List.of("a"))
+                .embeddings(List.of(new float[]{0.1f, -2.5f}))
+                .build();
+
+        String json = ChromaClientV2.OBJECT_MAPPER.writeValueAsString(request);
+
+        assertTrue(json.contains("\"embeddings\":[[0.1,-2.5]]"), json);
+    }
+
+    @Test
+    void testReadsVectorsIntoFloatArrays() throws Exception {
+        QueryResponse response = ChromaClientV2.OBJECT_MAPPER.readValue(
+                "{\"ids\":[[\"a\"]],\"distances\":[[0.25]],\"embeddings\":[[[0.5,1.25,-3]]]}", QueryResponse.class);
+
+        assertArrayEquals(new float[]{0.5f, 1.25f, -3f}, response.getEmbeddings().get(0).get(0));
+        assertEquals(0.25, response.getDistances().get(0).get(0));
+    }
+
+    @Test
+    void testRejectsNullInsideVector() {
+        assertThrows(MismatchedInputException.class, () -> ChromaClientV2.OBJECT_MAPPER.readValue(
+                "{\"ids\":[[\"a\"]],\"distances\":[[0.25]],\"embeddings\":[[[0.5,null]]]}", QueryResponse.class));
+    }
+}
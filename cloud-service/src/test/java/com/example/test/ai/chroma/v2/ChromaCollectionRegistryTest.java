@@ -0,0 +1,104 @@
+package com.example.test.ai.chroma.v2;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 集合注册表单元测试 - 不依赖 chroma 服务
+ */
+class ChromaCollectionRegistryTest {
+
+    private static final ChromaCollectionRegistry.Key KEY =
+            new ChromaCollectionRegistry.Key("http://localhost:8000/", "test1", "db1", "doc_vectors");
+
+    @Test
+    void testCachedWithinTtl() {
+        ChromaCollectionRegistry registry = new ChromaCollectionRegistry();
+        AtomicInteger loads = new AtomicInteger();
+
+        Collection first = registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+            loads.incrementAndGet();
+            return new Collection();
+        });
+        Collection second = registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+            loads.incrementAndGet();
+            return new Collection();
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testReloadAfterExpiryAndInvalidate() {
+        ChromaCollectionRegistry registry = new ChromaCollectionRegistry();
+        AtomicInteger loads = new AtomicInteger();
+
+        registry.resolve(KEY, Duration.ZERO, () -> {
+            loads.incrementAndGet();
+            return new Collection();
+        });
+        registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+            loads.incrementAndGet();
+            return new Collection();
+        });
+        assertEquals(2, loads.get());
+
+        registry.invalidate(KEY);
+        registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+            loads.incrementAndGet();
+            return new Collection();
+        });
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testFailureIsNotCached() {
+        ChromaCollectionRegistry registry = new ChromaCollectionRegistry();
+
+        assertThrows(IllegalStateException.class, () -> registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+            throw new IllegalStateException("chroma down");
+        }));
+
+        Collection collection = registry.resolve(KEY, Duration.ofMinutes(1), Collection::new);
+        assertNotNull(collection);
+    }
+
+    @Test
+    void testConcurrentLookupsShareOneLoad() throws Exception {
+        ChromaCollectionRegistry registry = new ChromaCollectionRegistry();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Collection> first = executor.submit(() -> registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new Collection();
+            }));
+            while (loads.get() == 0) {
+                Thread.onSpinWait();
+            }
+            Future<Collection> second = executor.submit(() -> registry.resolve(KEY, Duration.ofMinutes(1), () -> {
+                loads.incrementAndGet();
+                return new Collection();
+            }));
+            release.countDown();
+
+            assertSame(first.get(), second.get());
+        }
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.test.ai.chroma.v2;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.example.test.ai.chroma.v2.FakeChromaServer.COLLECTION_JSON;
+import static com.example.test.ai.chroma.v2.FakeChromaServer.ok;
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * chroma 存储单元测试 - 多查询合并后按请求顺序拆回结果、include 字段投影，使用本地的假 chroma 服务
+ */
+class ChromaEmbeddingStoreV2Test {
+
+    @Test
+    void testSearchAllMapsResultsBackToRequestOrder() throws Exception {
+        try (FakeChromaServer server = new FakeChromaServer(request -> {
+            if (request.isCreateCollection()) {
+                return ok(COLLECTION_JSON);
+            }
+            // 带过滤条件的一组只有第 2 个请求，不带的一组是第 1、3 个请求
+            return request.body().contains("\"where\"")
+                    ? ok("{\"ids\":[[\"x1\",\"y1\"]],\"distances\":[[0.2,0.4]]}")
+                    : ok("{\"ids\":[[\"x0\",\"y0\"],[\"x2\",\"y2\"]],\"distances\":[[0.2,0.4],[0.2,1.0]]}");
+        })) {
+            ChromaEmbeddingStoreV2 store = store(server).build();
+
+            List<EmbeddingSearchResult<TextSegment>> results = store.searchAll(List.of(
+                    EmbeddingSearchRequest.builder().queryEmbedding(embedding(0.1f, 0.2f)).maxResults(1).build(),
+                    EmbeddingSearchRequest.builder().queryEmbedding(embedding(0.5f, 0.6f)).maxResults(2)
+                            .filter(metadataKey("file_name").isEqualTo("b.pdf")).build(),
+                    EmbeddingSearchRequest.builder().queryEmbedding(embedding(0.3f, 0.4f)).maxResults(2).minScore(0.6).build()));
+
+            assertEquals(List.of(List.of("x0"), List.of("x1", "y1"), List.of("x2")),
+                    results.stream().map(ChromaEmbeddingStoreV2Test::ids).toList());
+            assertEquals(2, server.count(FakeChromaServer.Request::isQuery));
+            String coalesced = server.requests().stream()
+                    .filter(request -> request.isQuery() && !request.body().contains("\"where\""))
+                    .findFirst().orElseThrow().body();
+            assertTrue(coalesced.contains("[[0.1,0.2],[0.3,0.4]]"), coalesced);
+            assertTrue(coalesced.contains("\"n_results\":2"), coalesced);
+        }
+    }
+
+    @Test
+    void testIncludeProjectionIsSent() throws Exception {
+        try (FakeChromaServer server = new FakeChromaServer(request -> request.isCreateCollection()
+                ? ok(COLLECTION_JSON)
+                : ok("{\"ids\":[[\"x0\"]],\"distances\":[[0.2]],\"documents\":[[\"text\"]]}"))) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder().queryEmbedding(embedding(0.1f, 0.2f)).maxResults(1).build();
+
+            EmbeddingSearchResult<TextSegment> result = store(server).include(ChromaInclude.withoutEmbeddings()).build().search(request);
+            assertTrue(lastQuery(server).contains("\"include\":[\"documents\",\"metadatas\",\"distances\"]"), lastQuery(server));
+            assertNull(result.matches().get(0).embedding());
+            assertEquals("text", result.matches().get(0).embedded().text());
+
+            ChromaEmbeddingStoreV2 store = store(server).build();
+            store.search(request);
+            assertTrue(lastQuery(server).contains("\"include\":[\"documents\",\"metadatas\",\"distances\",\"embeddings\"]"), lastQuery(server));
+            // 距离总会请求，分数由它换算
+            store.search(request, EnumSet.of(ChromaInclude.DOCUMENTS));
+            assertTrue(lastQuery(server).contains("\"include\":[\"documents\",\"distances\"]"), lastQuery(server));
+            store.searchAll(List.of(request), Set.of());
+            assertTrue(lastQuery(server).contains("\"include\":[\"distances\"]"), lastQuery(server));
+        }
+    }
+
+    static ChromaEmbeddingStoreV2.Builder store(FakeChromaServer server) {
+        // 集合注册表是进程级的，每个测试用不同的集合名
+        return ChromaEmbeddingStoreV2.builder()
+                .baseUrl(server.baseUrl())
+                .collectionName("t", "d", "docs-" + UUID.randomUUID());
+    }
+
+    static Embedding embedding(float... vector) {
+        return Embedding.from(vector);
+    }
+
+    private static String lastQuery(FakeChromaServer server) {
+        return server.requests().stream().filter(FakeChromaServer.Request::isQuery).toList().getLast().body();
+    }
+
+    private static List<String> ids(EmbeddingSearchResult<TextSegment> result) {
+        return result.matches().stream().map(EmbeddingMatch::embeddingId).toList();
+    }
+}
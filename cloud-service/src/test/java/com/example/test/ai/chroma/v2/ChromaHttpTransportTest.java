@@ -0,0 +1,90 @@
+package com.example.test.ai.chroma.v2;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP 传输单元测试 - 同一传输上的客户端共用连接池和调度器，超时与日志拦截器按客户端配置，h2c 只用于明文地址，不依赖 chroma 服务
+ */
+class ChromaHttpTransportTest {
+
+    @Test
+    void testClientsShareTransportPoolAndDispatcher() {
+        ChromaHttpTransport transport = ChromaHttpTransport.builder().build();
+
+        OkHttpClient first = client(transport, null, false);
+        OkHttpClient second = client(transport, Duration.ofSeconds(3), true);
+
+        assertSame(transport.client().connectionPool(), first.connectionPool());
+        assertSame(transport.client().connectionPool(), second.connectionPool());
+        assertSame(transport.client().dispatcher(), first.dispatcher());
+        assertSame(transport.client().dispatcher(), second.dispatcher());
+        // 超时和拦截器只属于各自的客户端，不影响传输本身
+        assertEquals(0, first.callTimeoutMillis());
+        assertEquals(3_000, second.callTimeoutMillis());
+        assertTrue(first.interceptors().isEmpty());
+        assertEquals(1, second.interceptors().size());
+        assertTrue(transport.client().interceptors().isEmpty());
+    }
+
+    @Test
+    void testDefaultsToSharedTransport() {
+        OkHttpClient client = client(null, null, false);
+
+        assertSame(ChromaHttpTransport.shared(), ChromaHttpTransport.shared());
+        assertSame(ChromaHttpTransport.shared().client().dispatcher(), client.dispatcher());
+        assertSame(ChromaHttpTransport.shared().client().connectionPool(), client.connectionPool());
+    }
+
+    @Test
+    void testBuilderSettings() {
+        ChromaHttpTransport transport = ChromaHttpTransport.builder()
+                .maxRequests(8)
+                .maxRequestsPerHost(2)
+                .connectTimeout(Duration.ofSeconds(1))
+                .readTimeout(Duration.ofSeconds(2))
+                .h2c(true)
+                .build();
+
+        assertEquals(8, transport.client().dispatcher().getMaxRequests());
+        assertEquals(2, transport.client().dispatcher().getMaxRequestsPerHost());
+        assertEquals(1_000, transport.client().connectTimeoutMillis());
+        assertEquals(2_000, transport.client().readTimeoutMillis());
+    }
+
+    @Test
+    void testH2cOnlyAppliesToCleartextUrls() {
+        ChromaHttpTransport transport = ChromaHttpTransport.builder().h2c(true).build();
+
+        assertEquals(List.of(Protocol.H2_PRIOR_KNOWLEDGE), client(transport, "http://localhost:8000").protocols());
+        // TLS 连接仍通过 ALPN 协商 h2，否则服务端选不到 HTTP/2，静默退回 HTTP/1.1
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), client(transport, "https://chroma.example.com").protocols());
+        assertSame(transport.client().connectionPool(), client(transport, "https://chroma.example.com").connectionPool());
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1),
+                client(ChromaHttpTransport.builder().build(), "http://localhost:8000").protocols());
+    }
+
+    private static OkHttpClient client(ChromaHttpTransport transport, String baseUrl) {
+        return new ChromaClientV2.Builder()
+                .baseUrl(baseUrl)
+                .transport(transport)
+                .build()
+                .httpClient();
+    }
+
+    private static OkHttpClient client(ChromaHttpTransport transport, Duration timeout, boolean logRequests) {
+        return new ChromaClientV2.Builder()
+                .baseUrl("http://localhost:8000")
+                .transport(transport)
+                .timeout(timeout)
+                .logRequests(logRequests)
+                .build()
+                .httpClient();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.test.ai.chroma.v2;
+
+import com.example.test.ai.file.DocumentUtils;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块 id 策略单元测试 - 不依赖 chroma 服务，同名文件用临时目录里的文本文件
+ */
+class ChromaIdStrategyTest {
+
+    private static final Embedding EMBEDDING = Embedding.from(new float[]{0.1f, 0.2f, 0.3f});
+
+    @Test
+    void testContentHashIsStableAndMetadataSensitive() {
+        ChromaIdStrategy strategy = ChromaIdStrategy.contentHash();
+        TextSegment chunk = segment("same text", "a.pdf", 0);
+
+        String id = strategy.generate(EMBEDDING, chunk);
+        assertEquals(id, strategy.generate(Embedding.from(new float[]{9f, 9f, 9f}), segment("same text", "a.pdf", 0)));
+        assertEquals(5, UUID.fromString(id).version());
+        assertNotEquals(id, strategy.generate(EMBEDDING, segment("same text", "b.pdf", 0)));
+        assertNotEquals(id, strategy.generate(EMBEDDING, segment("same text", "a.pdf", 1)));
+        assertNotEquals(id, strategy.generate(EMBEDDING, segment("other text", "a.pdf", 0)));
+        // 没有分块时按向量计算
+        assertEquals(strategy.generate(EMBEDDING, null), strategy.generate(Embedding.from(new float[]{0.1f, 0.2f, 0.3f}), null));
+        assertTrue(strategy.deterministic());
+    }
+
+    @Test
+    void testSameNamedFilesInDifferentFoldersGetDistinctIds(@TempDir Path directory) throws Exception {
+        ChromaIdStrategy strategy = ChromaIdStrategy.contentHash();
+        Path a = Files.createDirectories(directory.resolve("a")).resolve("报价单.txt");
+        Path b = Files.createDirectories(directory.resolve("b")).resolve("报价单.txt");
+        Files.writeString(a, "单价 100 元，含税。");
+        Files.writeString(b, "单价 100 元，含税。");
+
+        List<TextSegment> chunksA = new ArrayList<>();
+        List<TextSegment> chunksB = new ArrayList<>();
+        DocumentUtils.streamChunks(a.toFile(), 500, 50, chunksA::add);
+        DocumentUtils.streamChunks(b.toFile(), 500, 50, chunksB::add);
+
+        assertEquals(1, chunksA.size());
+        assertEquals(chunksA.get(0).text(), chunksB.get(0).text());
+        assertEquals(a.toAbsolutePath().normalize().toString(), chunksA.get(0).metadata().getString("file_path"));
+        // 删除 a 目录下的文件不能删掉 b 目录下同名文件的分块
+        assertNotEquals(strategy.generate(EMBEDDING, chunksA.get(0)), strategy.generate(EMBEDDING, chunksB.get(0)));
+    }
+
+    @Test
+    void testSourcePositionIgnoresText() {
+        ChromaIdStrategy strategy = ChromaIdStrategy.sourcePosition("file_name", "index");
+
+        assertEquals(strategy.generate(EMBEDDING, segment("old text", "a.pdf", 3)),
+                strategy.generate(EMBEDDING, segment("new text", "a.pdf", 3)));
+        assertNotEquals(strategy.generate(EMBEDDING, segment("text", "a.pdf", 3)),
+                strategy.generate(EMBEDDING, segment("text", "a.pdf", 4)));
+        assertThrows(IllegalArgumentException.class, () -> strategy.generate(EMBEDDING, TextSegment.from("no metadata")));
+    }
+
+    @Test
+    void testRandomIsNotDeterministic() {
+        ChromaIdStrategy strategy = ChromaIdStrategy.random();
+
+        assertFalse(strategy.deterministic());
+        assertNotEquals(strategy.generate(EMBEDDING, null), strategy.generate(EMBEDDING, null));
+    }
+
+    private static TextSegment segment(String text, String fileName, int index) {
+        return TextSegment.from(text, Metadata.from(Map.of("file_name", fileName, "index", String.valueOf(index))));
+    }
+}
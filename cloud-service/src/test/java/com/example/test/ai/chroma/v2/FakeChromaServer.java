@@ -0,0 +1,93 @@
+package com.example.test.ai.chroma.v2;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 测试用的 chroma 服务：JDK 自带的 HttpServer，按测试给定的函数应答，并记录收到的每个请求
+ */
+class FakeChromaServer implements AutoCloseable {
+
+    static final String COLLECTION_JSON = "{\"id\":\"col-1\",\"name\":\"docs\"}";
+
+    record Request(String method, String path, String body) {
+
+        boolean isCreateCollection() {
+            return method.equals("POST") && path.endsWith("/collections");
+        }
+
+        boolean isQuery() {
+            return path.endsWith("/query");
+        }
+    }
+
+    record Reply(int status, String body) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private volatile Function<Request, Reply> handler;
+
+    FakeChromaServer(Function<Request, Reply> handler) throws IOException {
+        this.handler = handler;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            requests.add(request);
+            Reply reply = this.handler.apply(request);
+            byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+                out.write(body);
+            } catch (IOException ignored) {
+                // 客户端已取消请求、关闭了连接
+            }
+        });
+        server.start();
+    }
+
+    static Reply ok(String body) {
+        return new Reply(200, body);
+    }
+
+    static Reply error(String body) {
+        return new Reply(500, body);
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    void handler(Function<Request, Reply> handler) {
+        this.handler = handler;
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    long count(Predicate<Request> predicate) {
+        return requests.stream().filter(predicate).count();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
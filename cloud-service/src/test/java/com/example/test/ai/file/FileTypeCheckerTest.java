@@ -0,0 +1,49 @@
+package com.example.test.ai.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件类型检测单元测试 - 按内容识别，并按大小和修改时间缓存结果
+ */
+class FileTypeCheckerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testDetectByContent() throws IOException {
+        Path pdf = Files.writeString(directory.resolve("report.pdf"), "%PDF-1.4\n%âãÏÓ\n1 0 obj\n<<>>\nendobj\n");
+        Path text = Files.writeString(directory.resolve("notes.txt"), "just some notes");
+
+        assertEquals(FileTypeChecker.FileType.PDF, FileTypeChecker.detect(pdf));
+        assertTrue(FileTypeChecker.isPdf(pdf));
+        assertFalse(FileTypeChecker.isWordDocument(pdf));
+        assertEquals(FileTypeChecker.FileType.OTHER, FileTypeChecker.detect(text));
+        assertEquals(FileTypeChecker.FileType.WORD, FileTypeChecker.FileType.fromFileName("Plan.DOCX"));
+        assertEquals(FileTypeChecker.FileType.OTHER, FileTypeChecker.FileType.fromFileName("image.png"));
+    }
+
+    @Test
+    void testResultIsCachedUntilFileChanges() throws IOException {
+        Path file = directory.resolve("manual.pdf");
+        Files.writeString(file, "%PDF-1.4\n" + "x".repeat(100));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000));
+        assertEquals(FileTypeChecker.FileType.PDF, FileTypeChecker.detect(file));
+
+        // 大小和修改时间都没变：直接用缓存，不重新读文件
+        Files.writeString(file, "%!PS-Adobe-3.0\n" + "x".repeat(94));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000));
+        assertEquals(FileTypeChecker.FileType.PDF, FileTypeChecker.detect(file));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000));
+        assertEquals(FileTypeChecker.FileType.OTHER, FileTypeChecker.detect(file));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量导入单元测试 - 文件内容按行分块，用内存中的假存储代替 chroma；另测清单日志的回放与合并
+ */
+class IncrementalFolderIngesterTest {
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, TextSegment> stored = new HashMap<>();
+    private final AtomicInteger chunked = new AtomicInteger();
+    private final List<Integer> batches = new ArrayList<>();
+    private boolean failRemove;
+
+    @Test
+    void testOnlyChangedFilesAreReingested() throws IOException {
+        Path docs = Files.createDirectories(directory.resolve("docs"));
+        Path manifestFile = directory.resolve("manifest.json");
+        Path a = write(docs.resolve("a.pdf"), "a1\na2", 1_000);
+        Path b = write(docs.resolve("b.docx"), "b1", 1_000);
+        write(docs.resolve("notes.txt"), "ignored", 1_000);
+
+        IncrementalFolderIngester.Report first = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(2, 0, 0, 0, List.of()), first);
+        assertEquals(3, stored.size());
+        assertEquals(2, chunked.get());
+
+        // 什么都没变：不解析任何文件
+        IncrementalFolderIngester.Report second = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(0, 0, 2, 0, List.of()), second);
+        assertEquals(2, chunked.get());
+
+        // 只改了修改时间：比较哈希后跳过；改了内容：替换旧分块；删除文件：删除分块
+        Files.setLastModifiedTime(b, FileTime.fromMillis(2_000));
+        write(a, "a1 changed", 3_000);
+        Files.delete(b);
+        write(docs.resolve("c.xlsx"), "c1", 1_000);
+        IncrementalFolderIngester.Report third = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(1, 1, 0, 1, List.of()), third);
+        assertEquals(List.of("a1 changed", "c1"), stored.values().stream().map(TextSegment::text).sorted().toList());
+
+        write(docs.resolve("c.xlsx"), "c1", 4_000);
+        IncrementalFolderIngester.Report fourth = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(0, 0, 2, 0, List.of()), fourth);
+        assertEquals(4, chunked.get());
+    }
+
+    @Test
+    void testFailedRemovalIsRetriedOnNextRun() throws IOException {
+        Path docs = Files.createDirectories(directory.resolve("docs"));
+        Path manifestFile = directory.resolve("manifest.json");
+        Path a = write(docs.resolve("a.pdf"), "a1\na2", 1_000);
+        Path b = write(docs.resolve("b.docx"), "b1", 1_000);
+        ingester(manifestFile).ingest(docs);
+
+        // 旧分块删不掉：清单不更新，已删除文件的记录也保留，两者都记为失败而不是中断导入
+        write(a, "a1", 2_000);
+        Files.delete(b);
+        failRemove = true;
+        IncrementalFolderIngester.Report failedRun = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(0, 0, 0, 0, List.of(a, b.toAbsolutePath().normalize())), failedRun);
+        assertEquals(List.of("id-a1", "id-a2"), IngestManifest.load(manifestFile).get(key(a)).chunkIds());
+        assertNotNull(IngestManifest.load(manifestFile).get(key(b)));
+
+        failRemove = false;
+        IncrementalFolderIngester.Report retry = ingester(manifestFile).ingest(docs);
+        assertEquals(new IncrementalFolderIngester.Report(0, 1, 0, 1, List.of()), retry);
+        assertEquals(List.of("a1"), stored.values().stream().map(TextSegment::text).toList());
+        assertEquals(List.of("id-a1"), IngestManifest.load(manifestFile).get(key(a)).chunkIds());
+    }
+
+    @Test
+    void testLargeFileIsStoredInBoundedBatches() throws IOException {
+        Path docs = Files.createDirectories(directory.resolve("docs"));
+        int lines = 2 * IncrementalFolderIngester.BATCH_SIZE + 6;
+        write(docs.resolve("large.pdf"), String.join("\n", IntStream.range(0, lines).mapToObj(i -> "line " + i).toList()), 1_000);
+
+        IncrementalFolderIngester.Report report = ingester(directory.resolve("manifest.json")).ingest(docs);
+
+        assertEquals(new IncrementalFolderIngester.Report(1, 0, 0, 0, List.of()), report);
+        assertEquals(List.of(IncrementalFolderIngester.BATCH_SIZE, IncrementalFolderIngester.BATCH_SIZE, 6), batches);
+        assertEquals(lines, IngestManifest.load(directory.resolve("manifest.json")).get(key(docs.resolve("large.pdf"))).chunkIds().size());
+    }
+
+    @Test
+    void testManifestIsJournaledPerFileAndSavedOnce() throws IOException {
+        Path docs = Files.createDirectories(directory.resolve("docs"));
+        Path manifestFile = directory.resolve("manifest.json");
+        Path a = write(docs.resolve("a.pdf"), "a1\na2", 1_000);
+        write(docs.resolve("b.docx"), "b1", 1_000);
+
+        ingester(manifestFile).ingest(docs);
+        // 导入结束时合并成一个不带缩进的快照，日志删除
+        assertFalse(Files.exists(IngestManifest.journalFile(manifestFile)));
+        assertFalse(Files.readString(manifestFile).contains("\n"));
+
+        // 模拟导入中途退出：改动只在日志里
+        IngestManifest manifest = IngestManifest.load(manifestFile);
+        manifest.put(key(docs.resolve("x.pdf")), new IngestManifest.Entry(1, 1, "00", List.of("id-x")));
+        manifest.remove(key(a));
+        // 最后一行只写了一半
+        Files.writeString(IngestManifest.journalFile(manifestFile), "{\"path\":\"y", StandardOpenOption.APPEND);
+
+        IngestManifest reloaded = IngestManifest.load(manifestFile);
+        assertEquals(List.of("id-x"), reloaded.get(key(docs.resolve("x.pdf"))).chunkIds());
+        assertNull(reloaded.get(key(a)));
+        assertEquals(2, reloaded.paths().size());
+        reloaded.put(key(docs.resolve("z.pdf")), new IngestManifest.Entry(1, 1, "00", List.of()));
+        assertEquals(3, IngestManifest.load(manifestFile).paths().size());
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private IncrementalFolderIngester ingester(Path manifestFile) throws IOException {
+        return new IncrementalFolderIngester(IngestManifest.load(manifestFile),
+                (file, sink) -> {
+                    chunked.incrementAndGet();
+                    Files.readAllLines(file).forEach(line -> sink.accept(TextSegment.from(line)));
+                },
+                segments -> {
+                    batches.add(segments.size());
+                    // 与 chroma 的内容哈希 id 一样，相同文本得到相同 id
+                    List<String> ids = new ArrayList<>();
+                    for (TextSegment segment : segments) {
+                        String id = "id-" + segment.text();
+                        stored.put(id, segment);
+                        ids.add(id);
+                    }
+                    return ids;
+                },
+                ids -> {
+                    if (failRemove) {
+                        throw new IllegalStateException("chroma unavailable");
+                    }
+                    ids.forEach(stored::remove);
+                });
+    }
+
+    private static Path write(Path file, String content, long lastModified) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file;
+    }
+}
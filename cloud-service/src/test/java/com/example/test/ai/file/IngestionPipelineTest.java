@@ -0,0 +1,175 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 导入流水线单元测试 - 文件内容按行分块，用内存中的假向量化和假存储代替 ollama 和 chroma
+ */
+class IngestionPipelineTest {
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, TextSegment> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Test
+    void testAllStagesRunAndFailuresAreIsolated() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(Files.createDirectories(directory.resolve("dir-" + i % 3)).resolve("doc-" + i + ".txt"),
+                    "line " + i + " a\nline " + i + " b");
+        }
+        Path bad = Files.writeString(directory.resolve("bad.txt"), "unreadable");
+        Files.writeString(directory.resolve("image.png"), "skipped");
+
+        IngestionPipeline.Report report = pipeline()
+                .parser(file -> {
+                    if (file.equals(bad)) {
+                        throw new IOException("corrupt file");
+                    }
+                    return Document.from(Files.readString(file));
+                })
+                .build()
+                .run(directory);
+
+        assertEquals(20, report.files());
+        assertEquals(40, report.chunks());
+        assertEquals(List.of(bad), report.failed());
+        assertEquals(40, stored.size());
+        assertEquals(22, report.stats().get(IngestionPipeline.Stage.WALK).items());
+        assertEquals(22, report.stats().get(IngestionPipeline.Stage.DETECT).items());
+        assertEquals(21, report.stats().get(IngestionPipeline.Stage.PARSE).items());
+        assertEquals(20, report.stats().get(IngestionPipeline.Stage.WRITE).items());
+    }
+
+    @Test
+    void testStreamingChunksAreEmbeddedInBatches() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(directory.resolve("doc-" + i + ".txt"), "ok");
+        }
+        Path broken = Files.writeString(directory.resolve("broken.txt"), "fails half way");
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        IngestionPipeline.Report report = pipeline()
+                .chunkSource((file, sink) -> {
+                    for (int i = 0; i < 70; i++) {
+                        sink.accept(TextSegment.from(file.getFileName() + " chunk " + i));
+                        if (file.equals(broken) && i == 40) {
+                            throw new IOException("truncated file");
+                        }
+                    }
+                }, 32)
+                .embedder(segments -> {
+                    batchSizes.add(segments.size());
+                    return segments.stream().map(segment -> Embedding.from(new float[]{1})).toList();
+                })
+                .build()
+                .run(directory);
+
+        assertEquals(5, report.files());
+        assertEquals(List.of(broken), report.failed());
+        // 每个完整文件 32 + 32 + 6 三批；失败的文件凑满的第一批还扣在解析阶段，没有交出就失败了
+        assertEquals(5 * 70, report.chunks());
+        assertEquals(15, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size == 32 || size == 6));
+        assertEquals(6, report.stats().get(IngestionPipeline.Stage.PARSE).items());
+        assertEquals(15, report.stats().get(IngestionPipeline.Stage.WRITE).items());
+    }
+
+    @Test
+    void testDuplicateChunksAreNotEmbedded() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            char topic = (char) ('a' + i);
+            Files.writeString(directory.resolve("doc-" + i + ".txt"),
+                    "Section " + topic + " covers topic " + topic + "\nConfidential - page " + i + " of 9");
+        }
+        Files.writeString(directory.resolve("footer-only.txt"), "Confidential - page 7 of 9");
+        AtomicInteger embedded = new AtomicInteger();
+        NearDuplicateFilter deduplicator = new NearDuplicateFilter();
+
+        IngestionPipeline.Report report = pipeline()
+                .parser(file -> Document.from(Files.readString(file)))
+                .deduplicator(deduplicator)
+                .embedder(segments -> {
+                    embedded.addAndGet(segments.size());
+                    return segments.stream().map(segment -> Embedding.from(new float[]{1})).toList();
+                })
+                .build()
+                .run(directory);
+
+        // 6 个页脚只向量化、写入一份；只有页脚的文件也算导入成功
+        assertEquals(6, report.files());
+        assertEquals(6, report.chunks());
+        assertEquals(5, report.duplicates());
+        assertEquals(6, embedded.get());
+        assertEquals(1, deduplicator.duplicates().size());
+        assertEquals(5, deduplicator.duplicates().get(0).sources().size());
+    }
+
+    @Test
+    void testBackpressureBoundsInFlightWork() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Files.writeString(directory.resolve("doc-" + i + ".txt"), "line " + i);
+        }
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        IngestionPipeline.Builder builder = pipeline()
+                .parser(file -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Document.from(Files.readString(file));
+                })
+                .writer((embeddings, segments) -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    return store(segments);
+                });
+        for (IngestionPipeline.Stage stage : List.of(IngestionPipeline.Stage.DETECT, IngestionPipeline.Stage.PARSE,
+                IngestionPipeline.Stage.SPLIT, IngestionPipeline.Stage.EMBED, IngestionPipeline.Stage.WRITE)) {
+            builder.stage(stage, 1, 1);
+        }
+        IngestionPipeline.Report report = builder.build().run(directory);
+
+        assertEquals(50, report.files());
+        // 解析完等待交接的 1 个 + 分块、向量化、写入三个阶段各自队列 1 个和处理中 1 个
+        assertTrue(maxInFlight.get() <= 7, "at most 7 parsed documents should be in flight but saw " + maxInFlight.get());
+    }
+
+    private IngestionPipeline.Builder pipeline() {
+        return IngestionPipeline.builder()
+                .detector(file -> file.getFileName().toString().endsWith(".txt"))
+                .splitter(document -> document.text().lines().map(TextSegment::from).toList())
+                .embedder(segments -> segments.stream().map(segment -> Embedding.from(new float[]{segment.text().length()})).toList())
+                .writer((embeddings, segments) -> store(segments));
+    }
+
+    private List<String> store(List<TextSegment> segments) {
+        List<String> ids = new ArrayList<>();
+        for (TextSegment segment : segments) {
+            String id = "id-" + nextId.incrementAndGet();
+            stored.put(id, segment);
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.test.ai.file;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 近似重复分块过滤单元测试 - SimHash 判重、数字不同不算重复、来源记录与保存和重新导入
+ */
+class NearDuplicateFilterTest {
+
+    private static final String CLAUSE = "本合同自双方签字盖章之日起生效，有效期为 3 年。任何一方违反本合同约定的，应当向守约方支付违约金，"
+            + "并赔偿由此造成的全部损失。双方因履行本合同发生争议的，应当协商解决；协商不成的，任何一方均可向甲方所在地人民法院提起诉讼。";
+
+    private final Path contractA = Path.of("contracts", "a.pdf");
+    private final Path contractB = Path.of("contracts", "b.pdf");
+
+    @Test
+    void testNearDuplicatesAreDroppedWithSources() {
+        NearDuplicateFilter filter = new NearDuplicateFilter();
+
+        List<TextSegment> first = filter.filter(contractA, List.of(
+                segment(CLAUSE, 0),
+                segment("本产品在使用前请仔细阅读说明书，确认电源电压与设备铭牌一致。安装时应保持设备通风良好，远离热源和易燃物品。", 1)));
+        // 只改了标点空白、多了一个词：都算重复
+        List<TextSegment> second = filter.filter(contractB, List.of(
+                segment(CLAUSE.replace("，", " , "), 0),
+                segment(CLAUSE.replace("全部损失", "全部直接损失"), 1),
+                segment("甲方应在收到发票后三十个工作日内向乙方支付合同价款，逾期付款的按日支付万分之五的滞纳金。", 2)));
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertEquals("2", second.get(0).metadata().getString("index"));
+        assertEquals(2, filter.dropped());
+        assertEquals(List.of(new NearDuplicateFilter.Duplicates(new NearDuplicateFilter.Source(contractA, 0),
+                        List.of(new NearDuplicateFilter.Source(contractB, 0), new NearDuplicateFilter.Source(contractB, 1)))),
+                filter.duplicates());
+    }
+
+    @Test
+    void testClausesDifferingOnlyInNumbersAreKept() {
+        NearDuplicateFilter filter = new NearDuplicateFilter();
+
+        assertTrue(filter.accept(contractA, segment(CLAUSE, 0)));
+        // 指纹只差几位，但期限不同的条款不能合并
+        assertTrue(filter.accept(contractB, segment(CLAUSE.replace("3 年", "5 年"), 0)));
+        assertTrue(filter.accept(contractB, segment("乙方应于 2024 年 3 月 1 日前交付全部货物，货款总额为人民币 120000 元，验收合格后一次付清。", 1)));
+        assertTrue(filter.accept(contractB, segment("乙方应于 2024 年 6 月 1 日前交付全部货物，货款总额为人民币 120000 元，验收合格后一次付清。", 2)));
+        assertTrue(filter.accept(contractB, segment("乙方应于 2024 年 6 月 1 日前交付全部货物，货款总额为人民币 150000 元，验收合格后一次付清。", 3)));
+        assertFalse(filter.accept(contractB, segment("乙方应于 2024 年 6 月 1 日前交付全部货物，货款总额为人民币 150000 元，验收合格后一次付清", 4)));
+        assertEquals(1, filter.dropped());
+    }
+
+    @Test
+    void testDuplicateSourcesAreSaved(@TempDir Path directory) throws Exception {
+        NearDuplicateFilter filter = new NearDuplicateFilter();
+        filter.accept(contractA, segment(CLAUSE, 0));
+        filter.accept(contractB, segment(CLAUSE, 4));
+        filter.accept(contractB, segment(CLAUSE, 9));
+
+        Path file = directory.resolve("dedup").resolve("duplicates.json");
+        filter.save(file);
+
+        JsonNode entries = new ObjectMapper().readTree(file.toFile());
+        assertEquals(1, entries.size());
+        assertEquals(contractA.toString(), entries.get(0).get("kept").get("file").asText());
+        assertEquals(0, entries.get(0).get("kept").get("index").asInt());
+        JsonNode sources = entries.get(0).get("duplicate_sources");
+        assertEquals(2, sources.size());
+        assertEquals(contractB.toString(), sources.get(1).get("file").asText());
+        assertEquals(9, sources.get(1).get("index").asInt());
+    }
+
+    @Test
+    void testShortTextsMustMatchExactlyAfterNormalization() {
+        NearDuplicateFilter filter = new NearDuplicateFilter();
+
+        assertTrue(filter.accept(contractA, segment("第 3 页 共 10 页", 5)));
+        // 只有页码不同的页脚归一化后相同
+        assertFalse(filter.accept(contractA, segment("第 4 页 共 12 页", 9)));
+        assertTrue(filter.accept(contractA, segment("附录 4", 10)));
+        assertTrue(filter.accept(contractA, segment("第 4 章 共 12 节", 11)));
+        assertEquals(1, filter.dropped());
+    }
+
+    @Test
+    void testReingestingSameChunkIsNotADuplicate() {
+        NearDuplicateFilter filter = new NearDuplicateFilter();
+
+        assertTrue(filter.accept(contractA, segment(CLAUSE, 0)));
+        assertTrue(filter.accept(contractA, segment(CLAUSE, 0)));
+        assertFalse(filter.accept(contractA, segment(CLAUSE, 7)));
+        assertEquals(1, filter.dropped());
+    }
+
+    @Test
+    void testWordsAreNormalized() {
+        assertEquals(List.of("page", "0", "of", "0", "合", "同"), NearDuplicateFilter.words("Page 12 of 3 — 合同"));
+        assertEquals(List.of("0", "正", "文", "12"), NearDuplicateFilter.words("- 7 -\n正文 12"));
+        assertEquals(List.of("有", "效", "期", "为", "3", "年"), NearDuplicateFilter.words("有效期为 3 年"));
+        assertEquals(NearDuplicateFilter.simHash(NearDuplicateFilter.words("Terms and Conditions apply.")),
+                NearDuplicateFilter.simHash(NearDuplicateFilter.words("terms AND conditions   apply")));
+    }
+
+    private static TextSegment segment(String text, int index) {
+        return TextSegment.from(text, Metadata.from("index", String.valueOf(index)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.test.ai.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并行目录遍历单元测试 - 包含/排除过滤、大小过滤、符号链接和流式输出
+ */
+class ParallelFileWalkerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWalkAppliesFilters() throws IOException, InterruptedException {
+        createTree();
+        ParallelFileWalker walker = ParallelFileWalker.builder()
+                .include("*.pdf")
+                .exclude("skip")
+                .maxSize(1024)
+                .parallelism(2)
+                .build();
+
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        ParallelFileWalker.Stats stats = walker.walk(directory, file -> found.add(relative(file)));
+
+        assertEquals(Set.of("a.pdf", "d1/b.pdf", "d1/d2/c.pdf", "d1/d2/d3/d.pdf"), found);
+        assertEquals(4, stats.files());
+        // 根目录和 d1~d4；skip 被整棵跳过
+        assertEquals(5, stats.directories());
+        assertEquals(0, stats.failures());
+    }
+
+    @Test
+    void testSymbolicLinksAreSkippedByDefault() throws IOException, InterruptedException {
+        createTree();
+        try {
+            Files.createSymbolicLink(directory.resolve("loop"), directory);
+            Files.createSymbolicLink(directory.resolve("link.pdf"), directory.resolve("a.pdf"));
+        } catch (UnsupportedOperationException | IOException e) {
+            return; // 文件系统不支持符号链接
+        }
+
+        Set<String> skipped = ConcurrentHashMap.newKeySet();
+        ParallelFileWalker.builder().include("*.pdf").build().walk(directory, file -> skipped.add(relative(file)));
+        assertFalse(skipped.contains("link.pdf"));
+        assertFalse(skipped.stream().anyMatch(path -> path.startsWith("loop/")));
+
+        // 跟随链接时 loop 指回根目录，只会被遍历一次
+        Set<String> followed = ConcurrentHashMap.newKeySet();
+        ParallelFileWalker.builder().include("*.pdf").exclude("skip").maxSize(1024).followLinks(true).build()
+                .walk(directory, file -> followed.add(relative(file)));
+        assertTrue(followed.contains("link.pdf"));
+        assertFalse(followed.stream().anyMatch(path -> path.startsWith("loop/")));
+    }
+
+    @Test
+    void testStreamReturnsAllFiles() throws IOException {
+        createTree();
+        ParallelFileWalker walker = ParallelFileWalker.builder().build();
+
+        List<String> streamed;
+        try (Stream<Path> files = walker.stream(directory, 2)) {
+            streamed = files.map(this::relative).toList();
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            Set<String> expected = files.filter(Files::isRegularFile).map(this::relative).collect(Collectors.toSet());
+            assertEquals(expected, Set.copyOf(streamed));
+            assertEquals(expected.size(), streamed.size(), "each file should be returned once");
+        }
+    }
+
+    @Test
+    void testClosingStreamEarlyStopsWalk() throws IOException {
+        createTree();
+        try (Stream<Path> files = ParallelFileWalker.builder().build().stream(directory, 1)) {
+            assertEquals(1, files.limit(1).count());
+        }
+    }
+
+    /**
+     * 4 层目录，每层一个小 PDF、一个 txt，外加一个大 PDF 和一个被排除的目录
+     */
+    private void createTree() throws IOException {
+        Path level = directory;
+        for (String name : List.of("a", "b", "c", "d")) {
+            Files.writeString(level.resolve(name + ".pdf"), "%PDF-1.4 " + name);
+            Files.writeString(level.resolve(name + ".txt"), "notes " + name);
+            level = Files.createDirectories(level.resolve("d" + (name.charAt(0) - 'a' + 1)));
+        }
+        Files.write(directory.resolve("d1/big.pdf"), new byte[4096]);
+        Path skip = Files.createDirectories(directory.resolve("d1/skip"));
+        Files.writeString(skip.resolve("e.pdf"), "%PDF-1.4 e");
+    }
+
+    private String relative(Path file) {
+        return directory.relativize(file).toString().replace('\\', '/');
+    }
+}
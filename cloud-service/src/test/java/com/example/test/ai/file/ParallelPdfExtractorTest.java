@@ -0,0 +1,98 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按页段并行抽取 PDF 单元测试 - 并行结果与单线程一致，分块带正确的页码
+ */
+class ParallelPdfExtractorTest {
+
+    private static final int PAGES = 60;
+    private static final Pattern PAGE_LINE = Pattern.compile("Page (\\d+) line");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testParallelExtractionMatchesSequential() throws IOException {
+        Path pdf = writePdf(directory.resolve("manual.pdf"));
+        assertEquals(PAGES, ParallelPdfExtractor.pageCount(pdf));
+
+        List<TextSegment> parallel = extract(pdf, 4, 7);
+        List<TextSegment> sequential = extract(pdf, 1, PAGES);
+
+        assertEquals(sequential, parallel);
+        int previousPage = 1;
+        for (TextSegment segment : parallel) {
+            int page = segment.metadata().getInteger("page");
+            int pageEnd = segment.metadata().getInteger("page_end");
+            assertTrue(page >= previousPage && pageEnd >= page, "pages should never go backwards");
+            Matcher matcher = PAGE_LINE.matcher(segment.text());
+            while (matcher.find()) {
+                int textPage = Integer.parseInt(matcher.group(1));
+                assertTrue(page <= textPage && textPage <= pageEnd, "page " + textPage + " outside " + page + "-" + pageEnd);
+            }
+            previousPage = page;
+        }
+        assertEquals(PAGES, parallel.get(parallel.size() - 1).metadata().getInteger("page_end"));
+    }
+
+    @Test
+    void testKnownPageCountSkipsCounting() throws IOException {
+        Path pdf = writePdf(directory.resolve("manual.pdf"));
+        List<TextSegment> segments = new ArrayList<>();
+        try (ParallelPdfExtractor extractor = new ParallelPdfExtractor(2, 7)) {
+            extractor.extract(pdf, PAGES, new StreamingChunkHandler(300, 30, Metadata.from("file_name", "manual.pdf"), segments::add));
+        }
+
+        assertEquals(extract(pdf, 2, 7), segments);
+    }
+
+    private static List<TextSegment> extract(Path pdf, int parallelism, int pagesPerRange) throws IOException {
+        List<TextSegment> segments = new ArrayList<>();
+        try (ParallelPdfExtractor extractor = new ParallelPdfExtractor(parallelism, pagesPerRange)) {
+            extractor.extract(pdf, new StreamingChunkHandler(300, 30, Metadata.from("file_name", "manual.pdf"), segments::add));
+        }
+        return segments;
+    }
+
+    private static Path writePdf(Path file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 700);
+                    for (int line = 1; line <= 5; line++) {
+                        content.showText("Page " + page + " line " + line + " of the maintenance manual");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+}
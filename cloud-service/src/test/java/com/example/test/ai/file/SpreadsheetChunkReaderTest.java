@@ -0,0 +1,83 @@
+package com.example.test.ai.file;
+
+import cn.idev.excel.ExcelWriter;
+import cn.idev.excel.FastExcel;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表格流式分块单元测试 - 按工作表和行窗口分块，带表头和行号元数据
+ */
+class SpreadsheetChunkReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRowsAreGroupedPerSheet() {
+        File file = directory.resolve("inventory.xlsx").toFile();
+        try (ExcelWriter writer = FastExcel.write(file).build()) {
+            List<List<Object>> items = new ArrayList<>();
+            for (int i = 0; i < 45; i++) {
+                items.add(List.of("item-" + i, i));
+            }
+            writer.write(items, FastExcel.writerSheet(0, "库存").head(head("名称", "数量")).build());
+            writer.write(List.of(List.of("张三", "仓库"), List.of("李四", "采购")),
+                    FastExcel.writerSheet(1, "联系人").head(head("姓名", "部门")).build());
+        }
+
+        List<TextSegment> segments = new ArrayList<>();
+        int count = new SpreadsheetChunkReader(20, 10_000).read(file, Metadata.from("file_name", "inventory.xlsx"), segments::add);
+
+        assertEquals(4, count);
+        assertEquals(4, segments.size());
+        // 第 1 行是表头，数据从第 2 行开始
+        assertRows(segments.get(0), "库存", 2, 21);
+        assertRows(segments.get(1), "库存", 22, 41);
+        assertRows(segments.get(2), "库存", 42, 46);
+        assertRows(segments.get(3), "联系人", 2, 3);
+
+        TextSegment first = segments.get(0);
+        assertTrue(first.text().startsWith("工作表 库存，第 2-21 行\n名称: item-0 | 数量: 0\n名称: item-1 | 数量: 1"), first.text());
+        assertEquals("名称 | 数量", first.metadata().getString("headers"));
+        assertEquals("inventory.xlsx", first.metadata().getString("file_name"));
+        assertEquals("3", segments.get(3).metadata().getString("index"));
+        assertTrue(segments.get(3).text().endsWith("姓名: 李四 | 部门: 采购"));
+    }
+
+    @Test
+    void testWindowIsCappedByCharacters() {
+        File file = directory.resolve("notes.xlsx").toFile();
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(List.of("x".repeat(40)));
+        }
+        FastExcel.write(file).head(head("备注")).sheet("备注").doWrite(rows);
+
+        List<TextSegment> segments = new ArrayList<>();
+        new SpreadsheetChunkReader(20, 100).read(file, null, segments::add);
+
+        // 每行 "备注: " 加 40 个字符共 44 个字符，100 个字符放得下两行
+        assertEquals(5, segments.size());
+        assertRows(segments.get(4), "备注", 10, 11);
+    }
+
+    private static void assertRows(TextSegment segment, String sheet, int start, int end) {
+        assertEquals(sheet, segment.metadata().getString("sheet"));
+        assertEquals(start, segment.metadata().getInteger("row_start"));
+        assertEquals(end, segment.metadata().getInteger("row_end"));
+    }
+
+    private static List<List<String>> head(String... names) {
+        return List.of(names).stream().map(List::of).toList();
+    }
+}
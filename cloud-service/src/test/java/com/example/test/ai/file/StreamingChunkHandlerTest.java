@@ -0,0 +1,196 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 边解析边分块单元测试 - 校验块大小、重叠、序号元数据，按结构分块时的标题、表格和页码，以及大文件不再被 writeLimit 截断
+ */
+class StreamingChunkHandlerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testChunksOverlapAndCoverAllText() {
+        String text = IntStream.range(0, 2000).mapToObj(i -> "word" + i).collect(Collectors.joining(" "));
+        List<TextSegment> segments = new ArrayList<>();
+        StreamingChunkHandler handler = new StreamingChunkHandler(200, 30, Metadata.from("file_name", "a.txt"), segments::add);
+
+        // 模拟 SAX 解析器分多次回调 characters，每次的片段长度不固定
+        char[] chars = text.toCharArray();
+        for (int from = 0; from < chars.length; from += 37) {
+            handler.characters(chars, from, Math.min(37, chars.length - from));
+        }
+        handler.endDocument();
+
+        assertEquals(segments.size(), handler.chunkCount());
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            assertTrue(segment.text().length() <= 200, "chunk " + i + " is longer than 200 characters");
+            assertEquals(String.valueOf(i), segment.metadata().getString("index"));
+            assertEquals("a.txt", segment.metadata().getString("file_name"));
+            // 块只在空白处切开，首尾都是完整的单词
+            assertTrue(segment.text().startsWith("word") && segment.text().matches(".*word\\d+"), segment.text());
+            if (i > 0) {
+                String previous = segments.get(i - 1).text();
+                String firstWord = segment.text().substring(0, segment.text().indexOf(' '));
+                assertTrue(previous.contains(firstWord), "chunk " + i + " should start inside the previous chunk");
+            }
+        }
+        List<String> words = segments.stream()
+                .flatMap(segment -> List.of(segment.text().split(" ")).stream())
+                .distinct()
+                .toList();
+        assertEquals(2000, words.size());
+        assertEquals("word1999", words.get(words.size() - 1));
+    }
+
+    @Test
+    void testTextWithoutWhitespaceIsCutAtMaxLength() {
+        String text = "分块".repeat(250);
+        List<TextSegment> segments = new ArrayList<>();
+        StreamingChunkHandler handler = new StreamingChunkHandler(100, 10, null, segments::add);
+
+        handler.characters(text.toCharArray(), 0, text.length());
+        handler.endDocument();
+
+        assertEquals(100, segments.get(0).text().length());
+        assertEquals(text.substring(90, 190), segments.get(1).text());
+        assertEquals(6, segments.size());
+        assertEquals(text.substring(450), segments.get(5).text());
+    }
+
+    @Test
+    void testStructuredModeKeepsHeadingsTablesAndPages() {
+        List<TextSegment> segments = new ArrayList<>();
+        StructuredTextSplitter splitter = StructuredTextSplitter.builder().maxTokens(60).overlapTokens(5).build();
+        StreamingChunkHandler handler = new StreamingChunkHandler(splitter, Metadata.from("file_name", "manual.pdf"), segments::add);
+
+        handler.startPage(1);
+        element(handler, "h1", "安装");
+        for (int i = 1; i <= 8; i++) {
+            element(handler, "p", "第" + i + "步：执行命令并检查输出。");
+        }
+        handler.startPage(2);
+        element(handler, "h2", "参数");
+        handler.startElement("", "table", "table", new AttributesImpl());
+        handler.startElement("", "tr", "tr", new AttributesImpl());
+        element(handler, "th", "参数");
+        element(handler, "th", "说明");
+        handler.endElement("", "tr", "tr");
+        for (int i = 0; i < 30; i++) {
+            handler.startElement("", "tr", "tr", new AttributesImpl());
+            element(handler, "td", "key" + i);
+            element(handler, "td", "值 " + i);
+            handler.endElement("", "tr", "tr");
+        }
+        handler.endElement("", "table", "table");
+        handler.endDocument();
+
+        assertEquals(segments.size(), handler.chunkCount());
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            assertTrue(StructuredTextSplitter.estimateTokens(segment.text()) <= 60, "segment " + i + " over budget");
+            assertEquals(String.valueOf(i), segment.metadata().getString("index"));
+            assertEquals("manual.pdf", segment.metadata().getString("file_name"));
+        }
+        assertTrue(segments.get(0).text().startsWith("# 安装\n\n第1步"));
+        assertEquals("安装", segments.get(0).metadata().getString("heading"));
+        assertEquals(1, segments.get(0).metadata().getInteger("page"));
+
+        // 表格行完整、只出现一次，续到新分块时先重复表头，页码是第 2 页
+        List<TextSegment> table = segments.stream().filter(segment -> segment.text().contains("key")).toList();
+        assertTrue(table.size() > 1);
+        assertTrue(table.get(1).text().startsWith("参数\t说明\n"), table.get(1).text());
+        for (int i = 0; i < 30; i++) {
+            String row = "key" + i + "\t值 " + i;
+            assertEquals(1, segments.stream().filter(segment -> segment.text().contains(row + "\n") || segment.text().endsWith(row)).count(), row);
+        }
+        for (TextSegment segment : table) {
+            assertEquals("安装 > 参数", segment.metadata().getString("heading"));
+            assertEquals(2, segment.metadata().getInteger("page_end"));
+        }
+    }
+
+    @Test
+    void testWordTableCellsWithParagraphsStayOneRow() {
+        List<TextSegment> segments = new ArrayList<>();
+        StructuredTextSplitter splitter = StructuredTextSplitter.builder().maxTokens(60).overlapTokens(5).build();
+        StreamingChunkHandler handler = new StreamingChunkHandler(splitter, Metadata.from("file_name", "spec.docx"), segments::add);
+
+        // Tika 解析 Word 表格的输出：单元格里是段落，元素之间夹着换行
+        handler.startElement("", "table", "table", new AttributesImpl());
+        wordRow(handler, "参数", "说明");
+        for (int i = 0; i < 30; i++) {
+            wordRow(handler, "key" + i, "第一段", "值 " + i);
+        }
+        handler.endElement("", "table", "table");
+        handler.endDocument();
+
+        assertTrue(segments.size() > 1);
+        for (int i = 0; i < 30; i++) {
+            String row = "key" + i + "\t第一段 值 " + i;
+            assertEquals(1, segments.stream().filter(segment -> segment.text().contains(row + "\n") || segment.text().endsWith(row)).count(), row);
+        }
+        // 续到新分块时重复表头，说明这些行是作为表格行交给 splitter 的
+        for (TextSegment segment : segments.subList(1, segments.size())) {
+            assertTrue(segment.text().startsWith("参数\t说明\n"), segment.text());
+        }
+    }
+
+    @Test
+    void testLargeFileIsNotTruncated() throws Exception {
+        Path file = directory.resolve("large.txt");
+        Files.writeString(file, IntStream.range(0, 20_000).mapToObj(i -> "line" + i).collect(Collectors.joining("\n")));
+
+        List<TextSegment> segments = new ArrayList<>();
+        int count = DocumentUtils.streamChunks(file.toFile(), 500, 50, segments::add);
+
+        assertEquals(segments.size(), count);
+        assertTrue(segments.get(segments.size() - 1).text().endsWith("line19999"));
+        assertEquals("large.txt", segments.get(0).metadata().getString("file_name"));
+
+        // 默认按结构分块：同样不截断，每块不超过默认的 480 token
+        List<TextSegment> structured = new ArrayList<>();
+        assertEquals(DocumentUtils.streamChunks(file.toFile(), structured::add), structured.size());
+        assertTrue(structured.get(structured.size() - 1).text().endsWith("line19999"));
+        assertTrue(structured.stream().allMatch(segment -> StructuredTextSplitter.estimateTokens(segment.text()) <= 480));
+    }
+
+    /**
+     * 一行表格，第一个单元格是 first，第二个单元格里每个 paragraph 一个 {@code <p>}
+     */
+    private static void wordRow(StreamingChunkHandler handler, String first, String... paragraphs) {
+        handler.startElement("", "tr", "tr", new AttributesImpl());
+        handler.startElement("", "td", "td", new AttributesImpl());
+        element(handler, "p", first);
+        handler.endElement("", "td", "td");
+        handler.startElement("", "td", "td", new AttributesImpl());
+        for (String paragraph : paragraphs) {
+            element(handler, "p", paragraph);
+            handler.characters(new char[]{'\n'}, 0, 1);
+        }
+        handler.endElement("", "td", "td");
+        handler.endElement("", "tr", "tr");
+        handler.characters(new char[]{'\n'}, 0, 1);
+    }
+
+    private static void element(StreamingChunkHandler handler, String name, String text) {
+        handler.startElement("", name, name, new AttributesImpl());
+        handler.characters(text.toCharArray(), 0, text.length());
+        handler.endElement("", name, name);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.test.ai.file;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 结构化分块单元测试 - token 预算、标题路径、表格行完整和句子级重叠
+ */
+class StructuredTextSplitterTest {
+
+    private final StructuredTextSplitter splitter = StructuredTextSplitter.builder()
+            .maxTokens(100)
+            .overlapTokens(10)
+            .build();
+
+    @Test
+    void testEstimateTokens() {
+        assertEquals(0, StructuredTextSplitter.estimateTokens(""));
+        assertEquals(4, StructuredTextSplitter.estimateTokens("hello world"));
+        assertEquals(5, StructuredTextSplitter.estimateTokens("你好，世界"));
+        assertEquals(6, StructuredTextSplitter.estimateTokens("maintenance 3.14"));
+    }
+
+    @Test
+    void testHeadingLevel() {
+        assertEquals(1, StructuredTextSplitter.headingLevel("# 安装"));
+        assertEquals(3, StructuredTextSplitter.headingLevel("### Options"));
+        assertEquals(0, StructuredTextSplitter.headingLevel("#include <stdio.h>"));
+        assertEquals(1, StructuredTextSplitter.headingLevel("第三章 总则"));
+        assertEquals(2, StructuredTextSplitter.headingLevel("第12节 配置"));
+        assertEquals(0, StructuredTextSplitter.headingLevel("第三方库很好用"));
+    }
+
+    @Test
+    void testRespectsBudgetHeadingsAndTables() {
+        StringBuilder text = new StringBuilder("# 安装\n\n");
+        for (int i = 1; i <= 30; i++) {
+            text.append("第").append(i).append("步：执行命令 install 并检查输出。");
+        }
+        text.append("\n\n## 配置\n\n| 参数 | 说明 |\n|---|---|\n");
+        for (int i = 0; i < 40; i++) {
+            text.append("| key").append(i).append(" | 值 ").append(i).append(" 的说明 |\n");
+        }
+        text.append("\n# 附录\n\n").append("测试".repeat(150));
+
+        List<TextSegment> segments = splitter.split(Document.from(text.toString(), Metadata.from("file_name", "manual.md")));
+
+        for (int i = 0; i < segments.size(); i++) {
+            TextSegment segment = segments.get(i);
+            assertTrue(StructuredTextSplitter.estimateTokens(segment.text()) <= 100, "segment " + i + " over budget");
+            assertEquals(String.valueOf(i), segment.metadata().getString("index"));
+            assertEquals("manual.md", segment.metadata().getString("file_name"));
+        }
+
+        // 表格行不拆开、不重复，续到新分块时先重复表头
+        for (int i = 0; i < 40; i++) {
+            String row = "| key" + i + " | 值 " + i + " 的说明 |";
+            assertEquals(1, segments.stream().filter(segment -> segment.text().contains(row)).count(), row);
+        }
+        List<TextSegment> tableSegments = segments.stream().filter(segment -> segment.text().contains("| key")).toList();
+        assertTrue(tableSegments.size() > 1);
+        for (TextSegment segment : tableSegments) {
+            assertEquals("安装 > 配置", segment.metadata().getString("heading"));
+            assertTrue(segment.text().startsWith("## 配置") || segment.text().startsWith("| 参数 | 说明 |"), segment.text());
+        }
+
+        TextSegment first = segments.get(0);
+        assertTrue(first.text().startsWith("# 安装\n\n第1步"));
+        assertEquals("安装", first.metadata().getString("heading"));
+
+        // 超长的单句按字硬切，接在标题后面，不留只有标题的分块
+        List<TextSegment> appendix = segments.stream().filter(segment -> segment.text().contains("测试")).toList();
+        assertTrue(appendix.get(0).text().startsWith("# 附录\n\n测试"));
+        assertTrue(appendix.stream().allMatch(segment -> "附录".equals(segment.metadata().getString("heading"))));
+        assertTrue(segments.get(segments.size() - 1).text().endsWith("测试"));
+    }
+
+    @Test
+    void testParagraphsAreNotSplitWhenTheyFit() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            text.append("Paragraph ").append(i).append(" explains one part of the maintenance procedure in some detail.\n\n");
+        }
+
+        List<TextSegment> segments = splitter.split(Document.from(text.toString()));
+
+        assertTrue(segments.size() > 1);
+        for (int i = 0; i < 6; i++) {
+            String paragraph = "Paragraph " + i + " explains one part of the maintenance procedure in some detail.";
+            assertTrue(segments.stream().anyMatch(segment -> segment.text().contains(paragraph)), paragraph);
+        }
+        assertNull(segments.get(0).metadata().getString("heading"));
+    }
+
+    @Test
+    void testLongParagraphOverlapsWholeSentences() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= 60; i++) {
+            text.append("Step ").append(i).append(" done. ");
+        }
+
+        List<TextSegment> segments = splitter.split(Document.from(text.toString()));
+
+        // 每句 4 个 token：1~25 句装满第一块，末尾两句（8 个 token，不超过 10）重叠到下一块
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(0).text().startsWith("Step 1 done."));
+        assertTrue(segments.get(0).text().endsWith("Step 25 done."));
+        assertTrue(segments.get(1).text().startsWith("Step 24 done. Step 25 done. Step 26 done."));
+        assertTrue(segments.get(2).text().startsWith("Step 47 done."));
+        assertTrue(segments.get(2).text().endsWith("Step 60 done."));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.test.ai.ollama;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量向量化单元测试 - 用假模型校验分批、并发上限、拆分重试、服务不可用时不拆分与结果顺序
+ */
+class BatchingEmbeddingModelTest {
+
+    @Test
+    void testBatchesKeepOrderAndRespectConcurrency() {
+        FakeEmbeddingModel fake = new FakeEmbeddingModel(Integer.MAX_VALUE);
+        EmbeddingModel model = BatchingEmbeddingModel.builder().delegate(fake).batchSize(8).maxConcurrentBatches(3).build();
+
+        Response<List<Embedding>> response = model.embedAll(segments(100));
+
+        assertEquals(100, response.content().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, response.content().get(i).vector()[0]);
+        }
+        assertEquals(13, fake.calls.size());
+        assertTrue(fake.calls.stream().allMatch(size -> size <= 8));
+        assertTrue(fake.maxInFlight.get() <= 3, "at most 3 batches should be in flight but saw " + fake.maxInFlight.get());
+        assertEquals(100, response.tokenUsage().inputTokenCount());
+    }
+
+    @Test
+    void testRejectedBatchesAreSplit() {
+        FakeEmbeddingModel fake = new FakeEmbeddingModel(5);
+        EmbeddingModel model = BatchingEmbeddingModel.builder().delegate(fake).batchSize(16).build();
+
+        List<Embedding> embeddings = model.embedAll(segments(40)).content();
+
+        assertEquals(40, embeddings.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, embeddings.get(i).vector()[0]);
+        }
+    }
+
+    @Test
+    void testSingleRejectedSegmentFails() {
+        FakeEmbeddingModel fake = new FakeEmbeddingModel(0);
+        EmbeddingModel model = BatchingEmbeddingModel.builder().delegate(fake).batchSize(4).build();
+
+        assertThrows(IllegalArgumentException.class, () -> model.embedAll(segments(10)));
+    }
+
+    @Test
+    void testOutageFailsFastWithoutSplitting() {
+        AtomicInteger calls = new AtomicInteger();
+        RuntimeException outage = new RuntimeException(new ConnectException("Connection refused"));
+        EmbeddingModel model = BatchingEmbeddingModel.builder()
+                .delegate(failing(calls, outage))
+                .batchSize(32)
+                .maxConcurrentBatches(1)
+                .build();
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> model.embedAll(segments(64)));
+
+        assertSame(outage, thrown);
+        // 不拆分，也不再派发第二个批次
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testTimeoutIsNotSplit() {
+        AtomicInteger calls = new AtomicInteger();
+        RuntimeException timeout = new RuntimeException(new HttpTimeoutException("request timed out"));
+        EmbeddingModel model = BatchingEmbeddingModel.builder().delegate(failing(calls, timeout)).batchSize(16).build();
+
+        assertSame(timeout, assertThrows(RuntimeException.class, () -> model.embedAll(segments(16))));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testInputRejectionClassification() {
+        assertTrue(BatchingEmbeddingModel.isInputRejected(new InvalidRequestException("payload too big")));
+        assertTrue(BatchingEmbeddingModel.isInputRejected(new RuntimeException("input length exceeds the context length")));
+        assertFalse(BatchingEmbeddingModel.isInputRejected(new RuntimeException("internal server error")));
+        assertFalse(BatchingEmbeddingModel.isInputRejected(new RuntimeException(new ConnectException("Connection refused"))));
+        // 超时优先：即便信息里提到输入过长，也可能只是服务太慢
+        assertFalse(BatchingEmbeddingModel.isInputRejected(
+                new RuntimeException("request too large to finish", new SocketTimeoutException("read timed out"))));
+    }
+
+    private static EmbeddingModel failing(AtomicInteger calls, RuntimeException error) {
+        return new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                calls.incrementAndGet();
+                throw error;
+            }
+        };
+    }
+
+    private static List<TextSegment> segments(int count) {
+        return IntStream.range(0, count).mapToObj(i -> TextSegment.from(String.valueOf(i))).toList();
+    }
+
+    /**
+     * 把文本解析成数字作为向量，超过 maxBatch 条的请求直接拒绝
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        private final int maxBatch;
+        private final ConcurrentLinkedQueue<Integer> calls = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        FakeEmbeddingModel(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+                if (textSegments.size() > maxBatch) {
+                    throw new IllegalArgumentException("batch of " + textSegments.size() + " rejected");
+                }
+                calls.add(textSegments.size());
+                List<Embedding> embeddings = textSegments.stream()
+                        .map(segment -> Embedding.from(new float[]{Float.parseFloat(segment.text()), 1f}))
+                        .toList();
+                return Response.from(embeddings, new TokenUsage(textSegments.size(), 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.test.ai.ollama;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 向量缓存单元测试 - 用计数的假模型校验堆上 LRU、批内去重、磁盘层持久化、轮换、目录独占与记录校验
+ */
+class CachingEmbeddingModelTest {
+
+    private static final int DIMENSION = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testHeapCacheDeduplicatesAndEvicts() {
+        CountingEmbeddingModel fake = new CountingEmbeddingModel();
+        // 每条约 96 + 16 字节，只放得下 3 条
+        CachingEmbeddingModel model = CachingEmbeddingModel.builder()
+                .delegate(fake).modelName("fake").maxHeapBytes(3 * 112).build();
+
+        List<Embedding> first = model.embedAll(segments("a", "b", "a", "c")).content();
+        assertEquals(List.of(List.of("a", "b", "c")), fake.calls);
+        assertArrayEquals(first.get(0).vector(), first.get(2).vector());
+
+        assertArrayEquals(first.get(1).vector(), model.embed("b").content().vector());
+        assertEquals(1, fake.calls.size());
+
+        model.embed("d");
+        model.embed("a");
+        assertEquals(List.of("a"), fake.calls.get(fake.calls.size() - 1), "a was least recently used and should be evicted");
+
+        CachingEmbeddingModel.Stats stats = model.stats();
+        assertEquals(1, stats.heapHits());
+        assertEquals(5, stats.misses());
+        assertTrue(stats.heapBytes() <= 3 * 112);
+    }
+
+    @Test
+    void testDiskCacheSurvivesRestartAndStaysBounded() {
+        CountingEmbeddingModel fake = new CountingEmbeddingModel();
+        List<TextSegment> segments = IntStream.range(0, 50).mapToObj(i -> TextSegment.from("text " + i)).toList();
+        // 每条记录 20 字节头 + 向量 + 4 字节校验和
+        long maxDiskBytes = 40 * (24 + DIMENSION * Float.BYTES);
+
+        try (CachingEmbeddingModel model = diskModel(fake, maxDiskBytes)) {
+            model.embedAll(segments);
+        }
+        try (CachingEmbeddingModel model = diskModel(fake, maxDiskBytes)) {
+            List<Embedding> again = model.embedAll(segments.subList(40, 50)).content();
+            assertEquals(1, fake.calls.size());
+            assertEquals(40f, again.get(0).vector()[0]);
+            assertEquals(10, model.stats().diskHits());
+            assertTrue(model.stats().diskBytes() <= maxDiskBytes);
+
+            // 被轮换掉的最早的向量需要重新计算
+            model.embed("text 0");
+            assertEquals(2, fake.calls.size());
+        }
+        try (CachingEmbeddingModel model = diskModel(fake, maxDiskBytes)) {
+            assertEquals(0f, model.embed("text 0").content().vector()[0]);
+            assertEquals(2, fake.calls.size());
+        }
+    }
+
+    @Test
+    void testSecondInstanceOnSameDirectoryFallsBackToHeap() {
+        CountingEmbeddingModel fake = new CountingEmbeddingModel();
+        try (CachingEmbeddingModel owner = diskModel(fake, 1024 * 1024)) {
+            owner.embed("a");
+            try (CachingEmbeddingModel other = diskModel(fake, 1024 * 1024)) {
+                assertEquals(0, other.stats().diskBytes());
+                assertEquals((float) "a".hashCode(), other.embed("a").content().vector()[0]);
+                assertEquals(0, other.stats().diskHits());
+                assertEquals(2, fake.calls.size());
+            }
+        }
+        // 锁随第一个实例关闭而释放
+        try (CachingEmbeddingModel model = diskModel(fake, 1024 * 1024)) {
+            model.embed("a");
+            assertEquals(1, model.stats().diskHits());
+            assertEquals(2, fake.calls.size());
+        }
+    }
+
+    @Test
+    void testCorruptRecordIsRecomputed() throws IOException {
+        CountingEmbeddingModel fake = new CountingEmbeddingModel();
+        try (CachingEmbeddingModel model = diskModel(fake, 1024 * 1024)) {
+            model.embedAll(segments("text 7", "text 8"));
+        }
+        // 改掉第一条记录向量里的一个字节：8 字节文件头 + 20 字节记录头之后
+        Path file = directory.resolve("embeddings.cache");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[8 + 20 + 1] ^= 0x40;
+        Files.write(file, bytes);
+
+        try (CachingEmbeddingModel model = diskModel(fake, 1024 * 1024)) {
+            assertEquals(7f, model.embed("text 7").content().vector()[0]);
+            assertEquals(2, fake.calls.size());
+            assertEquals(8f, model.embed("text 8").content().vector()[0]);
+            assertEquals(1, model.stats().diskHits());
+            assertEquals(2, fake.calls.size());
+        }
+    }
+
+    private CachingEmbeddingModel diskModel(EmbeddingModel delegate, long maxDiskBytes) {
+        return CachingEmbeddingModel.builder()
+                .delegate(delegate).modelName("fake").maxHeapBytes(0).diskDirectory(directory).maxDiskBytes(maxDiskBytes).build();
+    }
+
+    private static List<TextSegment> segments(String... texts) {
+        return Arrays.stream(texts).map(TextSegment::from).toList();
+    }
+
+    /**
+     * 记录每次调用的文本，向量第一维为文本末尾的数字（没有数字时为文本长度）
+     */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final List<List<String>> calls = new ArrayList<>();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            calls.add(textSegments.stream().map(TextSegment::text).toList());
+            return Response.from(textSegments.stream().map(segment -> {
+                String text = segment.text();
+                String[] parts = text.split(" ");
+                float first = parts.length > 1 ? Float.parseFloat(parts[1]) : text.hashCode();
+                return Embedding.from(new float[]{first, 1f, 2f, 3f});
+            }).toList());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BM25 索引单元测试 - 校验中文与编号的分词、精确词排序、过滤、覆盖与删除、空位复用、保存后重新加载以及未保存时回放日志
+ */
+class Bm25IndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testTokenizeCjkBigramsAndCompoundIdentifiers() {
+        assertEquals(List.of("合同", "同编", "编号", "ht", "2024", "001", "ht-2024-001", "已签", "签署"),
+                Bm25Index.tokenize("合同编号 HT-2024-001 已签署。"));
+        assertEquals(List.of("版本", "v1", "2", "v1.2"), Bm25Index.tokenize("版本 v1.2"));
+        // 句号后面不是字母数字，不算编号的一部分
+        assertEquals(List.of("end", "next"), Bm25Index.tokenize("End. Next"));
+        assertEquals(List.of("我", "and", "你们"), Bm25Index.tokenize("我 and 你们"));
+    }
+
+    @Test
+    void testExactIdentifierRanksFirst() {
+        Bm25Index index = sampleIndex();
+
+        List<EmbeddingMatch<TextSegment>> matches = index.search("HT-2024-001 的付款方式", 10, null);
+
+        assertEquals(List.of("c1", "c2"), matches.stream().map(EmbeddingMatch::embeddingId).toList());
+        assertTrue(matches.get(0).score() > matches.get(1).score());
+        assertNull(matches.get(0).embedding());
+        assertTrue(index.search("季度报表", 10, null).isEmpty());
+    }
+
+    @Test
+    void testFilterAndMaxResults() {
+        Bm25Index index = sampleIndex();
+
+        List<EmbeddingMatch<TextSegment>> matches = index.search("合同编号", 10,
+                metadataKey("file_name").isEqualTo("b.pdf"));
+        assertEquals(List.of("c2"), matches.stream().map(EmbeddingMatch::embeddingId).toList());
+        assertEquals(1, index.search("合同编号", 1, null).size());
+    }
+
+    @Test
+    void testUpsertAndRemove() {
+        Bm25Index index = sampleIndex();
+
+        index.add("c1", TextSegment.from("合同编号 HT-2024-003 已作废。"));
+        assertEquals(3, index.size());
+        assertEquals(List.of("c2"), index.search("001 签署", 10, null).stream().map(EmbeddingMatch::embeddingId).toList());
+
+        index.removeAll(List.of("c1", "c2", "missing"));
+        assertEquals(1, index.size());
+        assertTrue(index.search("合同编号", 10, null).isEmpty());
+        assertEquals("c3", index.search("个人提升", 10, null).get(0).embeddingId());
+    }
+
+    @Test
+    void testOverwritesReuseDocumentSlots() {
+        Bm25Index index = sampleIndex();
+        // 内容哈希 id 的重复导入：同一批 id 反复覆盖写入
+        for (int i = 0; i < 10; i++) {
+            index.addAll(List.of("c1", "c2", "c3"), sampleSegments());
+        }
+        assertEquals(3, index.size());
+        assertEquals(3, index.capacity());
+
+        index.removeAll(List.of("c2"));
+        index.add("c4", TextSegment.from("年度预算审批流程说明"));
+        assertEquals(3, index.capacity());
+        assertEquals(List.of("c4"), index.search("预算", 10, null).stream().map(EmbeddingMatch::embeddingId).toList());
+        assertEquals("c1", index.search("HT-2024-001", 1, null).get(0).embeddingId());
+    }
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        Bm25Index index = sampleIndex();
+        index.removeAll(List.of("c3"));
+        Path file = directory.resolve("bm25").resolve("index.jsonl");
+        index.save(file);
+
+        Bm25Index loaded = Bm25Index.load(file, Bm25Index.builder());
+
+        assertEquals(2, loaded.size());
+        EmbeddingMatch<TextSegment> top = loaded.search("HT-2024-001", 1, null).get(0);
+        assertEquals("c1", top.embeddingId());
+        assertEquals(index.search("HT-2024-001", 1, null).get(0).score(), top.score(), 1e-9);
+        assertEquals("a.pdf", top.embedded().metadata().getString("file_name"));
+        assertEquals(7, top.embedded().metadata().getInteger("page"));
+        assertEquals(0, Bm25Index.load(directory.resolve("missing.jsonl"), Bm25Index.builder()).size());
+    }
+
+    @Test
+    void testJournalIsReplayedWithoutSave() throws Exception {
+        Path file = directory.resolve("bm25").resolve("index.jsonl");
+        // 模拟导入中途退出：写入和删除之后没有 save
+        try (Bm25Index index = Bm25Index.open(file, Bm25Index.builder())) {
+            index.addAll(List.of("c1", "c2", "c3"), sampleSegments());
+            index.removeAll(List.of("c3"));
+        }
+        assertFalse(Files.exists(file));
+
+        try (Bm25Index reopened = Bm25Index.open(file, Bm25Index.builder())) {
+            assertEquals(2, reopened.size());
+            EmbeddingMatch<TextSegment> top = reopened.search("HT-2024-001", 1, null).get(0);
+            assertEquals("c1", top.embeddingId());
+            assertEquals(7, top.embedded().metadata().getInteger("page"));
+
+            // 保存快照后日志清空，之后的写入继续记日志
+            reopened.save(file);
+            assertEquals(0, Files.size(Bm25Index.journalFile(file)));
+            reopened.add("c4", TextSegment.from("年度预算审批流程说明"));
+        }
+
+        try (Bm25Index reopened = Bm25Index.open(file, Bm25Index.builder())) {
+            assertEquals(3, reopened.size());
+            assertEquals("c4", reopened.search("预算审批", 1, null).get(0).embeddingId());
+            assertTrue(reopened.search("个人提升", 10, null).isEmpty());
+        }
+    }
+
+    @Test
+    void testTornJournalTailIsTruncated() throws Exception {
+        Path file = directory.resolve("index.jsonl");
+        try (Bm25Index index = Bm25Index.open(file, Bm25Index.builder())) {
+            index.addAll(List.of("c1", "c2"), sampleSegments().subList(0, 2));
+        }
+        // 进程在追加日志时退出，最后一行只写了一半
+        Files.writeString(Bm25Index.journalFile(file), "{\"id\":\"c9\",\"text\":\"合同", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (Bm25Index reopened = Bm25Index.open(file, Bm25Index.builder())) {
+            assertEquals(2, reopened.size());
+            reopened.add("c3", sampleSegments().get(2));
+        }
+        try (Bm25Index reopened = Bm25Index.open(file, Bm25Index.builder())) {
+            assertEquals(3, reopened.size());
+            assertEquals("c3", reopened.search("个人提升", 1, null).get(0).embeddingId());
+        }
+    }
+
+    private static Bm25Index sampleIndex() {
+        Bm25Index index = Bm25Index.builder().build();
+        index.addAll(List.of("c1", "c2", "c3"), sampleSegments());
+        return index;
+    }
+
+    private static List<TextSegment> sampleSegments() {
+        return List.of(
+                TextSegment.from("合同编号 HT-2024-001 已签署，付款方式为分期付款。",
+                        Metadata.from("file_name", "a.pdf").put("page", 7)),
+                TextSegment.from("合同编号 HT-2024-002 正在审批，签署日期待定。",
+                        Metadata.from("file_name", "b.pdf")),
+                TextSegment.from("员工个人提升计划包括培训、轮岗与年度考核。",
+                        Metadata.from("file_name", "c.pdf")));
+    }
+}
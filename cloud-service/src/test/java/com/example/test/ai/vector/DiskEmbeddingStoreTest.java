@@ -0,0 +1,199 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 磁盘向量库单元测试 - 校验重启后的数据、覆盖与删除、段合并、日志尾部损坏、量化后的召回率以及共用码本
+ */
+class DiskEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReopenAfterFlushAndCompaction() {
+        Random random = new Random(3);
+        List<Embedding> embeddings = randomEmbeddings(random, 500);
+        List<String> ids = IntStream.range(0, 500).mapToObj(i -> "id-" + i).toList();
+        List<TextSegment> segments = IntStream.range(0, 500)
+                .mapToObj(i -> TextSegment.from("chunk " + i, Metadata.from("file_name", i % 10 == 0 ? "a.pdf" : "b.pdf")))
+                .toList();
+
+        try (DiskEmbeddingStore store = open()) {
+            for (int from = 0; from < 500; from += 50) {
+                store.addAll(ids.subList(from, from + 50), embeddings.subList(from, from + 50), segments.subList(from, from + 50));
+            }
+            store.removeAll(List.of("id-7"));
+            store.add("id-8", embeddings.get(9));
+        }
+
+        try (DiskEmbeddingStore store = open()) {
+            assertEquals(499, store.size());
+            assertSelfMatch(store, embeddings.get(3), "id-3", "chunk 3");
+            assertNotEquals("id-7", store.search(request(embeddings.get(7), 1)).matches().get(0).embeddingId());
+            assertEquals(1.0, store.search(request(embeddings.get(9), 2)).matches().get(1).score(), 1e-5);
+
+            store.compact();
+            assertEquals(1, directory.toFile().list((dir, name) -> name.endsWith(".vec")).length);
+        }
+
+        try (DiskEmbeddingStore store = open()) {
+            assertEquals(499, store.size());
+            assertSelfMatch(store, embeddings.get(42), "id-42", "chunk 42");
+
+            EmbeddingSearchRequest filtered = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddings.get(5))
+                    .maxResults(100)
+                    .filter(metadataKey("file_name").isEqualTo("a.pdf"))
+                    .build();
+            assertEquals(50, store.search(filtered).matches().size());
+            store.removeAll(metadataKey("file_name").isEqualTo("a.pdf"));
+            assertEquals(0, store.search(filtered).matches().size());
+            assertEquals(449, store.size());
+        }
+    }
+
+    @Test
+    void testTornWriteLogTailIsDiscarded() throws Exception {
+        List<Embedding> embeddings = randomEmbeddings(new Random(5), 3);
+        try (DiskEmbeddingStore store = open()) {
+            store.add("id-0", embeddings.get(0));
+            store.add("id-1", embeddings.get(1));
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("vectors.wal"), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (DiskEmbeddingStore store = open()) {
+            assertEquals(1, store.size());
+            store.add("id-2", embeddings.get(2));
+        }
+        try (DiskEmbeddingStore store = open()) {
+            assertEquals(2, store.size());
+            assertEquals("id-2", store.search(request(embeddings.get(2), 1)).matches().get(0).embeddingId());
+        }
+    }
+
+    @Test
+    void testQuantizedRecallAgainstExactSearch() {
+        Random random = new Random(19);
+        List<Embedding> embeddings = randomEmbeddings(random, 2000);
+        List<String> ids = IntStream.range(0, 2000).mapToObj(i -> "id-" + i).toList();
+        List<Embedding> queries = randomEmbeddings(random, 50);
+
+        for (Quantization quantization : Quantization.values()) {
+            Path exactDirectory = directory.resolve(quantization + "-exact");
+            Path quantizedDirectory = directory.resolve(quantization.name());
+            try (DiskEmbeddingStore exact = DiskEmbeddingStore.builder().directory(exactDirectory).build();
+                 DiskEmbeddingStore quantized = DiskEmbeddingStore.builder().directory(quantizedDirectory)
+                         .quantization(quantization).productSubspaces(8).rescoreFactor(5).build()) {
+                exact.addAll(ids, embeddings, null);
+                quantized.addAll(ids, embeddings, null);
+                exact.flush();
+                quantized.flush();
+
+                int hits = 0;
+                for (Embedding query : queries) {
+                    Set<String> expected = exact.search(request(query, 10)).matches().stream()
+                            .map(EmbeddingMatch::embeddingId)
+                            .collect(Collectors.toSet());
+                    List<EmbeddingMatch<TextSegment>> matches = quantized.search(request(query, 10)).matches();
+                    assertEquals(10, matches.size());
+                    hits += (int) matches.stream().map(EmbeddingMatch::embeddingId).filter(expected::contains).count();
+                }
+                double recall = hits / (queries.size() * 10.0);
+                assertTrue(recall >= 0.9, quantization + " recall@10 should be at least 0.9 but was " + recall);
+            }
+        }
+    }
+
+    @Test
+    void testProductCodebookIsTrainedOnceAndShared() throws Exception {
+        Random random = new Random(23);
+        Path quantizedDirectory = directory.resolve("shared");
+        int large = DiskEmbeddingStore.SHARED_CODEBOOK_SAMPLE + 100;
+        List<Embedding> embeddings = randomEmbeddings(random, large + 200);
+        List<String> ids = IntStream.range(0, embeddings.size()).mapToObj(i -> "id-" + i).toList();
+
+        try (DiskEmbeddingStore store = DiskEmbeddingStore.builder().directory(quantizedDirectory)
+                .quantization(Quantization.PRODUCT).productSubspaces(8).flushThreshold(100_000).build()) {
+            store.addAll(ids.subList(0, large), embeddings.subList(0, large), null);
+            store.flush();
+            // 第二个段很小，单独训练的话码本只有 200 个中心；共用码本时与第一个段完全相同
+            store.addAll(ids.subList(large, ids.size()), embeddings.subList(large, embeddings.size()), null);
+            store.flush();
+        }
+
+        byte[] shared = codebookBytes(quantizedDirectory.resolve("codebook.qnt"));
+        assertArrayEquals(shared, codebookBytes(quantizedDirectory.resolve("segment-00000000.qnt")));
+        assertArrayEquals(shared, codebookBytes(quantizedDirectory.resolve("segment-00000001.qnt")));
+
+        try (DiskEmbeddingStore store = DiskEmbeddingStore.builder().directory(quantizedDirectory)
+                .quantization(Quantization.PRODUCT).productSubspaces(8).build()) {
+            assertEquals(ids.size(), store.size());
+            assertEquals("id-" + (ids.size() - 1),
+                    store.search(request(embeddings.get(ids.size() - 1), 1)).matches().get(0).embeddingId());
+        }
+    }
+
+    /**
+     * 量化码文件头之后的码本部分
+     */
+    private static byte[] codebookBytes(Path file) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int codebookBytes = buffer.getInt(24);
+        byte[] codebook = new byte[codebookBytes];
+        buffer.get(QuantizedSegment.HEADER_BYTES, codebook);
+        return codebook;
+    }
+
+    private DiskEmbeddingStore open() {
+        return DiskEmbeddingStore.builder().directory(directory).flushThreshold(100).maxSegments(3).build();
+    }
+
+    private static void assertSelfMatch(DiskEmbeddingStore store, Embedding query, String id, String text) {
+        EmbeddingMatch<TextSegment> match = store.search(request(query, 1)).matches().get(0);
+        assertEquals(id, match.embeddingId());
+        assertEquals(text, match.embedded().text());
+        assertEquals(1.0, match.score(), 1e-5);
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query, int maxResults) {
+        return EmbeddingSearchRequest.builder().queryEmbedding(query).maxResults(maxResults).build();
+    }
+
+    private static List<Embedding> randomEmbeddings(Random random, int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+}
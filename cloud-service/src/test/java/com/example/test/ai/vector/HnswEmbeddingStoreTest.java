@@ -0,0 +1,126 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW 向量库单元测试 - 以暴力检索为基准校验召回率
+ */
+class HnswEmbeddingStoreTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void testRecallAgainstExactSearch() {
+        Random random = new Random(7);
+        List<Embedding> embeddings = randomEmbeddings(random, 2000);
+        HnswEmbeddingStore store = HnswEmbeddingStore.builder().m(16).efConstruction(100).efSearch(64).build();
+        List<String> ids = store.addAll(embeddings);
+
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            Embedding query = randomEmbeddings(random, 1).get(0);
+            Set<String> exact = exactTopK(ids, embeddings, query, 10);
+            Set<String> approximate = store.search(request(query, 10)).matches().stream()
+                    .map(EmbeddingMatch::embeddingId)
+                    .collect(Collectors.toSet());
+            approximate.retainAll(exact);
+            hits += approximate.size();
+        }
+        double recall = hits / (queries * 10.0);
+        assertTrue(recall >= 0.9, "recall@10 should be at least 0.9 but was " + recall);
+    }
+
+    @Test
+    void testFilterAndRemove() {
+        Random random = new Random(11);
+        HnswEmbeddingStore store = HnswEmbeddingStore.builder().build();
+        List<Embedding> embeddings = randomEmbeddings(random, 200);
+        List<TextSegment> segments = IntStream.range(0, 200)
+                .mapToObj(i -> TextSegment.from("chunk " + i, Metadata.from("file_name", i % 10 == 0 ? "a.pdf" : "b.pdf")))
+                .toList();
+        List<String> ids = IntStream.range(0, 200).mapToObj(i -> "id-" + i).toList();
+        store.addAll(ids, embeddings, segments);
+
+        EmbeddingSearchRequest filtered = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(5))
+                .maxResults(50)
+                .filter(metadataKey("file_name").isEqualTo("a.pdf"))
+                .build();
+        List<EmbeddingMatch<TextSegment>> matches = store.search(filtered).matches();
+        assertEquals(20, matches.size());
+        assertTrue(matches.stream().allMatch(match -> "a.pdf".equals(match.embedded().metadata().getString("file_name"))));
+
+        List<EmbeddingMatch<TextSegment>> self = store.search(request(embeddings.get(3), 1)).matches();
+        assertEquals("id-3", self.get(0).embeddingId());
+        assertEquals(1.0, self.get(0).score(), 1e-5);
+
+        store.removeAll(List.of("id-3"));
+        assertNotEquals("id-3", store.search(request(embeddings.get(3), 1)).matches().get(0).embeddingId());
+        assertEquals(199, store.size());
+
+        store.removeAll(metadataKey("file_name").isEqualTo("a.pdf"));
+        assertEquals(0, store.search(filtered).matches().size());
+    }
+
+    @Test
+    void testRejectsDegenerateM() {
+        assertThrows(IllegalArgumentException.class, () -> HnswEmbeddingStore.builder().m(1).build());
+        assertThrows(IllegalArgumentException.class, () -> HnswEmbeddingStore.builder().m(0).build());
+
+        HnswEmbeddingStore store = HnswEmbeddingStore.builder().m(2).build();
+        List<Embedding> embeddings = randomEmbeddings(new Random(5), 100);
+        store.addAll(IntStream.range(0, 100).mapToObj(i -> "id-" + i).toList(), embeddings, null);
+        assertEquals("id-42", store.search(request(embeddings.get(42), 1)).matches().get(0).embeddingId());
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query, int maxResults) {
+        return EmbeddingSearchRequest.builder().queryEmbedding(query).maxResults(maxResults).build();
+    }
+
+    private static List<Embedding> randomEmbeddings(Random random, int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+
+    private static Set<String> exactTopK(List<String> ids, List<Embedding> embeddings, Embedding query, int k) {
+        float[] q = HnswEmbeddingStore.normalize(query.vector());
+        return IntStream.range(0, ids.size()).boxed()
+                .sorted(Comparator.comparingDouble(i -> -dot(q, HnswEmbeddingStore.normalize(embeddings.get(i).vector()))))
+                .limit(k)
+                .map(ids::get)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+}
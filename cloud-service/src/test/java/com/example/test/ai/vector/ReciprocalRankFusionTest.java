@@ -0,0 +1,36 @@
+package com.example.test.ai.vector;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 倒数排名融合单元测试 - 校验多路都命中的条目排在前面、同分按第一路名次以及截断
+ */
+class ReciprocalRankFusionTest {
+
+    @Test
+    void testFuseByRank() {
+        Embedding embedding = Embedding.from(new float[]{1, 0});
+        List<EmbeddingMatch<TextSegment>> vector = List.of(match("a", 0.93, embedding), match("b", 0.91, embedding), match("c", 0.90, embedding));
+        List<EmbeddingMatch<TextSegment>> lexical = List.of(match("c", 12.5, null), match("d", 3.1, null));
+
+        List<EmbeddingMatch<TextSegment>> fused = ReciprocalRankFusion.fuse(List.of(vector, lexical), 3);
+
+        // c: 1/63 + 1/61，a: 1/61，b 和 d 都是 1/62，b 先出现
+        assertEquals(List.of("c", "a", "b"), fused.stream().map(EmbeddingMatch::embeddingId).toList());
+        assertEquals(1.0 / 63 + 1.0 / 61, fused.get(0).score(), 1e-12);
+        assertSame(embedding, fused.get(0).embedding());
+        assertEquals("c", fused.get(0).embedded().text());
+        assertEquals(4, ReciprocalRankFusion.fuse(List.of(vector, lexical), 10).size());
+    }
+
+    private static EmbeddingMatch<TextSegment> match(String id, double score, Embedding embedding) {
+        return new EmbeddingMatch<>(score, id, embedding, TextSegment.from(id));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.test.ai.vector;
+
+import com.example.test.ai.ollama.OllamaEmbeddingMode2lExample;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余弦相似度基准：ND4J（每次创建 INDArray 并重新求范数）、标量内核、Vector API 内核，以及一对多批量打分。
+ * 不属于单元测试，在 IDE 中运行 main 或 {@code java -cp target/test-classes:... SimilarityKernelBenchmark}。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SimilarityKernelBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"384", "1024"})
+    int dimension;
+
+    private float[] a;
+    private float[] b;
+    private float[] normalizedA;
+    private float[] normalizedB;
+    private float[] matrix;
+    private float[] scores;
+    private final ScalarSimilarityKernel scalar = new ScalarSimilarityKernel();
+    private final SimdSimilarityKernel simd = new SimdSimilarityKernel();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        a = randomVector(random, dimension);
+        b = randomVector(random, dimension);
+        normalizedA = SimilarityKernels.normalize(a);
+        normalizedB = SimilarityKernels.normalize(b);
+        matrix = randomVector(random, ROWS * dimension);
+        scores = new float[ROWS];
+    }
+
+    @Benchmark
+    public double nd4jCosine() {
+        INDArray vectorA = Nd4j.create(a);
+        INDArray vectorB = Nd4j.create(b);
+        return OllamaEmbeddingMode2lExample.calculateCosineSimilarity(vectorA, vectorB);
+    }
+
+    @Benchmark
+    public float scalarCosine() {
+        return scalar.dot(normalizedA, 0, normalizedB, 0, dimension);
+    }
+
+    @Benchmark
+    public float simdCosine() {
+        return simd.dot(normalizedA, 0, normalizedB, 0, dimension);
+    }
+
+    @Benchmark
+    public float[] simdOneVsMany() {
+        SimilarityKernels.dotAll(normalizedA, matrix, ROWS, scores);
+        return scores;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SimilarityKernelBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.test.ai.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相似度内核单元测试 - SIMD 实现与标量实现对照，覆盖不足一个向量宽度的尾部
+ */
+class SimilarityKernelsTest {
+
+    private final ScalarSimilarityKernel scalar = new ScalarSimilarityKernel();
+    private final SimdSimilarityKernel simd = new SimdSimilarityKernel();
+
+    @Test
+    void testSimdMatchesScalar() {
+        Random random = new Random(13);
+        for (int length : new int[]{1, 7, 8, 17, 100, 1024}) {
+            float[] a = randomVector(random, length + 3);
+            float[] b = randomVector(random, length + 5);
+            assertEquals(scalar.dot(a, 3, b, 5, length), simd.dot(a, 3, b, 5, length), 1e-3f);
+            assertEquals(scalar.l2Squared(a, 3, b, 5, length), simd.l2Squared(a, 3, b, 5, length), 1e-3f);
+
+            float[] query = randomVector(random, length);
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment segment = arena.allocate(16 + (long) length * Float.BYTES);
+                for (int i = 0; i < length; i++) {
+                    segment.set(VectorSegment.FLOAT, 16 + (long) i * Float.BYTES, b[i]);
+                }
+                assertEquals(scalar.dot(query, 0, b, 0, length), simd.dot(query, segment, 16), 1e-3f);
+                assertEquals(scalar.dot(query, 0, b, 0, length), scalar.dot(query, segment, 16), 1e-3f);
+
+                for (int i = 0; i < length; i++) {
+                    segment.set(ValueLayout.JAVA_BYTE, 16 + i, (byte) (i * 37 - 128));
+                }
+                assertEquals(scalar.dotInt8(query, segment, 16), simd.dotInt8(query, segment, 16), 1e-2f);
+            }
+        }
+    }
+
+    @Test
+    void testCosineAndBatchedScoring() {
+        float[] a = {1, 2, 3};
+        float[] b = {2, 4, 6};
+        assertEquals(1f, SimilarityKernels.cosineSimilarity(a, b), 1e-6f);
+        assertEquals(0f, SimilarityKernels.cosineSimilarity(a, new float[3]));
+        assertEquals(1f, SimilarityKernels.cosineNormalized(SimilarityKernels.normalize(a), SimilarityKernels.normalize(b)), 1e-6f);
+        assertEquals(14f, SimilarityKernels.l2Squared(a, new float[3]), 1e-6f);
+
+        float[] matrix = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+        float[] scores = new float[3];
+        SimilarityKernels.dotAll(a, matrix, 3, scores);
+        assertArrayEquals(new float[]{1, 2, 3}, scores);
+        assertThrows(IllegalArgumentException.class, () -> SimilarityKernels.dot(a, new float[2]));
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
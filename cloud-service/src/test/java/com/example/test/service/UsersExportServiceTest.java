@@ -0,0 +1,80 @@
+package com.example.test.service;
+
+import cn.idev.excel.FastExcel;
+import cn.idev.excel.support.ExcelTypeEnum;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.test.entity.Users;
+import com.example.test.fastexcel.UsersExportData;
+import com.example.test.mapper.UsersMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户导出单元测试 - 按主键游标分页查询，逐页写入 xlsx
+ */
+@ExtendWith(MockitoExtension.class)
+class UsersExportServiceTest {
+
+    @Mock
+    private UsersMapper usersMapper;
+
+    @InjectMocks
+    private UsersExportService usersExportService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testExportPagesByIdCursor() {
+        when(usersMapper.selectList(any())).thenReturn(users(1, 3), users(4, 3), users(7, 1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long total = usersExportService.export(out, ExcelTypeEnum.XLSX, 3);
+
+        assertEquals(7, total);
+        ArgumentCaptor<Wrapper<Users>> queries = ArgumentCaptor.forClass(Wrapper.class);
+        // 最后一页不满 3 行，不再多查一次
+        verify(usersMapper, times(3)).selectList(queries.capture());
+        QueryWrapper<Users> first = (QueryWrapper<Users>) queries.getAllValues().get(0);
+        QueryWrapper<Users> third = (QueryWrapper<Users>) queries.getAllValues().get(2);
+        assertFalse(first.getSqlSegment().contains("id >"));
+        assertTrue(third.getSqlSegment().contains("id >"));
+        assertTrue(third.getParamNameValuePairs().containsValue(6L));
+
+        List<UsersExportData> rows = FastExcel.read(new ByteArrayInputStream(out.toByteArray()))
+                .head(UsersExportData.class).sheet().doReadSync();
+        assertEquals(7, rows.size());
+        assertEquals(1L, rows.get(0).getId());
+        assertEquals("user-7", rows.get(6).getUsername());
+        assertEquals("user-7@example.com", rows.get(6).getEmail());
+        assertEquals(LocalDateTime.of(2024, 1, 7, 8, 30), rows.get(6).getCreatedAt());
+    }
+
+    private static List<Users> users(long firstId, int count) {
+        List<Users> users = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            Users user = new Users();
+            user.setId(id);
+            user.setUsername("user-" + id);
+            user.setEmail("user-" + id + "@example.com");
+            user.setCreatedAt(LocalDateTime.of(2024, 1, (int) id, 8, 30));
+            users.add(user);
+        }
+        return users;
+    }
+}